@@ -22,6 +22,8 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import org.walkmod.util.LineRanges;
+
 /**
  * Helper class to create Walkmod options map
  *
@@ -83,6 +85,30 @@ public class Options {
      */
     public static final String CHAIN_PATH = "chain_path";
 
+	/**
+	 * (Integer) Number of threads to walk the files of each chain. Values greater than 1 require thread
+	 * safe transformations. The default value is 1
+	 */
+	public static final String THREADS = "threads";
+
+	/**
+	 * (Boolean) Skips the files that have not changed since the last execution that did not modify them.
+	 * The default value is false
+	 */
+	public static final String INCREMENTAL = "incremental";
+
+	/**
+	 * (List&lt;String&gt;) Explicit list of files to process, relative to the execution directory. The
+	 * readers do not scan their paths, but still apply their include and exclude rules
+	 */
+	public static final String FILES = "files";
+
+	/**
+	 * (Map&lt;String, LineRanges&gt;) Changed lines by file path, relative to the execution directory.
+	 * Walkers and patch writers that support it only modify these lines
+	 */
+	public static final String CHANGED_LINES = "changed_lines";
+
 	/**
 	 * Stored options as immutable map.
 	 */
@@ -98,7 +124,9 @@ public class Options {
 		final Map<String, Object> options = new HashMap<String, Object>(optionsArg);
 		makeImmutableListCopy(options, EXCLUDES);
 		makeImmutableListCopy(options, INCLUDES);
+		makeImmutableListCopy(options, FILES);
 		makeImmutableMapCopy(options, DYNAMIC_ARGS);
+		makeImmutableMapCopy(options, CHANGED_LINES);
 		checkPresent(options, OFFLINE);
 		checkPresent(options, VERBOSE);
 		checkPresent(options, PRINT_ERRORS);
@@ -150,6 +178,19 @@ public class Options {
 	    return null;
 	}
 
+	public int getThreads() {
+		Object value = this.options.get(THREADS);
+		if (value != null) {
+			return (Integer) value;
+		}
+		return 1;
+	}
+
+	public boolean isIncremental() {
+		Object value = this.options.get(INCREMENTAL);
+		return value != null && (Boolean) value;
+	}
+
 	public boolean isVerbose() {
 		Object value = this.options.get(VERBOSE);
 		return value != null && (Boolean) value;
@@ -200,6 +241,25 @@ public class Options {
 		return null;
 	}
 
+	/**
+	 * @return immutable list or null, if the readers must scan their paths
+	 */
+	@SuppressWarnings("unchecked")
+	public List<String> getFiles() {
+		if (options.containsKey(FILES)) {
+			return (List<String>) options.get(FILES);
+		}
+		return null;
+	}
+
+	/**
+	 * @return immutable map or null, if all the lines can be modified
+	 */
+	@SuppressWarnings("unchecked")
+	public Map<String, LineRanges> getChangedLines() {
+		return (Map<String, LineRanges>) options.get(CHANGED_LINES);
+	}
+
 	/**
 	 * Returns the stored options as a immutable Map&lt;String,Object&gt;
 	 *
@@ -24,6 +24,8 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import org.walkmod.util.LineRanges;
+
 /**
  * Helper class to create Walkmod options map.
  *
@@ -164,6 +166,41 @@ public class OptionsBuilder {
 		return this;
     }
 
+	/**
+	 * Sets the number of threads to walk the files of each chain. Null value resets to default value.
+	 *
+	 * @param threads
+	 *            number of threads
+	 * @return updated OptionBuilder instance
+	 *
+	 * @see Options#THREADS
+	 */
+	public OptionsBuilder threads(Integer threads) {
+		if (threads != null) {
+			if (threads < 1) {
+				throw new IllegalArgumentException("The number of threads must be greater than 0");
+			}
+			options.put(Options.THREADS, threads);
+		} else {
+			options.remove(Options.THREADS);
+		}
+		return this;
+	}
+
+	/**
+	 * Sets the incremental option
+	 *
+	 * @param incremental
+	 *            true to skip the files that have not changed since the last execution
+	 * @return updated OptionBuilder instance
+	 *
+	 * @see Options#INCREMENTAL
+	 */
+	public OptionsBuilder incremental(boolean incremental) {
+		options.put(Options.INCREMENTAL, incremental);
+		return this;
+	}
+
 	/**
 	 * Sets the printErrors option
 	 *
@@ -264,6 +301,61 @@ public class OptionsBuilder {
 		return this;
 	}
 
+	/**
+	 * Adds to the list of files to process
+	 *
+	 * @param files
+	 *            List of file paths
+	 * @return updated OptionBuilder instance
+	 *
+	 * @see Options#FILES
+	 */
+	public OptionsBuilder files(String... files) {
+		return files != null ? files(Arrays.asList(files)) : this;
+	}
+
+	/**
+	 * Adds to the list of files to process. An empty list means that there is nothing to process.
+	 *
+	 * @param files
+	 *            List of file paths
+	 * @return updated OptionBuilder instance
+	 *
+	 * @see Options#FILES
+	 */
+	@SuppressWarnings("unchecked")
+	public OptionsBuilder files(/* @Nullable */ Collection<String> files) {
+		if (files != null) {
+			if (!options.containsKey(Options.FILES)) {
+				options.put(Options.FILES, new ArrayList<Object>());
+			}
+			List<Object> allFiles = (List<Object>) options.get(Options.FILES);
+			allFiles.addAll(files);
+		}
+		return this;
+	}
+
+	/**
+	 * Adds the changed lines of a set of files
+	 *
+	 * @param changedLines
+	 *            line ranges by file path
+	 * @return updated OptionBuilder instance
+	 *
+	 * @see Options#CHANGED_LINES
+	 */
+	@SuppressWarnings("unchecked")
+	public OptionsBuilder changedLines(/* @Nullable */ Map<String, LineRanges> changedLines) {
+		if (changedLines != null) {
+			if (!options.containsKey(Options.CHANGED_LINES)) {
+				options.put(Options.CHANGED_LINES, new HashMap<String, Object>());
+			}
+			Map<String, Object> allChangedLines = (Map<String, Object>) options.get(Options.CHANGED_LINES);
+			allChangedLines.putAll(changedLines);
+		}
+		return this;
+	}
+
 	/**
 	 * Seths the dynamic arguments
 	 * @param dynamicArgs
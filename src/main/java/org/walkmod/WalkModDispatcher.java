@@ -51,6 +51,7 @@ import org.walkmod.commands.RemoveTransformationCommand;
 import org.walkmod.commands.SetReaderCommand;
 import org.walkmod.commands.SetWriterCommand;
 import org.walkmod.commands.VersionCommand;
+import org.walkmod.commands.WatchCommand;
 
 import com.beust.jcommander.JCommander;
 import com.beust.jcommander.ParameterException;
@@ -135,6 +136,7 @@ public class WalkModDispatcher {
 		commands.put("set-writer", new SetWriterCommand(jcommander));
 		commands.put("transformations", new PrintTransformationsCommand(jcommander));
 		commands.put("plugins", new PrintPluginsCommand(jcommander));
+		commands.put("watch", new WatchCommand(jcommander));
 		commands.put("--version", new VersionCommand());
 		commands.put("--help", new HelpCommand(jcommander));
 
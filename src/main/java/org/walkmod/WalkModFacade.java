@@ -22,13 +22,17 @@ import java.text.DecimalFormat;
 import java.text.SimpleDateFormat;
 import java.util.Collection;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 
 import org.apache.log4j.Logger;
 import org.walkmod.conf.ConfigurationManager;
+import org.walkmod.conf.ConfigurationSnapshot;
 import org.walkmod.conf.ConfigurationProvider;
 import org.walkmod.conf.ExecutionModeEnum;
 import org.walkmod.conf.ProjectConfigurationProvider;
@@ -37,6 +41,7 @@ import org.walkmod.conf.entities.ChainConfig;
 import org.walkmod.conf.entities.Configuration;
 import org.walkmod.conf.entities.PluginConfig;
 import org.walkmod.conf.entities.ProviderConfig;
+import org.walkmod.conf.entities.ReaderConfig;
 import org.walkmod.conf.entities.TransformationConfig;
 import org.walkmod.conf.entities.impl.ConfigurationImpl;
 import org.walkmod.conf.providers.DynamicConfigurationProvider;
@@ -45,6 +50,8 @@ import org.walkmod.conf.providers.ExecutionModeProvider;
 import org.walkmod.conf.providers.IvyConfigurationProvider;
 import org.walkmod.exceptions.InvalidConfigurationException;
 import org.walkmod.exceptions.WalkModException;
+import org.walkmod.util.FileWatcher;
+import org.walkmod.util.PathPatternMatcher;
 import org.walkmod.writers.Summary;
 
 /**
@@ -203,7 +210,8 @@ public class WalkModFacade {
         Configuration config = null;
 
         try {
-            ConfigurationManager cfgManager = new ConfigurationManager(cfg, cp);
+            ConfigurationManager cfgManager = new ConfigurationManager(cfg,
+                    new ConfigurationSnapshot(ConfigurationSnapshot.getSnapshotFile(cfg)), cp);
             config = cfgManager.getConfiguration();
             config.setParameters(options.getMutableCopyOfDynamicArgs());
 
@@ -265,6 +273,17 @@ public class WalkModFacade {
 
     private void run(List<File> result, WalkmodCommand command, ExecutionModeEnum execMode, String... chains)
             throws InvalidConfigurationException {
+        // each execution has its own summary, shared by the threads that it creates
+        Summary previousSummary = Summary.setCurrent(new Summary());
+        try {
+            execute(result, command, execMode, chains);
+        } finally {
+            Summary.setCurrent(previousSummary);
+        }
+    }
+
+    private void execute(List<File> result, WalkmodCommand command, ExecutionModeEnum execMode, String... chains)
+            throws InvalidConfigurationException {
 
         userDir = new File(System.getProperty("user.dir")).getAbsolutePath();
         System.setProperty("user.dir", options.getExecutionDirectory().getAbsolutePath());
@@ -308,6 +327,117 @@ public class WalkModFacade {
 
     }
 
+    /**
+     * Applies a list of transformation chains and keeps watching the reader paths of these chains to
+     * apply them again, only to the created or modified files, until the current thread is
+     * interrupted. The configuration and the plugins are loaded once, and the files written by the
+     * chains do not trigger new executions. The modules of the configuration are not watched.
+     * 
+     * @param interval
+     *            milliseconds between two scans of the reader paths. The changed files are applied
+     *            once a scan does not find new changes.
+     * @param chains
+     *            the list of applied transformation chains.
+     * @throws InvalidConfigurationException
+     *             if the walkmod configuration is invalid and it is working in no verbose mode.
+     */
+    public void watch(long interval, String... chains) throws InvalidConfigurationException {
+        userDir = new File(System.getProperty("user.dir")).getAbsolutePath();
+        File executionDir = options.getExecutionDirectory().getAbsoluteFile();
+        System.setProperty("user.dir", executionDir.getAbsolutePath());
+        Summary previousSummary = Summary.setCurrent(new Summary());
+        try {
+            Configuration config = null;
+            if (cfg.exists()) {
+                if (options.isVerbose()) {
+                    log.info(cfg.getAbsoluteFile() + " [ok]");
+                }
+                config = readConfig(locateConfigurationProvider(), new ExecutionModeProvider(ExecutionModeEnum.APPLY));
+            } else {
+                config = createConfig(chains, locateConfigurationProvider(),
+                        new ExecutionModeProvider(ExecutionModeEnum.APPLY));
+            }
+            if (config == null) {
+                return;
+            }
+            config.execute(userDir, options, chains);
+
+            Map<File, PathPatternMatcher> paths = getReaderPaths(config, executionDir, chains);
+            FileWatcher watcher = new FileWatcher(paths);
+            if (options.isVerbose()) {
+                log.info("Watching " + paths.keySet() + ". Press Ctrl+C to stop.");
+            }
+            Map<String, Object> watchOptions = new HashMap<String, Object>(options.asMap());
+            watchOptions.remove(Options.FILES);
+            watchOptions.remove(Options.CHANGED_LINES);
+            while (!Thread.currentThread().isInterrupted()) {
+                Set<File> changes = watcher.awaitChanges(interval);
+                List<String> files = new LinkedList<String>();
+                for (File change : changes) {
+                    files.add(change.getAbsolutePath());
+                }
+                if (options.isVerbose()) {
+                    log.info(files.size() + " file(s) changed");
+                }
+                resetWalkers(config);
+                config.execute(userDir, OptionsBuilder.options(watchOptions).files(files).build(), chains);
+                watcher.update(Summary.getInstance().getWrittenFiles());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            Summary.setCurrent(previousSummary);
+            System.setProperty("user.dir", userDir);
+        }
+    }
+
+    /**
+     * Returns the reader paths of the chains and the include and exclude rules of their readers. A path
+     * read by several chains with different rules is watched without rules.
+     */
+    private Map<File, PathPatternMatcher> getReaderPaths(Configuration config, File executionDir,
+            String... chains) {
+        Map<File, PathPatternMatcher> paths = new LinkedHashMap<File, PathPatternMatcher>();
+        Collection<ChainConfig> chainCfgs = config.getChainConfigs();
+        if (chainCfgs != null) {
+            for (ChainConfig cc : chainCfgs) {
+                boolean selected = chains == null || chains.length == 0;
+                for (int i = 0; !selected && i < chains.length; i++) {
+                    selected = chains[i].equals(cc.getName());
+                }
+                ReaderConfig rc = cc.getReaderConfig();
+                if (selected && rc != null && rc.getPath() != null) {
+                    File path = new File(rc.getPath());
+                    if (!path.isAbsolute()) {
+                        path = new File(executionDir, rc.getPath());
+                    }
+                    PathPatternMatcher matcher = new PathPatternMatcher(path.getAbsolutePath(), rc.getIncludes(),
+                            rc.getExcludes());
+                    if (paths.containsKey(path)) {
+                        matcher = new PathPatternMatcher(null, null, null);
+                    }
+                    paths.put(path, matcher);
+                }
+            }
+        }
+        return paths;
+    }
+
+    /**
+     * Walkers keep the visited elements and counters of an execution, so each execution of the same
+     * configuration needs new ones. Readers, writers and plugins are reused.
+     */
+    private void resetWalkers(Configuration config) {
+        Collection<ChainConfig> chainCfgs = config.getChainConfigs();
+        if (chainCfgs != null) {
+            for (ChainConfig cc : chainCfgs) {
+                if (cc.getWalkerConfig() != null) {
+                    cc.getWalkerConfig().setWalker(null);
+                }
+            }
+        }
+    }
+
     /**
      * Applies a list of transformation chains without updating the source files.
      * 
@@ -15,12 +15,19 @@
   along with Walkmod.  If not, see <http://www.gnu.org/licenses/>.*/
 package org.walkmod.commands;
 
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 import org.walkmod.OptionsBuilder;
+import org.walkmod.util.ChangedFiles;
+import org.walkmod.util.LineRanges;
 
 import com.beust.jcommander.DynamicParameter;
 import com.beust.jcommander.Parameter;
@@ -49,6 +56,24 @@ public class AbstractChainCommand {
     @Parameter(names = { "-p", "--path" }, description = "Overrides the reader and writer paths of the selected chains")
     private String path = null;
 
+    @Parameter(names = { "-t", "--threads" }, description = "Number of threads to process the files of each chain")
+    private Integer threads = null;
+
+    @Parameter(names = "--incremental", description = "Skips the files that have not changed since the last execution")
+    private boolean incremental = false;
+
+    @Parameter(names = "--files", description = "Processes only the given files instead of scanning the reader paths")
+    private ArrayList<String> files = null;
+
+    @Parameter(names = "--files-from", description = "Processes only the files listed (one per line) in a file, or in the standard input with -")
+    private String filesFrom = null;
+
+    @Parameter(names = "--git-diff", description = "Processes only the files changed since a git revision (e.g. HEAD)")
+    private String gitDiff = null;
+
+    @Parameter(names = "--diff", description = "Processes only the files and lines changed by a unified diff, read from a file or from the standard input with -")
+    private String diff = null;
+
     @DynamicParameter(names = "-D", description = "Dynamic parameters")
     private Map<String, String> dynamicParams = new HashMap<String, String>();
 
@@ -115,13 +140,101 @@ public class AbstractChainCommand {
         this.path = path;
     }
 
-    public OptionsBuilder buildOptions() {
+    public Integer getThreads() {
+        return threads;
+    }
+
+    public void setThreads(Integer threads) {
+        this.threads = threads;
+    }
+
+    public boolean isIncremental() {
+        return incremental;
+    }
+
+    public void setIncremental(boolean incremental) {
+        this.incremental = incremental;
+    }
+
+    public ArrayList<String> getFiles() {
+        return files;
+    }
+
+    public void setFiles(ArrayList<String> files) {
+        this.files = files;
+    }
+
+    public String getFilesFrom() {
+        return filesFrom;
+    }
+
+    public void setFilesFrom(String filesFrom) {
+        this.filesFrom = filesFrom;
+    }
+
+    public String getGitDiff() {
+        return gitDiff;
+    }
+
+    public void setGitDiff(String gitDiff) {
+        this.gitDiff = gitDiff;
+    }
+
+    public String getDiff() {
+        return diff;
+    }
+
+    public void setDiff(String diff) {
+        this.diff = diff;
+    }
+
+    private Map<String, LineRanges> readDiff() throws IOException {
+        if (diff == null) {
+            return null;
+        }
+        if (ChangedFiles.STDIN.equals(diff)) {
+            return LineRanges.parseUnifiedDiff(new InputStreamReader(System.in));
+        }
+        Reader reader = new FileReader(diff);
+        try {
+            return LineRanges.parseUnifiedDiff(reader);
+        } finally {
+            reader.close();
+        }
+    }
+
+    private List<String> resolveFiles(Map<String, LineRanges> changedLines) throws IOException {
+        if (files == null && filesFrom == null && gitDiff == null && changedLines == null) {
+            return null;
+        }
+        List<String> result = new ArrayList<String>();
+        if (changedLines != null) {
+            result.addAll(changedLines.keySet());
+        }
+        if (files != null) {
+            result.addAll(files);
+        }
+        if (filesFrom != null) {
+            result.addAll(ChangedFiles.read(filesFrom));
+        }
+        if (gitDiff != null) {
+            result.addAll(ChangedFiles.fromGitDiff(new File(System.getProperty("user.dir")), gitDiff));
+        }
+        return result;
+    }
+
+    public OptionsBuilder buildOptions() throws IOException {
+        Map<String, LineRanges> changedLines = readDiff();
         return OptionsBuilder.options().verbose(true).offline(offline)
                 .printErrors(showException != null && showException)
                 .includes(includes)
                 .excludes(excludes)
                 .dynamicArgs(dynamicParams)
                 .path(path)
+                .threads(threads)
+                .incremental(incremental)
+                .files(resolveFiles(changedLines))
+                .changedLines(changedLines)
                 .configurationFile(configurationFile);
     }
 
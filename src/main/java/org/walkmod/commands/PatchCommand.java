@@ -15,10 +15,16 @@
   along with Walkmod.  If not, see <http://www.gnu.org/licenses/>.*/
 package org.walkmod.commands;
 
+import java.io.File;
+import java.io.InputStreamReader;
 import java.util.Map;
 
+import org.apache.log4j.Logger;
 import org.walkmod.WalkModFacade;
+import org.walkmod.patches.BinaryPatchReader;
+import org.walkmod.patches.PatchApplier;
 import org.walkmod.patches.PatchFormat;
+import org.walkmod.patches.PatchReport;
 
 import com.beust.jcommander.JCommander;
 import com.beust.jcommander.Parameter;
@@ -35,9 +41,23 @@ public class PatchCommand extends AbstractChainCommand implements Command {
     @Parameter(names = { "-o", "--occurrence" }, description = "Produces a patch per change occurrence")
     private boolean patchPerChange = false;
 
-    @Parameter(names = { "-s", "--style" }, description = "Patch style (json or raw)")
+    @Parameter(names = { "-s", "--style" }, description = "Patch style (json, ndjson, binary or raw)")
     private String patchFormat = PatchFormat.RAW.name();
 
+    @Parameter(names = { "--shards" }, description = "Number of patch files, which are written in parallel")
+    private int patchShards = 1;
+
+    @Parameter(names = { "-z", "--gzip" }, description = "Compresses the patch files with gzip")
+    private boolean compressPatches = false;
+
+    @Parameter(names = { "-a", "--apply" }, description = "Applies a patch in raw or binary format, read from a file or from the standard input with -, instead of generating it")
+    private String applyPatch = null;
+
+    @Parameter(names = "--fuzz", description = "Maximum number of context lines of a hunk that can be ignored to apply it")
+    private int fuzz = PatchApplier.DEFAULT_FUZZ;
+
+    private static Logger log = Logger.getLogger(PatchCommand.class);
+
     public PatchCommand(JCommander command) {
         this.command = command;
     }
@@ -46,12 +66,20 @@ public class PatchCommand extends AbstractChainCommand implements Command {
     public void execute() throws Exception {
         if (isHelpNeeded()) {
             command.usage("patch");
+        } else if (applyPatch != null) {
+            apply();
         } else {
             
             Map<String, String> dynParams = getDynamicParams();
             dynParams.put("patchPerFile", Boolean.toString(patchPerFile));
             dynParams.put("patchPerChange", Boolean.toString(patchPerChange));
             dynParams.put("patchFormat", patchFormat);
+            if (patchShards > 1) {
+                dynParams.put("patchShards", Integer.toString(patchShards));
+            }
+            if (compressPatches) {
+                dynParams.put("compressPatches", Boolean.TRUE.toString());
+            }
 
             WalkModFacade facade = new WalkModFacade(buildOptions());
             String[] params = new String[getParameters().size()];
@@ -62,4 +90,26 @@ public class PatchCommand extends AbstractChainCommand implements Command {
             }
         }
     }
+
+    private void apply() throws Exception {
+        PatchApplier applier = new PatchApplier(new File(System.getProperty("user.dir")));
+        applier.setFuzz(fuzz);
+        if (getThreads() != null) {
+            applier.setThreads(getThreads());
+        }
+        PatchReport report;
+        if ("-".equals(applyPatch)) {
+            report = applier.apply(new InputStreamReader(System.in, applier.getEncoding()));
+        } else if (BinaryPatchReader.isBinaryPatch(new File(applyPatch))) {
+            BinaryPatchReader reader = BinaryPatchReader.open(new File(applyPatch));
+            report = applier.apply(new InputStreamReader(reader.openUnifiedDiff(), "UTF-8"));
+        } else {
+            report = applier.apply(new File(applyPatch));
+        }
+        for (String failure : report.getFailures()) {
+            log.error(failure);
+        }
+        log.info(report.getPatchedFiles().size() + " file(s) patched, " + report.getAppliedHunks() + " hunk(s) applied ("
+                + report.getFuzzyHunks() + " with offset or fuzz) and " + report.getFailures().size() + " failure(s)");
+    }
 }
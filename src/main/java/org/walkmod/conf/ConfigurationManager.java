@@ -23,6 +23,8 @@ import java.util.List;
 import org.walkmod.ConfigurationAdapter;
 import org.walkmod.conf.entities.Configuration;
 import org.walkmod.conf.entities.impl.ConfigurationImpl;
+import org.walkmod.conf.providers.ExecutionModeProvider;
+import org.walkmod.conf.providers.IvyConfigurationProvider;
 import org.walkmod.conf.providers.LanguageConfigurationProvider;
 import org.walkmod.conf.providers.PluginsConfigurationProvider;
 import org.walkmod.conf.providers.SpringConfigurationProvider;
@@ -37,6 +39,10 @@ public class ConfigurationManager {
 
     private List<ConfigurationProvider> configurationProviders = new LinkedList<ConfigurationProvider>();
 
+    private File configurationFile;
+
+    private ConfigurationSnapshot snapshot;
+
     public ConfigurationManager(Configuration conf) {
         setConfiguration(conf);
     }
@@ -58,7 +64,12 @@ public class ConfigurationManager {
         // the class loader can be modified before
         this.configurationProviders.add(new SpringConfigurationProvider());
         if (execute) {
-            executeConfigurationProviders();
+            if (!restoreSnapshot()) {
+                executeConfigurationProviders();
+                if (snapshot != null) {
+                    snapshot.save(configuration, configurationFile);
+                }
+            }
             ConfigurationAdapter ca = new DefaultConfigurationAdapter();
             ca.setConfiguration(configuration);
             ca.prepare();
@@ -66,15 +77,76 @@ public class ConfigurationManager {
     }
 
     public ConfigurationManager(File walkmodcfg, boolean execute, ConfigurationProvider... configurationProviders) {
+        this(walkmodcfg, execute, null, configurationProviders);
+    }
+
+    /**
+     * Loads a configuration file, or restores its snapshot if the file and the plugins have not
+     * changed since it was taken.
+     */
+    public ConfigurationManager(File walkmodcfg, ConfigurationSnapshot snapshot,
+            ConfigurationProvider... configurationProviders) {
+        this(walkmodcfg, true, snapshot, configurationProviders);
+    }
+
+    private ConfigurationManager(File walkmodcfg, boolean execute, ConfigurationSnapshot snapshot,
+            ConfigurationProvider... configurationProviders) {
         setConfiguration(new ConfigurationImpl());
+        this.configurationFile = walkmodcfg;
         if (walkmodcfg.getName().endsWith(".xml")) {
             this.configurationProviders.add(new XMLConfigurationProvider(walkmodcfg.getAbsolutePath(), false));
         } else {
             this.configurationProviders.add(new YAMLConfigurationProvider(walkmodcfg.getAbsolutePath()));
         }
+        if (snapshot != null && walkmodcfg.isFile() && isSnapshotSupported(configurationProviders)) {
+            this.snapshot = snapshot;
+        }
         addProviders(execute, configurationProviders);
     }
 
+    /**
+     * The snapshot replaces the providers that parse files, so the rest of providers must only load the
+     * plugins or set the execution mode.
+     */
+    private static boolean isSnapshotSupported(ConfigurationProvider... configurationProviders) {
+        if (configurationProviders != null) {
+            for (ConfigurationProvider cp : configurationProviders) {
+                if (!(cp instanceof IvyConfigurationProvider) && !(cp instanceof ExecutionModeProvider)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static boolean isParsingProvider(ConfigurationProvider cp) {
+        return cp instanceof XMLConfigurationProvider || cp instanceof YAMLConfigurationProvider
+                || cp instanceof PluginsConfigurationProvider || cp instanceof LanguageConfigurationProvider;
+    }
+
+    /**
+     * Restores the snapshot and executes the providers that do not parse files (e.g. the plugins
+     * loading). The snapshot is discarded if the plugins have changed.
+     */
+    private boolean restoreSnapshot() {
+        if (snapshot == null || !snapshot.restore(configuration, configurationFile)) {
+            return false;
+        }
+        Iterator<ConfigurationProvider> it = configurationProviders.iterator();
+        while (it.hasNext()) {
+            ConfigurationProvider current = it.next();
+            if (!isParsingProvider(current)) {
+                if (current instanceof SpringConfigurationProvider && !snapshot.isClasspathValid(configuration)) {
+                    setConfiguration(new ConfigurationImpl());
+                    return false;
+                }
+                current.init(getConfiguration());
+                current.load();
+            }
+        }
+        return true;
+    }
+
     public ConfigurationManager(File walkmodcfg, ConfigurationProvider... configurationProviders) {
         this(walkmodcfg, true, configurationProviders);
     }
@@ -122,6 +194,10 @@ public class ConfigurationManager {
             ConfigurationProvider current = it.next();
             current.init(getConfiguration());
             current.load();
+            if (snapshot != null && current instanceof LanguageConfigurationProvider) {
+                // before the execution mode modifies the writers
+                snapshot.capture(configuration);
+            }
         }
     }
 
@@ -0,0 +1,404 @@
+/*
+  Copyright (C) 2013 Raquel Pau and Albert Coroleu.
+
+ Walkmod is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Lesser General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Walkmod is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public License
+ along with Walkmod.  If not, see <http://www.gnu.org/licenses/>.*/
+package org.walkmod.conf;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.NotSerializableException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.log4j.Logger;
+import org.walkmod.conf.entities.ChainConfig;
+import org.walkmod.conf.entities.Configuration;
+import org.walkmod.conf.entities.InitializerConfig;
+import org.walkmod.conf.entities.MergePolicyConfig;
+import org.walkmod.conf.entities.PluginConfig;
+import org.walkmod.conf.entities.ProviderConfig;
+import org.walkmod.util.ContentHash;
+import org.walkmod.util.SafeFileOutputStream;
+
+/**
+ * Persistent snapshot of a configuration once its files have been parsed: the chains, plugins, merge
+ * policies and the rest of declarative settings, after applying the language defaults. When the
+ * configuration file has not changed, the {@link ConfigurationManager} restores the snapshot instead
+ * of parsing the configuration file, the default plugins and the language defaults again.
+ *
+ * The snapshot is keyed by a hash of the configuration file and the default plugins. The resolved
+ * classpath (the plugin jars and their sizes and modification times) and the language defaults
+ * are checked once the plugins have been loaded, so a snapshot of other plugin versions is
+ * discarded.
+ *
+ * The snapshots are stored under <code>~/.walkmod/cache/snapshots</code>, outside the project, and they
+ * only contain configuration entities, strings, numbers and collections: any other class is rejected
+ * both when the snapshot is taken and when it is restored.
+ */
+public class ConfigurationSnapshot {
+
+    private static final int VERSION = 1;
+
+    private static final String DEFAULT_PLUGINS = "default-plugins.xml";
+
+    private static final Set<String> ALLOWED_CLASSES = new HashSet<String>(Arrays.asList(String.class.getName(),
+            Boolean.class.getName(), Character.class.getName(), Number.class.getName(), Byte.class.getName(),
+            Short.class.getName(), Integer.class.getName(), Long.class.getName(), Float.class.getName(),
+            Double.class.getName(), Enum.class.getName(), "java.math.BigInteger", "java.math.BigDecimal",
+            "java.util.ArrayList", "java.util.LinkedList", "java.util.HashMap", "java.util.LinkedHashMap",
+            "java.util.HashSet", "java.util.LinkedHashSet"));
+
+    private static final String ENTITIES_PACKAGE = "org.walkmod.conf.entities.";
+
+    private static Logger log = Logger.getLogger(ConfigurationSnapshot.class);
+
+    private final File file;
+
+    private byte[] state;
+
+    private String classpathFingerprint;
+
+    /**
+     * @param file
+     *            file of the snapshot.
+     */
+    public ConfigurationSnapshot(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Returns the snapshot file of a configuration file, which is stored under
+     * <code>~/.walkmod/cache/snapshots</code>.
+     */
+    public static File getSnapshotFile(File configurationFile) {
+        return getSnapshotFile(new File(System.getProperty("user.home"), ".walkmod" + File.separator + "cache"
+                + File.separator + "snapshots"), configurationFile);
+    }
+
+    /**
+     * Returns the snapshot file of a configuration file in a cache directory, which is keyed by the
+     * path of the configuration file.
+     */
+    public static File getSnapshotFile(File cacheDirectory, File configurationFile) {
+        String path = configurationFile.getAbsolutePath();
+        return new File(cacheDirectory, new ContentHash().update(path).toHex() + ".snapshot");
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Loads the snapshot into a configuration if it has been taken from the same configuration file.
+     * The classpath must be checked with {@link #isClasspathValid(Configuration)} once the plugins are
+     * loaded.
+     *
+     * @return if the snapshot has been restored.
+     */
+    public boolean restore(Configuration configuration, File configurationFile) {
+        if (!file.isFile()) {
+            return false;
+        }
+        try {
+            DataInputStream dis = new DataInputStream(new FileInputStream(file));
+            try {
+                if (dis.readInt() != VERSION || !getKey(configuration, configurationFile).equals(dis.readUTF())) {
+                    return false;
+                }
+                classpathFingerprint = dis.readUTF();
+                State snapshot = (State) new SnapshotInputStream(dis, configuration.getClassLoader()).readObject();
+                snapshot.restore(configuration);
+                return true;
+            } finally {
+                dis.close();
+            }
+        } catch (Exception e) {
+            log.debug("The configuration snapshot " + file.getAbsolutePath() + " cannot be restored", e);
+            return false;
+        }
+    }
+
+    /**
+     * Returns if the plugin jars and language defaults are the same than when the snapshot was taken.
+     */
+    public boolean isClasspathValid(Configuration configuration) {
+        try {
+            return classpathFingerprint != null && classpathFingerprint.equals(getClasspathFingerprint(configuration));
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Takes the snapshot of a configuration in memory. It must be called once the configuration files
+     * and the language defaults have been loaded, and before the execution mode modifies the writers.
+     * Configurations with values that are not serializable are not stored.
+     */
+    public void capture(Configuration configuration) {
+        try {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            ObjectOutputStream oos = new SnapshotOutputStream(bos);
+            oos.writeObject(new State(configuration));
+            oos.close();
+            state = bos.toByteArray();
+        } catch (IOException e) {
+            log.debug("The configuration cannot be stored as a snapshot", e);
+            state = null;
+        }
+    }
+
+    /**
+     * Stores the captured snapshot together with the classpath of the loaded configuration.
+     */
+    public void save(Configuration configuration, File configurationFile) {
+        if (state == null) {
+            return;
+        }
+        try {
+            File parent = file.getParentFile();
+            if (parent != null && !parent.exists()) {
+                parent.mkdirs();
+            }
+            DataOutputStream dos = new DataOutputStream(new SafeFileOutputStream(file, true, false));
+            try {
+                dos.writeInt(VERSION);
+                dos.writeUTF(getKey(configuration, configurationFile));
+                dos.writeUTF(getClasspathFingerprint(configuration));
+                dos.write(state);
+            } finally {
+                dos.close();
+            }
+        } catch (IOException e) {
+            log.debug("The configuration snapshot " + file.getAbsolutePath() + " cannot be saved", e);
+        } finally {
+            state = null;
+        }
+    }
+
+    /**
+     * Hash of the configuration file and the default plugins, which are known before loading the
+     * plugins.
+     */
+    private static String getKey(Configuration configuration, File configurationFile) throws IOException {
+        ContentHash hash = new ContentHash();
+        hash.update(configurationFile.getAbsolutePath());
+        hash.update(configurationFile);
+        File defaultPlugins = new File(DEFAULT_PLUGINS);
+        if (defaultPlugins.isFile()) {
+            hash.update(defaultPlugins);
+        } else {
+            URL url = configuration.getClassLoader().getResource(DEFAULT_PLUGINS);
+            if (url != null) {
+                InputStream is = url.openStream();
+                try {
+                    hash.update(IOUtils.toByteArray(is));
+                } finally {
+                    is.close();
+                }
+            }
+        }
+        return hash.toHex();
+    }
+
+    /**
+     * Hash of the jars of the class loader of the configuration and the location of its language
+     * defaults.
+     */
+    private static String getClasspathFingerprint(Configuration configuration) throws IOException {
+        ContentHash hash = new ContentHash();
+        ClassLoader cl = configuration.getClassLoader();
+        while (cl != null) {
+            if (cl instanceof URLClassLoader) {
+                URL[] urls = ((URLClassLoader) cl).getURLs();
+                for (int i = 0; i < urls.length; i++) {
+                    hash.update(urls[i].toString());
+                    File jar = FileUtils.toFile(urls[i]);
+                    if (jar != null && jar.isFile()) {
+                        hash.update(jar.length() + ":" + jar.lastModified());
+                    }
+                }
+            }
+            cl = cl.getParent();
+        }
+        // the same lookup than the LanguageConfigurationProvider
+        String defaults = configuration.getDefaultLanguage();
+        String fileName = defaults == null ? "default-config.xml" : "META-INF/walkmod/walkmod-" + defaults
+                + "-defaults.xml";
+        File local = new File(fileName);
+        if (local.isFile()) {
+            hash.update(local.getAbsolutePath());
+            hash.update(local);
+        } else {
+            hash.update(String.valueOf(configuration.getClassLoader().getResource(fileName)));
+        }
+        return hash.toHex();
+    }
+
+    /**
+     * Declarative part of a configuration.
+     */
+    private static class State implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final LinkedHashMap<String, Object> parameters;
+
+        private final ArrayList<ChainConfig> chainConfigs;
+
+        private final ArrayList<PluginConfig> plugins;
+
+        private final ArrayList<MergePolicyConfig> mergePolicies;
+
+        private final ArrayList<ProviderConfig> providers;
+
+        private final ArrayList<InitializerConfig> initializers;
+
+        private final ArrayList<String> modules;
+
+        private final String defaultLanguage;
+
+        public State(Configuration configuration) {
+            parameters = copy(configuration.getParameters());
+            chainConfigs = copy(configuration.getChainConfigs());
+            plugins = copy(configuration.getPlugins());
+            mergePolicies = copy(configuration.getMergePolicies());
+            providers = copy(configuration.getProviderConfigurations());
+            initializers = copy(configuration.getInitializers());
+            modules = copy(configuration.getModules());
+            defaultLanguage = configuration.getDefaultLanguage();
+        }
+
+        private static <T> ArrayList<T> copy(Collection<T> values) {
+            return values == null ? null : new ArrayList<T>(values);
+        }
+
+        private static LinkedHashMap<String, Object> copy(Map<String, Object> values) {
+            return values == null ? null : new LinkedHashMap<String, Object>(values);
+        }
+
+        public void restore(Configuration configuration) {
+            configuration.setParameters(parameters);
+            if (chainConfigs != null) {
+                configuration.setChainConfigs(chainConfigs);
+            }
+            if (plugins != null) {
+                configuration.setPlugins(new LinkedList<PluginConfig>(plugins));
+            }
+            if (mergePolicies != null) {
+                configuration.setMergePolicies(new LinkedList<MergePolicyConfig>(mergePolicies));
+            }
+            if (providers != null) {
+                configuration.setProviderConfigurations(new LinkedList<ProviderConfig>(providers));
+            }
+            if (initializers != null) {
+                configuration.setInitializers(new LinkedList<InitializerConfig>(initializers));
+            }
+            if (modules != null) {
+                configuration.setModules(new LinkedList<String>(modules));
+            }
+            configuration.setDefaultLanguage(defaultLanguage);
+        }
+    }
+
+    /**
+     * Returns if a class can be part of a snapshot: the configuration entities, strings, numbers,
+     * collections and their arrays.
+     */
+    private static boolean isAllowed(String className) {
+        String name = className;
+        while (name.startsWith("[")) {
+            name = name.substring(1);
+        }
+        if (name.startsWith("L") && name.endsWith(";")) {
+            name = name.substring(1, name.length() - 1);
+        } else if (name.length() == 1) {
+            // primitive array
+            return true;
+        }
+        return ALLOWED_CLASSES.contains(name) || name.equals(State.class.getName())
+                || name.startsWith(ENTITIES_PACKAGE);
+    }
+
+    /**
+     * Rejects the values that could not be restored, so that their configurations are not stored.
+     */
+    private static class SnapshotOutputStream extends ObjectOutputStream {
+
+        public SnapshotOutputStream(OutputStream out) throws IOException {
+            super(out);
+        }
+
+        @Override
+        protected void annotateClass(Class<?> cl) throws IOException {
+            if (!isAllowed(cl.getName())) {
+                throw new NotSerializableException(cl.getName());
+            }
+        }
+    }
+
+    /**
+     * Resolves the classes of the snapshot (e.g. parameter values) with the class loader of the
+     * configuration. Only the allowed classes are resolved, so a tampered snapshot cannot instantiate
+     * any other serializable class of the classpath.
+     */
+    private static class SnapshotInputStream extends ObjectInputStream {
+
+        private final ClassLoader classLoader;
+
+        public SnapshotInputStream(InputStream in, ClassLoader classLoader) throws IOException {
+            super(in);
+            this.classLoader = classLoader;
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+            if (!isAllowed(desc.getName())) {
+                throw new InvalidClassException(desc.getName(), "the class is not allowed in a snapshot");
+            }
+            try {
+                return Class.forName(desc.getName(), false, classLoader);
+            } catch (ClassNotFoundException e) {
+                return super.resolveClass(desc);
+            }
+        }
+
+        @Override
+        protected Class<?> resolveProxyClass(String[] interfaces) throws IOException, ClassNotFoundException {
+            throw new InvalidClassException("The proxies are not allowed in a snapshot");
+        }
+    }
+}
@@ -15,17 +15,20 @@
  along with Walkmod.  If not, see <http://www.gnu.org/licenses/>.*/
 package org.walkmod.conf.entities;
 
+import java.io.Serializable;
 import java.util.Map;
 
 import org.walkmod.ChainReader;
 
-public class ReaderConfig {
+public class ReaderConfig implements Serializable {
+
+	private static final long serialVersionUID = 1L;
 
 	private String path;
 
 	private String type;
 
-	private ChainReader modelReader;
+	private transient ChainReader modelReader;
 
 	private Map<String, Object> parameters;
 
@@ -15,6 +15,7 @@
  along with Walkmod.  If not, see <http://www.gnu.org/licenses/>.*/
 package org.walkmod.conf.entities.impl;
 
+import java.io.Serializable;
 import java.util.List;
 import java.util.Map;
 
@@ -25,7 +26,9 @@ import org.walkmod.conf.entities.TransformationConfig;
 import org.walkmod.conf.entities.WalkerConfig;
 import org.walkmod.conf.entities.WriterConfig;
 
-public class ChainConfigImpl implements ChainConfig {
+public class ChainConfigImpl implements ChainConfig, Serializable {
+
+	private static final long serialVersionUID = 1L;
 
 	private String name;
 
@@ -35,7 +38,7 @@ public class ChainConfigImpl implements ChainConfig {
 
 	private List<TransformationConfig> transformations;
 
-	private Configuration configuration;
+	private transient Configuration configuration;
 
 	private WriterConfig writerConfig;
 
@@ -17,12 +17,18 @@ package org.walkmod.conf.entities.impl;
 
 import java.beans.PropertyDescriptor;
 import java.io.File;
+import java.io.IOException;
 import java.lang.reflect.Field;
+import java.net.URL;
+import java.net.URLClassLoader;
 import java.text.DateFormat;
 import java.text.DecimalFormat;
 import java.text.SimpleDateFormat;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
@@ -30,7 +36,9 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.TreeMap;
 
+import org.apache.commons.io.FileUtils;
 import org.apache.log4j.Logger;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.BeanWrapper;
@@ -57,11 +65,18 @@ import org.walkmod.conf.entities.MergePolicyConfig;
 import org.walkmod.conf.entities.PluginConfig;
 import org.walkmod.conf.entities.PropertyDefinition;
 import org.walkmod.conf.entities.ProviderConfig;
+import org.walkmod.conf.entities.ReaderConfig;
 import org.walkmod.conf.entities.TransformationConfig;
+import org.walkmod.conf.entities.WalkerConfig;
 import org.walkmod.exceptions.WalkModException;
 import org.walkmod.impl.DefaultChainAdapterFactory;
 import org.walkmod.merger.MergeEngine;
 import org.walkmod.merger.MergePolicy;
+import org.walkmod.util.ContentHash;
+import org.walkmod.util.IncrementalManifest;
+import org.walkmod.util.LineRanges;
+import org.walkmod.util.PathPatternMatcher;
+import org.walkmod.walkers.ChangeLogPrinter;
 import org.walkmod.walkers.VisitorMessage;
 import org.walkmod.writers.Summary;
 
@@ -601,10 +616,15 @@ public class ConfigurationImpl implements Configuration {
                         String[] excludes = options.getExcludes().toArray(new String[options.getExcludes().size()]);
                         tcfg.getReaderConfig().setExcludes(excludes);
                     }
+                    setWalkerThreads(tcfg, options);
+                    setReaderFiles(tcfg, options);
+                    setWalkerChangedLines(tcfg, options);
+                    IncrementalManifest manifest = setIncrementalManifest(tcfg, options);
 
                     ChainAdapter ap = apf.createChainProxy(this, tcfg.getName());
 
                     ap.execute();
+                    saveIncrementalManifest(manifest);
                     num += ap.getWalkerAdapter().getWalker().getNumModifications();
                     pos++;
                     if (options.isVerbose()) {
@@ -708,6 +728,19 @@ public class ConfigurationImpl implements Configuration {
                 }
             }
         }
+        Collection<ChainConfig> chains = getChainConfigs();
+        if (chains != null) {
+            for (ChainConfig cc : chains) {
+                setWalkerThreads(cc, options);
+                setReaderFiles(cc, options);
+                setWalkerChangedLines(cc, options);
+            }
+        }
+        IncrementalManifest manifest = null;
+        ChainConfig chainCfg = getChainConfig(name);
+        if (chainCfg != null) {
+            manifest = setIncrementalManifest(chainCfg, options);
+        }
         ChainAdapter ap = apf.createChainProxy(this, name);
         if (ap == null) {
             if (options.isVerbose()) {
@@ -729,6 +762,7 @@ public class ConfigurationImpl implements Configuration {
             try {
                 int size = getChainConfigs().size();
                 ap.execute();
+                saveIncrementalManifest(manifest);
 
                 //we check if some other chain config has been added and execute them
                 if (getChainConfigs().size() > size) {
@@ -809,6 +843,181 @@ public class ConfigurationImpl implements Configuration {
         }
     }
 
+    private void setWalkerThreads(ChainConfig cc, Options options) {
+        if (options.asMap().containsKey(Options.THREADS)) {
+            setWalkerParameter(cc.getWalkerConfig(), Options.THREADS, options.getThreads());
+        }
+    }
+
+    private void setWalkerChangedLines(ChainConfig cc, Options options) {
+        Map<String, LineRanges> changedLines = options.getChangedLines();
+        if (changedLines != null) {
+            Map<String, LineRanges> resolved = new HashMap<String, LineRanges>();
+            for (Map.Entry<String, LineRanges> entry : changedLines.entrySet()) {
+                File aux = new File(entry.getKey());
+                if (!aux.isAbsolute()) {
+                    aux = new File(options.getExecutionDirectory(), entry.getKey());
+                }
+                resolved.put(PathPatternMatcher.normalize(aux.getAbsolutePath()), entry.getValue());
+            }
+            setWalkerParameter(cc.getWalkerConfig(), "changedLines", resolved);
+        }
+    }
+
+    private void setWalkerParameter(WalkerConfig wc, String name, Object value) {
+        if (wc != null) {
+            Map<String, Object> params = wc.getParams();
+            if (params == null) {
+                params = new HashMap<String, Object>();
+            } else {
+                params = new HashMap<String, Object>(params);
+            }
+            params.put(name, value);
+            wc.setParams(params);
+        }
+    }
+
+    private IncrementalManifest setIncrementalManifest(ChainConfig cc, Options options) {
+        ReaderConfig rc = cc.getReaderConfig();
+        if (!options.isIncremental() || rc == null) {
+            return null;
+        }
+        IncrementalManifest manifest = null;
+        try {
+            File file = IncrementalManifest.getManifestFile(options.getExecutionDirectory(), cc.getName());
+            manifest = new IncrementalManifest(file, getIncrementalFingerprint(cc, options));
+        } catch (IOException e) {
+            log.warn("The incremental mode is disabled for the chain " + cc.getName() + ": " + e.getMessage());
+            return null;
+        }
+        setReaderParameter(rc, "manifest", manifest);
+        return manifest;
+    }
+
+    private void setReaderFiles(ChainConfig cc, Options options) {
+        List<String> files = options.getFiles();
+        ReaderConfig rc = cc.getReaderConfig();
+        if (files != null && rc != null) {
+            String[] paths = new String[files.size()];
+            int i = 0;
+            for (String file : files) {
+                File aux = new File(file);
+                if (!aux.isAbsolute()) {
+                    aux = new File(options.getExecutionDirectory(), file);
+                }
+                paths[i++] = aux.getAbsolutePath();
+            }
+            setReaderParameter(rc, "files", paths);
+        }
+    }
+
+    /**
+     * Sets a parameter of the reader, even if it has been already created. Readers without the
+     * property ignore it.
+     */
+    private void setReaderParameter(ReaderConfig rc, String name, Object value) {
+        Map<String, Object> params = rc.getParameters();
+        if (params == null) {
+            params = new HashMap<String, Object>();
+        } else {
+            params = new HashMap<String, Object>(params);
+        }
+        params.put(name, value);
+        rc.setParameters(params);
+        if (rc.getModelReader() != null) {
+            BeanWrapper bw = new BeanWrapperImpl(rc.getModelReader());
+            bw.setPropertyValues(new MutablePropertyValues(Collections.singletonMap(name, value)), true, true);
+        }
+    }
+
+    /**
+     * Hash of the inputs of a chain, except the source files: the configuration files, the chain
+     * configuration, the execution parameters and the resolved plugins.
+     */
+    private String getIncrementalFingerprint(ChainConfig cc, Options options) throws IOException {
+        ContentHash hash = new ContentHash();
+        hash.update(cc.getName());
+        hash.update(String.valueOf(getExecutionMode()));
+        hash.update(options.getPath());
+        if (options.getDynamicArgs() != null) {
+            hash.update(new TreeMap<String, Object>(options.getDynamicArgs()).toString());
+        }
+        File executionDir = options.getExecutionDirectory();
+        List<File> cfgFiles = new LinkedList<File>();
+        if (options.getConfigurationFile() != null) {
+            cfgFiles.add(options.getConfigurationFile());
+        }
+        cfgFiles.add(new File(executionDir, "walkmod.xml"));
+        cfgFiles.add(new File(executionDir, "walkmod.yml"));
+        for (File cfgFile : cfgFiles) {
+            if (cfgFile.isFile()) {
+                hash.update(cfgFile.getAbsolutePath());
+                hash.update(cfgFile);
+            }
+        }
+        updateParameters(hash, cc.getReaderConfig().getParameters());
+        if (cc.getWalkerConfig() != null) {
+            updateParameters(hash, cc.getWalkerConfig().getParams());
+        }
+        if (plugins != null) {
+            for (PluginConfig pc : plugins) {
+                hash.update(pc.getGroupId() + ":" + pc.getArtifactId() + ":" + pc.getVersion());
+            }
+        }
+        ClassLoader cl = getClassLoader();
+        while (cl != null) {
+            if (cl instanceof URLClassLoader) {
+                URL[] urls = ((URLClassLoader) cl).getURLs();
+                for (int i = 0; i < urls.length; i++) {
+                    hash.update(urls[i].toString());
+                    File jar = FileUtils.toFile(urls[i]);
+                    if (jar != null && jar.isFile()) {
+                        hash.update(jar.length() + ":" + jar.lastModified());
+                    }
+                }
+            }
+            cl = cl.getParent();
+        }
+        return hash.toHex();
+    }
+
+    /**
+     * Hashes the parameters in a stable order. The files to read and the manifest itself are not an input
+     * of the chain, and arrays are hashed by their elements.
+     */
+    private void updateParameters(ContentHash hash, Map<String, Object> params) {
+        if (params != null) {
+            for (Map.Entry<String, Object> entry : new TreeMap<String, Object>(params).entrySet()) {
+                String key = entry.getKey();
+                if (!"files".equals(key) && !"manifest".equals(key)) {
+                    Object value = entry.getValue();
+                    hash.update(key);
+                    if (value instanceof Object[]) {
+                        hash.update(Arrays.deepToString((Object[]) value));
+                    } else {
+                        hash.update(String.valueOf(value));
+                    }
+                }
+            }
+        }
+    }
+
+    private void saveIncrementalManifest(IncrementalManifest manifest) {
+        if (manifest != null) {
+            try {
+                Summary summary = Summary.getInstance();
+                List<File> writtenFiles = null;
+                if (!ExecutionModeEnum.CHECK.equals(getExecutionMode())) {
+                    // in the check mode, all the visited files are reported as written
+                    writtenFiles = summary.getWrittenFiles();
+                }
+                manifest.save(writtenFiles, summary.getReportedFiles());
+            } catch (IOException e) {
+                log.warn("The incremental manifest " + manifest.getFile().getAbsolutePath() + " cannot be saved", e);
+            }
+        }
+    }
+
     @Override
     public void execute(String userDir, Options options, String... chains) {
         ChainAdapterFactory apf = new DefaultChainAdapterFactory();
@@ -825,6 +1034,11 @@ public class ConfigurationImpl implements Configuration {
                     executeChain(userDir, options, apf, chain);
                 }
             }
+            Summary summary = Summary.getInstance();
+            if (options.isVerbose() && !summary.getChanges(Summary.ADDED).isEmpty()) {
+                // total changes of the execution
+                new ChangeLogPrinter(summary).print();
+            }
         }
     }
 
@@ -15,11 +15,14 @@
   along with Walkmod.  If not, see <http://www.gnu.org/licenses/>.*/
 package org.walkmod.conf.entities.impl;
 
+import java.io.Serializable;
 import java.util.Map;
 
 import org.walkmod.conf.entities.InitializerConfig;
 
-public class InitializerConfigImpl implements InitializerConfig {
+public class InitializerConfigImpl implements InitializerConfig, Serializable {
+
+	private static final long serialVersionUID = 1L;
 
 	private String type;
 
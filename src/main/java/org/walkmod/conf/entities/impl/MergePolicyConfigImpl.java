@@ -15,11 +15,14 @@
  along with Walkmod.  If not, see <http://www.gnu.org/licenses/>.*/
 package org.walkmod.conf.entities.impl;
 
+import java.io.Serializable;
 import java.util.Map;
 
 import org.walkmod.conf.entities.MergePolicyConfig;
 
-public class MergePolicyConfigImpl implements MergePolicyConfig {
+public class MergePolicyConfigImpl implements MergePolicyConfig, Serializable {
+
+	private static final long serialVersionUID = 1L;
 
 	private String defaultObjectPolicy;
 
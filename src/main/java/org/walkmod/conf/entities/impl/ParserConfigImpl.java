@@ -15,17 +15,20 @@
  along with Walkmod.  If not, see <http://www.gnu.org/licenses/>.*/
 package org.walkmod.conf.entities.impl;
 
+import java.io.Serializable;
 import java.util.Map;
 
 import org.walkmod.conf.entities.ParserConfig;
 
-public class ParserConfigImpl implements ParserConfig {
+public class ParserConfigImpl implements ParserConfig, Serializable {
+
+	private static final long serialVersionUID = 1L;
 
 	private String type;
 
 	private Map<String, Object> parameters;
 
-	private Object parserInstance;
+	private transient Object parserInstance;
 
 	@Override
 	public String getType() {
@@ -15,9 +15,13 @@
  along with Walkmod.  If not, see <http://www.gnu.org/licenses/>.*/
 package org.walkmod.conf.entities.impl;
 
+import java.io.Serializable;
+
 import org.walkmod.conf.entities.PluginConfig;
 
-public class PluginConfigImpl implements PluginConfig {
+public class PluginConfigImpl implements PluginConfig, Serializable {
+
+	private static final long serialVersionUID = 1L;
 
 	private String groupId;
 
@@ -15,11 +15,14 @@
  along with Walkmod.  If not, see <http://www.gnu.org/licenses/>.*/
 package org.walkmod.conf.entities.impl;
 
+import java.io.Serializable;
 import java.util.Map;
 
 import org.walkmod.conf.entities.TransformationConfig;
 
-public class TransformationConfigImpl implements TransformationConfig {
+public class TransformationConfigImpl implements TransformationConfig, Serializable {
+
+	private static final long serialVersionUID = 1L;
 
 	private String name;
 
@@ -27,7 +30,7 @@ public class TransformationConfigImpl implements TransformationConfig {
 
 	private Map<String, Object> parameters;
 
-	private Object visitorInstance;
+	private transient Object visitorInstance;
 
 	private boolean isMergeable = false;
 
@@ -16,6 +16,7 @@
 
 package org.walkmod.conf.entities.impl;
 
+import java.io.Serializable;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -26,7 +27,9 @@ import org.walkmod.conf.entities.ParserConfig;
 import org.walkmod.conf.entities.TransformationConfig;
 import org.walkmod.conf.entities.WalkerConfig;
 
-public class WalkerConfigImpl implements WalkerConfig {
+public class WalkerConfigImpl implements WalkerConfig, Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     private String type;
 
@@ -38,7 +41,7 @@ public class WalkerConfigImpl implements WalkerConfig {
 
     private ChainConfig architectureConfig;
 
-    private ChainWalker walker;
+    private transient ChainWalker walker;
 
     private ParserConfig parserConfig;
 
@@ -15,12 +15,15 @@
  along with Walkmod.  If not, see <http://www.gnu.org/licenses/>.*/
 package org.walkmod.conf.entities.impl;
 
+import java.io.Serializable;
 import java.util.Map;
 
 import org.walkmod.ChainWriter;
 import org.walkmod.conf.entities.WriterConfig;
 
-public class WriterConfigImpl implements WriterConfig {
+public class WriterConfigImpl implements WriterConfig, Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     private String path;
 
@@ -32,7 +35,7 @@ public class WriterConfigImpl implements WriterConfig {
 
     private Map<String, Object> params;
 
-    private ChainWriter modelWriter;
+    private transient ChainWriter modelWriter;
 
     private boolean isPatchWriter = false;
 
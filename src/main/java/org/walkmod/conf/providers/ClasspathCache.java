@@ -0,0 +1,207 @@
+/*
+  Copyright (C) 2013 Raquel Pau and Albert Coroleu.
+
+ Walkmod is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Lesser General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Walkmod is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public License
+ along with Walkmod.  If not, see <http://www.gnu.org/licenses/>.*/
+package org.walkmod.conf.providers;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collection;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Properties;
+import java.util.TreeSet;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.walkmod.util.ContentHash;
+import org.walkmod.util.SafeFileOutputStream;
+
+/**
+ * Persistent cache of the jars resolved for a set of plugin coordinates, which is stored under
+ * <code>~/.walkmod/cache/classpath</code> and shared by all the projects of the user. An entry is
+ * valid while all its jars exist with the same size and last modification time. The entries with
+ * dynamic versions (e.g. <code>latest.integration</code>) also expire after a time to live, except in
+ * offline mode.
+ */
+public class ClasspathCache {
+
+	/** Time to live of the entries with dynamic versions, in milliseconds. */
+	public static final long DEFAULT_DYNAMIC_TTL = 60 * 60 * 1000L;
+
+	private static final String COORDINATES_KEY = "walkmod.coordinates";
+
+	private static final String RESOLVED_KEY = "walkmod.resolved";
+
+	private static final String DYNAMIC_KEY = "walkmod.dynamic";
+
+	private static final String JAR_PREFIX = "jar.";
+
+	private static final Log LOG = LogFactory.getLog(ClasspathCache.class);
+
+	private final File directory;
+
+	private long dynamicTtl = DEFAULT_DYNAMIC_TTL;
+
+	public ClasspathCache() {
+		this(new File(System.getProperty("user.home"), ".walkmod" + File.separator + "cache" + File.separator
+				+ "classpath"));
+	}
+
+	public ClasspathCache(File directory) {
+		this.directory = directory;
+	}
+
+	public File getDirectory() {
+		return directory;
+	}
+
+	public long getDynamicTtl() {
+		return dynamicTtl;
+	}
+
+	/**
+	 * Sets the time to live (in milliseconds) of the entries with dynamic versions.
+	 */
+	public void setDynamicTtl(long dynamicTtl) {
+		this.dynamicTtl = dynamicTtl;
+	}
+
+	/**
+	 * Returns if a version must be resolved again from time to time: <code>latest.*</code>, version
+	 * ranges, prefixes (<code>1.+</code>) and snapshots.
+	 */
+	public static boolean isDynamic(String version) {
+		return version == null || version.startsWith("latest.") || version.endsWith("+") || version.startsWith("[")
+				|| version.startsWith("(") || version.endsWith("-SNAPSHOT");
+	}
+
+	/**
+	 * Returns the jars resolved for some coordinates, or null if they are not cached or some jar has
+	 * changed.
+	 *
+	 * @param coordinates
+	 *            <code>groupId:artifactId:version</code> of the plugins.
+	 * @param settings
+	 *            fingerprint of the resolution settings (e.g. the repositories).
+	 * @param offline
+	 *            if the expired entries can be used because nothing can be resolved.
+	 */
+	public Collection<File> get(Collection<String> coordinates, String settings, boolean offline) {
+		String key = getKey(coordinates, settings);
+		File file = getFile(key);
+		if (!file.isFile()) {
+			return null;
+		}
+		Properties properties = new Properties();
+		try {
+			InputStream is = new FileInputStream(file);
+			try {
+				properties.load(is);
+			} finally {
+				is.close();
+			}
+		} catch (IOException e) {
+			LOG.debug("The classpath cache " + file.getAbsolutePath() + " cannot be read", e);
+			return null;
+		}
+		if (!key.equals(properties.getProperty(COORDINATES_KEY))) {
+			return null;
+		}
+		if (!offline && Boolean.parseBoolean(properties.getProperty(DYNAMIC_KEY))) {
+			try {
+				long resolved = Long.parseLong(properties.getProperty(RESOLVED_KEY));
+				if (System.currentTimeMillis() - resolved > dynamicTtl) {
+					return null;
+				}
+			} catch (NumberFormatException e) {
+				return null;
+			}
+		}
+		List<File> result = new LinkedList<File>();
+		for (int i = 0; properties.containsKey(JAR_PREFIX + i); i++) {
+			// size:lastModified:path
+			String[] parts = properties.getProperty(JAR_PREFIX + i).split(":", 3);
+			if (parts.length != 3) {
+				return null;
+			}
+			File jar = new File(parts[2]);
+			try {
+				if (!jar.isFile() || jar.length() != Long.parseLong(parts[0])
+						|| jar.lastModified() != Long.parseLong(parts[1])) {
+					return null;
+				}
+			} catch (NumberFormatException e) {
+				return null;
+			}
+			result.add(jar);
+		}
+		return result;
+	}
+
+	/**
+	 * Stores the jars resolved for some coordinates.
+	 */
+	public void put(Collection<String> coordinates, String settings, Collection<File> jars) {
+		String key = getKey(coordinates, settings);
+		boolean dynamic = false;
+		for (String coordinate : coordinates) {
+			dynamic = dynamic || isDynamic(coordinate.substring(coordinate.lastIndexOf(':') + 1));
+		}
+		Properties properties = new Properties();
+		properties.setProperty(COORDINATES_KEY, key);
+		properties.setProperty(RESOLVED_KEY, Long.toString(System.currentTimeMillis()));
+		properties.setProperty(DYNAMIC_KEY, Boolean.toString(dynamic));
+		int i = 0;
+		for (File jar : jars) {
+			File absolute = jar.getAbsoluteFile();
+			properties.setProperty(JAR_PREFIX + i, absolute.length() + ":" + absolute.lastModified() + ":"
+					+ absolute.getPath());
+			i++;
+		}
+		File file = getFile(key);
+		try {
+			if (!directory.exists()) {
+				directory.mkdirs();
+			}
+			OutputStream os = new SafeFileOutputStream(file, true, false);
+			try {
+				properties.store(os, "walkmod resolved classpath");
+			} finally {
+				os.close();
+			}
+		} catch (IOException e) {
+			LOG.debug("The classpath cache " + file.getAbsolutePath() + " cannot be saved", e);
+		}
+	}
+
+	/**
+	 * The coordinates are sorted, so the order of the plugins does not matter.
+	 */
+	private static String getKey(Collection<String> coordinates, String settings) {
+		StringBuilder sb = new StringBuilder();
+		for (String coordinate : new TreeSet<String>(coordinates)) {
+			sb.append(coordinate).append(';');
+		}
+		sb.append(settings);
+		return sb.toString();
+	}
+
+	private File getFile(String key) {
+		return new File(directory, new ContentHash().update(key).toHex() + ".properties");
+	}
+}
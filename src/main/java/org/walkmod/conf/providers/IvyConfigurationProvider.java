@@ -72,6 +72,8 @@ public class IvyConfigurationProvider implements ConfigurationProvider {
 
 	private boolean verbose = false;
 
+	private ClasspathCache classpathCache = new ClasspathCache();
+
 	public IvyConfigurationProvider() {
 		this(false);
 	}
@@ -148,23 +150,54 @@ public class IvyConfigurationProvider implements ConfigurationProvider {
 
 		String[] confs = new String[] { "default" };
 		resolveOptions = new ResolveOptions().setConfs(confs);
-		if (isOffLine) {
+		if (isUseCacheOnly()) {
 			resolveOptions = resolveOptions.setUseCacheOnly(true);
-		} else {
-			Map<String, Object> params = configuration.getParameters();
-			if (params != null) {
-				Object value = params.get("offline");
-				if (value != null) {
-					String offlineOpt = value.toString();
-					if (offlineOpt != null) {
-						boolean offline = Boolean.parseBoolean(offlineOpt);
-						if (offline) {
-							resolveOptions = resolveOptions.setUseCacheOnly(true);
-						}
-					}
-				}
+		}
+	}
+
+	private boolean isUseCacheOnly() {
+		if (isOffLine) {
+			return true;
+		}
+		Map<String, Object> params = configuration.getParameters();
+		if (params != null) {
+			Object value = params.get("offline");
+			if (value != null) {
+				return Boolean.parseBoolean(value.toString());
 			}
 		}
+		return false;
+	}
+
+	/**
+	 * Fingerprint of the Ivy settings, so that the cached classpaths are resolved again when the local
+	 * settings (e.g. the repositories) change.
+	 */
+	private String getSettingsFingerprint() {
+		File settingsFile = new File(IVY_SETTINGS_FILE);
+		if (settingsFile.isFile()) {
+			return settingsFile.getAbsolutePath() + ":" + settingsFile.length() + ":" + settingsFile.lastModified();
+		}
+		return IVY_SETTINGS_FILE;
+	}
+
+	/**
+	 * Sets the time to live (in seconds) of the cached classpaths with dynamic versions (e.g.
+	 * <code>latest.integration</code>). It can also be set with the <code>dynamicVersionsTtl</code>
+	 * parameter of the configuration.
+	 */
+	public void setDynamicVersionsTtl(long seconds) {
+		if (classpathCache != null) {
+			classpathCache.setDynamicTtl(seconds * 1000L);
+		}
+	}
+
+	public void setClasspathCache(ClasspathCache classpathCache) {
+		this.classpathCache = classpathCache;
+	}
+
+	public ClasspathCache getClasspathCache() {
+		return classpathCache;
 	}
 
 	@Override
@@ -175,14 +208,32 @@ public class IvyConfigurationProvider implements ConfigurationProvider {
 		ConfigurationException ce = null;
 		try {
 			if (plugins != null) {
-				Iterator<PluginConfig> it = plugins.iterator();
-				initIvy();
-				while (it.hasNext()) {
-					plugin = it.next();
-					addArtifact(plugin.getGroupId(), plugin.getArtifactId(), plugin.getVersion());
+				Set<String> coordinates = new LinkedHashSet<String>();
+				for (PluginConfig pc : plugins) {
+					coordinates.add(pc.getGroupId() + ":" + pc.getArtifactId() + ":" + pc.getVersion());
+				}
+				jarsToLoad = null;
+				if (classpathCache != null) {
+					Map<String, Object> params = configuration.getParameters();
+					if (params != null && params.get("dynamicVersionsTtl") != null) {
+						setDynamicVersionsTtl(Long.parseLong(params.get("dynamicVersionsTtl").toString()));
+					}
+					// a hit does not need an Ivy instance
+					jarsToLoad = classpathCache.get(coordinates, getSettingsFingerprint(), isUseCacheOnly());
+				}
+				if (jarsToLoad == null) {
+					Iterator<PluginConfig> it = plugins.iterator();
+					initIvy();
+					while (it.hasNext()) {
+						plugin = it.next();
+						addArtifact(plugin.getGroupId(), plugin.getArtifactId(), plugin.getVersion());
 
+					}
+					jarsToLoad = resolveArtifacts();
+					if (classpathCache != null && jarsToLoad != null) {
+						classpathCache.put(coordinates, getSettingsFingerprint(), jarsToLoad);
+					}
 				}
-				jarsToLoad = resolveArtifacts();
 				URL[] urls = new URL[jarsToLoad.size()];
 				int i = 0;
 				for (File jar : jarsToLoad) {
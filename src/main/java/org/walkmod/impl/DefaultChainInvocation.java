@@ -15,10 +15,13 @@
  along with Walkmod.  If not, see <http://www.gnu.org/licenses/>.*/
 package org.walkmod.impl;
 
+import java.io.IOException;
+
 import org.walkmod.ChainAdapter;
 import org.walkmod.ChainInvocation;
 import org.walkmod.ChainWalkerAdapter;
 import org.walkmod.ChainWalkerInvocation;
+import org.walkmod.ChainWriter;
 import org.walkmod.exceptions.WalkModException;
 
 public class DefaultChainInvocation implements ChainInvocation {
@@ -35,6 +38,19 @@ public class DefaultChainInvocation implements ChainInvocation {
 		ChainWalkerAdapter wa = chainAdapter.getWalkerAdapter();
 		ChainWalkerInvocation wi = new DefaultChainWalkerInvocation();
 		wi.init(wa);
-		wi.invoke();
+		try {
+			wi.invoke();
+		} finally {
+			// waits for the writes in background
+			ChainWriter writer = chainAdapter.getChainWriter();
+			if (writer != null) {
+				try {
+					writer.flush();
+				} catch (IOException e) {
+					throw new WalkModException("The results of the chain " + chainAdapter.getName()
+							+ " cannot be written", e);
+				}
+			}
+		}
 	}
 }
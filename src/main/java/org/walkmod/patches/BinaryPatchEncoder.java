@@ -0,0 +1,115 @@
+/*
+  Copyright (C) 2013 Raquel Pau and Albert Coroleu.
+
+ Walkmod is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Lesser General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Walkmod is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public License
+ along with Walkmod.  If not, see <http://www.gnu.org/licenses/>.*/
+package org.walkmod.patches;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Writes patches in the {@link BinaryPatchFormatter binary format} into a stream. The segment header
+ * is written with the first patch, and each location or cause is added to the string table the first
+ * time it is used. It is not thread-safe.
+ */
+public class BinaryPatchEncoder {
+
+	private static final String CHARSET = "UTF-8";
+
+	private final OutputStream out;
+
+	private final Map<String, Integer> strings = new HashMap<String, Integer>();
+
+	private final byte[] varint = new byte[5];
+
+	private boolean started = false;
+
+	/**
+	 * @param out
+	 *            stream to write, which should be buffered.
+	 */
+	public BinaryPatchEncoder(OutputStream out) {
+		this.out = out;
+	}
+
+	public void write(Patch patch) throws IOException {
+		if (!started) {
+			out.write(BinaryPatchFormatter.MAGIC);
+			out.write(BinaryPatchFormatter.VERSION);
+			started = true;
+		}
+		int location = reference(patch.getLocation());
+		int cause = reference(patch.getCause());
+		out.write(BinaryPatchFormatter.PATCH_RECORD);
+		out.write(patch.getIsMultiple() ? BinaryPatchFormatter.MULTIPLE_FLAG : 0);
+		writeVarint(location);
+		writeVarint(cause);
+		writeSignedVarint(patch.getBeginLine());
+		writeSignedVarint(patch.getBeginColumn());
+		writeSignedVarint(patch.getEndLine());
+		writeSignedVarint(patch.getEndColumn());
+		String diff = patch.getDiff();
+		if (diff == null) {
+			writeVarint(0);
+		} else {
+			byte[] bytes = diff.getBytes(CHARSET);
+			writeVarint(bytes.length + 1);
+			out.write(bytes);
+		}
+	}
+
+	/**
+	 * Returns the reference of a string (its index in the table plus one, or 0 for null), and writes
+	 * it into the table if it is new.
+	 */
+	private int reference(String value) throws IOException {
+		if (value == null) {
+			return 0;
+		}
+		Integer index = strings.get(value);
+		if (index == null) {
+			byte[] bytes = value.getBytes(CHARSET);
+			out.write(BinaryPatchFormatter.STRING_RECORD);
+			writeVarint(bytes.length);
+			out.write(bytes);
+			index = strings.size();
+			strings.put(value, index);
+		}
+		return index + 1;
+	}
+
+	private void writeSignedVarint(int value) throws IOException {
+		writeVarint((value << 1) ^ (value >> 31));
+	}
+
+	private void writeVarint(int value) throws IOException {
+		int length = 0;
+		while ((value & ~0x7F) != 0) {
+			varint[length++] = (byte) ((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		varint[length++] = (byte) value;
+		out.write(varint, 0, length);
+	}
+
+	public void flush() throws IOException {
+		out.flush();
+	}
+
+	public void close() throws IOException {
+		out.close();
+	}
+}
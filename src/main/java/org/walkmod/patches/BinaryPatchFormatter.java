@@ -0,0 +1,58 @@
+/*
+  Copyright (C) 2013 Raquel Pau and Albert Coroleu.
+
+ Walkmod is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Lesser General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Walkmod is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public License
+ along with Walkmod.  If not, see <http://www.gnu.org/licenses/>.*/
+package org.walkmod.patches;
+
+import java.util.List;
+
+/**
+ * Compact binary format for large sets of patches. The records are written by a
+ * {@link BinaryPatchEncoder} into the patch channels and read with a {@link BinaryPatchReader}.
+ *
+ * <p>
+ * Each execution appends a segment that starts with the {@link #MAGIC} bytes and the {@link #VERSION}.
+ * The locations and causes are written once per segment into a string table, so the patches only
+ * contain references to them. The lines and columns are varints (zigzag encoded), and the diffs are
+ * UTF-8 bodies prefixed with their length.
+ * </p>
+ */
+public class BinaryPatchFormatter implements PatchFormatter {
+
+    public static final byte[] MAGIC = { 'W', 'M', 'P', 'B' };
+
+    public static final int VERSION = 1;
+
+    /** Tag of a string of the string table. */
+    static final int STRING_RECORD = 1;
+
+    /** Tag of a patch. */
+    static final int PATCH_RECORD = 2;
+
+    /** Flag of a patch that belongs to a file with several changes. */
+    static final int MULTIPLE_FLAG = 1;
+
+    /**
+     * Binary patches are not text, so they are written with a {@link BinaryPatchEncoder}.
+     */
+    @Override
+    public String format(Patch patch) {
+        throw new UnsupportedOperationException("The binary patches must be written with a BinaryPatchEncoder");
+    }
+
+    @Override
+    public String format(String location, List<Patch> patches) {
+        throw new UnsupportedOperationException("The binary patches must be written with a BinaryPatchEncoder");
+    }
+}
@@ -0,0 +1,351 @@
+/*
+  Copyright (C) 2013 Raquel Pau and Albert Coroleu.
+
+ Walkmod is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Lesser General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Walkmod is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public License
+ along with Walkmod.  If not, see <http://www.gnu.org/licenses/>.*/
+package org.walkmod.patches;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Reads the patches of the {@link BinaryPatchFormatter binary format}. The patch files are mapped into
+ * memory, so the patches are decoded from the buffer and the diffs are returned as slices of it,
+ * without copies. The patches are read one by one with {@link #next()}:
+ *
+ * <pre>
+ * BinaryPatchReader reader = BinaryPatchReader.open(file);
+ * while (reader.next()) {
+ * 	ByteBuffer diff = reader.getDiff();
+ * 	...
+ * }
+ * </pre>
+ *
+ * Compressed files (<code>.gz</code>) are inflated into memory.
+ */
+public class BinaryPatchReader {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private final ByteBuffer buffer;
+
+	private final List<String> strings = new ArrayList<String>();
+
+	private String location;
+
+	private String cause;
+
+	private int beginLine;
+
+	private int beginColumn;
+
+	private int endLine;
+
+	private int endColumn;
+
+	private boolean multiple;
+
+	private ByteBuffer diff;
+
+	public BinaryPatchReader(ByteBuffer buffer) {
+		this.buffer = buffer.duplicate();
+	}
+
+	/**
+	 * Maps a patch file, or inflates it if it is compressed with gzip.
+	 */
+	public static BinaryPatchReader open(File file) throws IOException {
+		if (isGzip(file)) {
+			InputStream is = new GZIPInputStream(new FileInputStream(file));
+			try {
+				ByteArrayOutputStream content = new ByteArrayOutputStream();
+				byte[] chunk = new byte[64 * 1024];
+				int read;
+				while ((read = is.read(chunk)) != -1) {
+					content.write(chunk, 0, read);
+				}
+				return new BinaryPatchReader(ByteBuffer.wrap(content.toByteArray()));
+			} finally {
+				is.close();
+			}
+		}
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			if (channel.size() > Integer.MAX_VALUE) {
+				throw new IOException("The patch file " + file.getPath() + " is too large to be mapped");
+			}
+			// the mapping remains valid after closing the file
+			return new BinaryPatchReader(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		} finally {
+			raf.close();
+		}
+	}
+
+	/**
+	 * Returns if a file (or its gzip content) starts with the {@link BinaryPatchFormatter#MAGIC}
+	 * bytes.
+	 */
+	public static boolean isBinaryPatch(File file) throws IOException {
+		InputStream is = new FileInputStream(file);
+		try {
+			if (isGzip(file)) {
+				is = new GZIPInputStream(is);
+			}
+			byte[] magic = BinaryPatchFormatter.MAGIC;
+			for (int i = 0; i < magic.length; i++) {
+				if (is.read() != magic[i]) {
+					return false;
+				}
+			}
+			return true;
+		} finally {
+			is.close();
+		}
+	}
+
+	private static boolean isGzip(File file) throws IOException {
+		InputStream is = new FileInputStream(file);
+		try {
+			return is.read() == 0x1F && is.read() == 0x8B;
+		} finally {
+			is.close();
+		}
+	}
+
+	/**
+	 * Moves to the next patch.
+	 *
+	 * @return false if there are no more patches.
+	 * @throws IOException
+	 *             if the content is not a valid binary patch.
+	 */
+	public boolean next() throws IOException {
+		while (buffer.hasRemaining()) {
+			int tag = buffer.get();
+			if (tag == BinaryPatchFormatter.MAGIC[0]) {
+				readSegmentHeader();
+			} else if (tag == BinaryPatchFormatter.STRING_RECORD) {
+				strings.add(UTF8.decode(slice(readVarint())).toString());
+			} else if (tag == BinaryPatchFormatter.PATCH_RECORD) {
+				readPatch();
+				return true;
+			} else {
+				throw new IOException("Invalid binary patch record " + tag + " at " + (buffer.position() - 1));
+			}
+		}
+		diff = null;
+		return false;
+	}
+
+	/**
+	 * Each segment (e.g. each execution appended to the file) starts a new string table.
+	 */
+	private void readSegmentHeader() throws IOException {
+		byte[] magic = BinaryPatchFormatter.MAGIC;
+		for (int i = 1; i < magic.length; i++) {
+			if (!buffer.hasRemaining() || buffer.get() != magic[i]) {
+				throw new IOException("Invalid binary patch header at " + buffer.position());
+			}
+		}
+		if (!buffer.hasRemaining() || buffer.get() != BinaryPatchFormatter.VERSION) {
+			throw new IOException("Unsupported binary patch version");
+		}
+		strings.clear();
+	}
+
+	private void readPatch() throws IOException {
+		int flags = readByte();
+		multiple = (flags & BinaryPatchFormatter.MULTIPLE_FLAG) != 0;
+		location = readString();
+		cause = readString();
+		beginLine = readSignedVarint();
+		beginColumn = readSignedVarint();
+		endLine = readSignedVarint();
+		endColumn = readSignedVarint();
+		int length = readVarint();
+		diff = length == 0 ? null : slice(length - 1);
+	}
+
+	private String readString() throws IOException {
+		int reference = readVarint();
+		if (reference == 0) {
+			return null;
+		}
+		if (reference > strings.size()) {
+			throw new IOException("Invalid string reference " + reference + " at " + buffer.position());
+		}
+		return strings.get(reference - 1);
+	}
+
+	private ByteBuffer slice(int length) throws IOException {
+		if (length < 0 || length > buffer.remaining()) {
+			throw new IOException("Truncated binary patch at " + buffer.position());
+		}
+		ByteBuffer result = buffer.slice();
+		result.limit(length);
+		buffer.position(buffer.position() + length);
+		return result.asReadOnlyBuffer();
+	}
+
+	private int readByte() throws IOException {
+		if (!buffer.hasRemaining()) {
+			throw new IOException("Truncated binary patch at " + buffer.position());
+		}
+		return buffer.get() & 0xFF;
+	}
+
+	private int readSignedVarint() throws IOException {
+		int value = readVarint();
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	private int readVarint() throws IOException {
+		int value = 0;
+		for (int shift = 0; shift < 35; shift += 7) {
+			int b = readByte();
+			value |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IOException("Invalid varint at " + buffer.position());
+	}
+
+	public String getLocation() {
+		return location;
+	}
+
+	public String getCause() {
+		return cause;
+	}
+
+	public int getBeginLine() {
+		return beginLine;
+	}
+
+	public int getBeginColumn() {
+		return beginColumn;
+	}
+
+	public int getEndLine() {
+		return endLine;
+	}
+
+	public int getEndColumn() {
+		return endColumn;
+	}
+
+	public boolean isMultiple() {
+		return multiple;
+	}
+
+	/**
+	 * Returns the UTF-8 diff of the current patch, which is a read-only slice of the patch file, or
+	 * null if the patch has no diff.
+	 */
+	public ByteBuffer getDiff() {
+		return diff == null ? null : diff.duplicate();
+	}
+
+	/**
+	 * Decodes the current patch.
+	 */
+	public Patch getPatch() {
+		String text = diff == null ? null : UTF8.decode(diff.duplicate()).toString();
+		return new Patch(text, beginLine, beginColumn, endLine, endColumn, cause, location, multiple);
+	}
+
+	/**
+	 * Decodes all the remaining patches.
+	 */
+	public List<Patch> readAll() throws IOException {
+		List<Patch> result = new LinkedList<Patch>();
+		while (next()) {
+			result.add(getPatch());
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the UTF-8 diffs of the remaining patches as a single unified diff, which is read from the
+	 * buffer as it is consumed. Each diff is terminated with a line feed.
+	 */
+	public InputStream openUnifiedDiff() {
+		return new DiffInputStream();
+	}
+
+	private class DiffInputStream extends InputStream {
+
+		private ByteBuffer current;
+
+		private boolean pendingLineFeed = false;
+
+		private boolean ready() throws IOException {
+			while (current == null || !current.hasRemaining()) {
+				if (pendingLineFeed) {
+					return true;
+				}
+				if (!next()) {
+					return false;
+				}
+				current = getDiff();
+				if (current != null && current.hasRemaining()) {
+					pendingLineFeed = current.get(current.limit() - 1) != '\n';
+				}
+			}
+			return true;
+		}
+
+		@Override
+		public int read() throws IOException {
+			if (!ready()) {
+				return -1;
+			}
+			if (current == null || !current.hasRemaining()) {
+				pendingLineFeed = false;
+				return '\n';
+			}
+			return current.get() & 0xFF;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (len == 0) {
+				return 0;
+			}
+			if (!ready()) {
+				return -1;
+			}
+			if (current == null || !current.hasRemaining()) {
+				pendingLineFeed = false;
+				b[off] = '\n';
+				return 1;
+			}
+			int length = Math.min(len, current.remaining());
+			current.get(b, off, length);
+			return length;
+		}
+	}
+}
@@ -15,20 +15,25 @@
   along with Walkmod.  If not, see <http://www.gnu.org/licenses/>.*/
 package org.walkmod.patches;
 
+import java.io.IOException;
+import java.io.StringWriter;
 import java.util.List;
 
-import com.alibaba.fastjson.JSONObject;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 
 public class JsonPatchFormatter implements PatchFormatter {
     private ObjectMapper mapper = new ObjectMapper();
 
+    private ObjectWriter writer = mapper.writerWithDefaultPrettyPrinter();
+
     @Override
     public String format(Patch patch) {
 
         try {
-            return mapper.writerWithDefaultPrettyPrinter().writeValueAsString(patch);
+            return writer.writeValueAsString(patch);
         } catch (JsonProcessingException e) {
             throw new RuntimeException(e);
         }
@@ -37,14 +42,20 @@ public class JsonPatchFormatter implements PatchFormatter {
 
     @Override
     public String format(String location, List<Patch> patches) {
-        JSONObject object = new JSONObject();
-        object.put("file", location);
-        object.put("patches", patches);
+        StringWriter sw = new StringWriter();
         try {
-            return mapper.writerWithDefaultPrettyPrinter().writeValueAsString(object);
-        } catch (JsonProcessingException e) {
+            JsonGenerator generator = mapper.getFactory().createGenerator(sw);
+            generator.useDefaultPrettyPrinter();
+            generator.writeStartObject();
+            generator.writeStringField("file", location);
+            generator.writeFieldName("patches");
+            mapper.writeValue(generator, patches);
+            generator.writeEndObject();
+            generator.close();
+        } catch (IOException e) {
             throw new RuntimeException(e);
         }
+        return sw.toString();
     }
 
 }
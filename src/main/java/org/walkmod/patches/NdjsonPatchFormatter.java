@@ -0,0 +1,158 @@
+/*
+  Copyright (C) 2013 Raquel Pau and Albert Coroleu.
+
+ Walkmod is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Lesser General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Walkmod is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public License
+ along with Walkmod.  If not, see <http://www.gnu.org/licenses/>.*/
+package org.walkmod.patches;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.List;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * Newline-delimited JSON: each patch is a compact JSON object in a single line, so the patches can be
+ * processed one by one, whatever the size of the patch file. Each thread reuses the same
+ * {@link JsonGenerator}, which is pointed to the writer of each call.
+ */
+public class NdjsonPatchFormatter implements StreamingPatchFormatter {
+
+    private static final JsonFactory FACTORY = new JsonFactory();
+
+    private final ThreadLocal<ReusableGenerator> generators = new ThreadLocal<ReusableGenerator>() {
+        @Override
+        protected ReusableGenerator initialValue() {
+            try {
+                return new ReusableGenerator();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    };
+
+    @Override
+    public String format(Patch patch) {
+        StringWriter writer = new StringWriter();
+        try {
+            write(patch, writer);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return writer.toString();
+    }
+
+    @Override
+    public String format(String location, List<Patch> patches) {
+        StringWriter writer = new StringWriter();
+        try {
+            write(location, patches, writer);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return writer.toString();
+    }
+
+    @Override
+    public void write(Patch patch, Writer writer) throws IOException {
+        ReusableGenerator generator = generators.get();
+        generator.setTarget(writer);
+        try {
+            generator.write(patch);
+        } catch (IOException e) {
+            // the generator can be in the middle of a patch
+            generators.remove();
+            throw e;
+        } finally {
+            generator.setTarget(null);
+        }
+    }
+
+    /**
+     * Writes a line per patch. Each patch has its own location, so the location of the file is not
+     * written.
+     */
+    @Override
+    public void write(String location, List<Patch> patches, Writer writer) throws IOException {
+        ReusableGenerator generator = generators.get();
+        generator.setTarget(writer);
+        try {
+            for (Patch patch : patches) {
+                generator.write(patch);
+            }
+        } catch (IOException e) {
+            // the generator can be in the middle of a patch
+            generators.remove();
+            throw e;
+        } finally {
+            generator.setTarget(null);
+        }
+    }
+
+    /**
+     * Generator whose output can be redirected to another writer.
+     */
+    private static class ReusableGenerator extends Writer {
+
+        private final JsonGenerator generator;
+
+        private Writer target;
+
+        public ReusableGenerator() throws IOException {
+            generator = FACTORY.createGenerator(this);
+            generator.setRootValueSeparator(null);
+            // the target is flushed by its owner
+            generator.disable(JsonGenerator.Feature.FLUSH_PASSED_TO_STREAM);
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        }
+
+        public void setTarget(Writer target) {
+            this.target = target;
+        }
+
+        public void write(Patch patch) throws IOException {
+            generator.writeStartObject();
+            generator.writeStringField("diff", patch.getDiff());
+            generator.writeNumberField("beginLine", patch.getBeginLine());
+            generator.writeNumberField("beginColumn", patch.getBeginColumn());
+            generator.writeNumberField("endLine", patch.getEndLine());
+            generator.writeNumberField("endColumn", patch.getEndColumn());
+            generator.writeStringField("cause", patch.getCause());
+            generator.writeStringField("location", patch.getLocation());
+            generator.writeBooleanField("isMultiple", patch.getIsMultiple());
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+            generator.flush();
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) throws IOException {
+            target.write(cbuf, off, len);
+        }
+
+        @Override
+        public void write(String str, int off, int len) throws IOException {
+            target.write(str, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+        }
+
+        @Override
+        public void close() throws IOException {
+        }
+    }
+}
@@ -0,0 +1,642 @@
+/*
+  Copyright (C) 2013 Raquel Pau and Albert Coroleu.
+
+ Walkmod is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Lesser General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Walkmod is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public License
+ along with Walkmod.  If not, see <http://www.gnu.org/licenses/>.*/
+package org.walkmod.patches;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.log4j.Logger;
+import org.walkmod.util.FileFormat;
+import org.walkmod.util.SafeFileOutputStream;
+
+/**
+ * Applies a unified diff with the sections of many files, like the raw <code>walkmod.patch</code>. The
+ * patch is parsed while it is read and the files are patched in parallel, but the sections of the
+ * same file are applied in order. When the lines of a hunk are not found at its position, they are
+ * searched in the rest of the file (offset) and then ignoring up to {@link #getFuzz()} context lines
+ * at its beginning and end (fuzz). The hunks that cannot be applied are reported, but the rest of
+ * hunks and files are patched. The patched files keep their charset, byte order mark and line
+ * endings, and end with a line feed unless the patch marks their last line with
+ * <code>\ No newline at end of file</code>.
+ */
+public class PatchApplier {
+
+	public static final int DEFAULT_FUZZ = 2;
+
+	private static final String DEV_NULL = "/dev/null";
+
+	private static final Pattern HUNK_HEADER = Pattern.compile("^@@ -(\\d+)(?:,(\\d+))? \\+(\\d+)(?:,(\\d+))? @@.*");
+
+	private static final int PENDING_FILES_PER_THREAD = 4;
+
+	private static Logger log = Logger.getLogger(PatchApplier.class);
+
+	private final File baseDir;
+
+	private int fuzz = DEFAULT_FUZZ;
+
+	private int threads = 1;
+
+	private String encoding = "UTF-8";
+
+	/**
+	 * @param baseDir
+	 *            directory of the relative paths of the patch.
+	 */
+	public PatchApplier(File baseDir) {
+		this.baseDir = baseDir;
+	}
+
+	public PatchReport apply(File patch) throws IOException {
+		Reader reader = new InputStreamReader(new FileInputStream(patch), encoding);
+		try {
+			return apply(reader);
+		} finally {
+			reader.close();
+		}
+	}
+
+	/**
+	 * Applies the patch read from a reader, which is not closed.
+	 */
+	public PatchReport apply(Reader patch) throws IOException {
+		PatchReport report = new PatchReport();
+		PatchParser parser = new PatchParser(new BufferedReader(patch));
+		ExecutorService executor = threads > 1 ? Executors.newFixedThreadPool(threads) : null;
+		Map<String, Future<?>> lastTasks = new HashMap<String, Future<?>>();
+		LinkedList<Future<?>> pending = new LinkedList<Future<?>>();
+		try {
+			List<FilePatch> sections = new LinkedList<FilePatch>();
+			FilePatch section = parser.next();
+			while (section != null) {
+				sections.add(section);
+				FilePatch next = parser.next();
+				// the consecutive sections of a file are applied together
+				if (next == null || !next.getPath().equals(section.getPath())) {
+					if (executor == null) {
+						applyFile(section.getPath(), sections, report);
+					} else {
+						Future<?> task = executor.submit(new FileTask(section.getPath(), sections, report,
+								lastTasks.get(section.getPath())));
+						lastTasks.put(section.getPath(), task);
+						pending.add(task);
+						if (pending.size() >= threads * PENDING_FILES_PER_THREAD) {
+							await(pending.removeFirst());
+						}
+					}
+					sections = new LinkedList<FilePatch>();
+				}
+				section = next;
+			}
+			while (!pending.isEmpty()) {
+				await(pending.removeFirst());
+			}
+		} finally {
+			if (executor != null) {
+				executor.shutdownNow();
+			}
+		}
+		return report;
+	}
+
+	/**
+	 * Applies the hunks of a patch to some lines in memory instead of to the files of its sections,
+	 * with the same offset and fuzz. The hunks that cannot be applied are skipped.
+	 *
+	 * @return if all the hunks have been applied.
+	 */
+	public boolean apply(List<String> lines, Reader patch) throws IOException {
+		PatchParser parser = new PatchParser(new BufferedReader(patch));
+		boolean applied = true;
+		FilePatch section = parser.next();
+		while (section != null) {
+			int offset = 0;
+			int minPosition = 0;
+			for (Hunk hunk : section.getHunks()) {
+				int end = apply(hunk, lines, offset, minPosition, false);
+				if (end < 0) {
+					applied = false;
+				} else {
+					offset += hunk.getNewLines().size() - hunk.getOldLines().size();
+					minPosition = end;
+				}
+			}
+			section = parser.next();
+		}
+		return applied;
+	}
+
+	private void await(Future<?> task) throws IOException {
+		try {
+			task.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while applying the patch");
+		} catch (ExecutionException e) {
+			throw new IOException(e.getCause());
+		}
+	}
+
+	private class FileTask implements Callable<Object> {
+
+		private final String path;
+
+		private final List<FilePatch> sections;
+
+		private final PatchReport report;
+
+		private final Future<?> previous;
+
+		public FileTask(String path, List<FilePatch> sections, PatchReport report, Future<?> previous) {
+			this.path = path;
+			this.sections = sections;
+			this.report = report;
+			this.previous = previous;
+		}
+
+		@Override
+		public Object call() throws Exception {
+			// a previous group of sections of the same file
+			if (previous != null) {
+				previous.get();
+			}
+			applyFile(path, sections, report);
+			return null;
+		}
+	}
+
+	private File resolve(String path) {
+		File file = new File(path);
+		if (!file.isAbsolute()) {
+			file = new File(baseDir, path);
+		}
+		return file;
+	}
+
+	private void applyFile(String path, List<FilePatch> sections, PatchReport report) {
+		File file = resolve(path);
+		try {
+			byte[] bytes = file.isFile() ? FileUtils.readFileToByteArray(file) : new byte[0];
+			if (!file.isFile() && !sections.get(0).isNewFile()) {
+				report.addFailure(path + ": the file does not exist");
+				return;
+			}
+			FileFormat format = FileFormat.detect(bytes, Math.min(bytes.length, FileFormat.HEAD_SIZE), encoding);
+			int bomLength = FileFormat.getBomLength(bytes, bytes.length);
+			String text = new String(bytes, bomLength, bytes.length - bomLength, format.getEncoding());
+			boolean crlf = "\r\n".equals(format.getLineEnding());
+			List<String> lines = split(text);
+			boolean endLine = text.length() == 0 || text.endsWith("\n");
+			boolean changed = false;
+			boolean deleted = false;
+			for (FilePatch section : sections) {
+				int offset = 0;
+				int minPosition = 0;
+				int index = 1;
+				for (Hunk hunk : section.getHunks()) {
+					int end = apply(hunk, lines, offset, minPosition, crlf);
+					if (end < 0) {
+						report.addFailure(path + ": hunk #" + index + " " + hunk.getHeader() + " failed");
+					} else {
+						offset += hunk.getNewLines().size() - hunk.getOldLines().size();
+						minPosition = end;
+						changed = true;
+						if (end == lines.size() && (hunk.isOldNoNewline() || hunk.isNewNoNewline())) {
+							// the hunk changes the line feed at the end of the file
+							endLine = !hunk.isNewNoNewline();
+							if (!endLine && crlf && !lines.isEmpty()) {
+								String last = lines.get(lines.size() - 1);
+								if (last.endsWith("\r")) {
+									lines.set(lines.size() - 1, last.substring(0, last.length() - 1));
+								}
+							}
+						}
+						report.addAppliedHunk(hunk.isExact());
+					}
+					index++;
+				}
+				deleted = section.isDeletedFile() && lines.isEmpty();
+			}
+			if (deleted) {
+				if (!file.delete()) {
+					report.addFailure(path + ": the file cannot be deleted");
+					return;
+				}
+				report.addPatchedFile(file);
+			} else if (changed) {
+				write(file, lines, endLine, format, crlf);
+				report.addPatchedFile(file);
+			}
+		} catch (IOException e) {
+			log.error(path + " cannot be patched", e);
+			report.addFailure(path + ": " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Applies a hunk to the lines of a file.
+	 *
+	 * @return the position after the new lines, or -1 if the hunk cannot be applied.
+	 */
+	private int apply(Hunk hunk, List<String> lines, int offset, int minPosition, boolean crlf) {
+		List<String> oldLines = hunk.getOldLines();
+		List<String> newLines = hunk.getNewLines();
+		// a hunk without old lines inserts the new ones after the line of its start
+		int expected = (oldLines.isEmpty() ? hunk.getOldStart() : Math.max(hunk.getOldStart() - 1, 0)) + offset;
+		for (int f = 0; f <= fuzz; f++) {
+			int head = Math.min(f, hunk.getLeadingContext());
+			int tail = Math.min(f, hunk.getTrailingContext());
+			if (f > 0 && head == 0 && tail == 0) {
+				break;
+			}
+			List<String> searched = oldLines.subList(head, oldLines.size() - tail);
+			int position = find(lines, searched, expected + head, minPosition);
+			if (position >= 0) {
+				List<String> replaced = lines.subList(position, position + searched.size());
+				replaced.clear();
+				List<String> inserted = newLines.subList(head, newLines.size() - tail);
+				for (String line : inserted) {
+					replaced.add(crlf && !line.endsWith("\r") ? line + "\r" : line);
+				}
+				hunk.setExact(f == 0 && position == expected);
+				if (!hunk.isExact()) {
+					log.debug("Hunk " + hunk.getHeader() + " applied at line " + (position + 1) + " with fuzz " + f);
+				}
+				return position + inserted.size();
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Looks for some lines, starting at the expected position and moving away from it in both
+	 * directions.
+	 */
+	private static int find(List<String> lines, List<String> searched, int expected, int minPosition) {
+		int last = lines.size() - searched.size();
+		if (last < minPosition) {
+			return -1;
+		}
+		expected = Math.min(Math.max(expected, minPosition), last);
+		for (int distance = 0; expected - distance >= minPosition || expected + distance <= last; distance++) {
+			if (expected + distance <= last && matches(lines, searched, expected + distance)) {
+				return expected + distance;
+			}
+			if (distance > 0 && expected - distance >= minPosition && matches(lines, searched, expected - distance)) {
+				return expected - distance;
+			}
+		}
+		return -1;
+	}
+
+	private static boolean matches(List<String> lines, List<String> searched, int position) {
+		for (int i = 0; i < searched.size(); i++) {
+			if (!sameLine(lines.get(position + i), searched.get(i))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Compares two lines ignoring their carriage returns, which can be lost in the patch.
+	 */
+	private static boolean sameLine(String line, String other) {
+		int length = line.endsWith("\r") ? line.length() - 1 : line.length();
+		int otherLength = other.endsWith("\r") ? other.length() - 1 : other.length();
+		return length == otherLength && line.regionMatches(0, other, 0, length);
+	}
+
+	private static List<String> split(String text) {
+		List<String> lines = new ArrayList<String>();
+		int start = 0;
+		int end = text.indexOf('\n');
+		while (end != -1) {
+			lines.add(text.substring(start, end));
+			start = end + 1;
+			end = text.indexOf('\n', start);
+		}
+		if (start < text.length()) {
+			lines.add(text.substring(start));
+		}
+		return lines;
+	}
+
+	private void write(File file, List<String> lines, boolean endLine, FileFormat format, boolean crlf)
+			throws IOException {
+		File parent = file.getAbsoluteFile().getParentFile();
+		if (parent != null && !parent.exists()) {
+			parent.mkdirs();
+		}
+		Writer writer = new OutputStreamWriter(new SafeFileOutputStream(file, true, false), format.getEncoding());
+		try {
+			if (format.hasBom()) {
+				writer.write('\uFEFF');
+			}
+			int i = 0;
+			for (String line : lines) {
+				writer.write(line);
+				if (++i < lines.size() || endLine) {
+					writer.write('\n');
+				}
+			}
+		} finally {
+			writer.close();
+		}
+	}
+
+	public int getFuzz() {
+		return fuzz;
+	}
+
+	/**
+	 * Sets the maximum number of context lines that can be ignored at the beginning and end of a hunk
+	 * when it does not match. By default, 2.
+	 */
+	public void setFuzz(int fuzz) {
+		this.fuzz = fuzz;
+	}
+
+	public int getThreads() {
+		return threads;
+	}
+
+	/**
+	 * Sets the number of threads that patch the files. By default, 1.
+	 */
+	public void setThreads(int threads) {
+		this.threads = threads;
+	}
+
+	public String getEncoding() {
+		return encoding;
+	}
+
+	/**
+	 * Sets the charset of the patch and of the patched files without byte order mark.
+	 */
+	public void setEncoding(String encoding) {
+		this.encoding = encoding;
+	}
+
+	/**
+	 * Reads the sections of a unified diff one by one.
+	 */
+	private static class PatchParser {
+
+		private final BufferedReader reader;
+
+		private String line;
+
+		public PatchParser(BufferedReader reader) throws IOException {
+			this.reader = reader;
+			line = readLine();
+		}
+
+		/**
+		 * Reads a line without its line feed, but keeping its carriage return.
+		 */
+		private String readLine() throws IOException {
+			StringBuilder sb = new StringBuilder();
+			int c = reader.read();
+			if (c == -1) {
+				return null;
+			}
+			while (c != -1 && c != '\n') {
+				sb.append((char) c);
+				c = reader.read();
+			}
+			return sb.toString();
+		}
+
+		public FilePatch next() throws IOException {
+			String oldPath = null;
+			while (line != null) {
+				if (line.startsWith("--- ")) {
+					oldPath = parsePath(line);
+				} else if (line.startsWith("+++ ") && oldPath != null) {
+					FilePatch section = new FilePatch(oldPath, parsePath(line));
+					line = readLine();
+					while (line != null && line.startsWith("@@")) {
+						Hunk hunk = parseHunk();
+						if (hunk != null) {
+							section.getHunks().add(hunk);
+						}
+					}
+					return section;
+				} else {
+					oldPath = null;
+				}
+				line = readLine();
+			}
+			return null;
+		}
+
+		private Hunk parseHunk() throws IOException {
+			Matcher m = HUNK_HEADER.matcher(trimCR(line));
+			if (!m.matches()) {
+				line = readLine();
+				return null;
+			}
+			int oldCount = m.group(2) != null ? Integer.parseInt(m.group(2)) : 1;
+			int newCount = m.group(4) != null ? Integer.parseInt(m.group(4)) : 1;
+			Hunk hunk = new Hunk(trimCR(line), Integer.parseInt(m.group(1)));
+			line = readLine();
+			int oldRead = 0;
+			int newRead = 0;
+			boolean changes = false;
+			char lastKind = 0;
+			while (line != null && (oldRead < oldCount || newRead < newCount || line.startsWith("\\"))) {
+				char kind = line.length() > 0 ? line.charAt(0) : ' ';
+				String content = line.length() > 0 ? line.substring(1) : "";
+				if (kind == ' ') {
+					hunk.getOldLines().add(content);
+					hunk.getNewLines().add(content);
+					oldRead++;
+					newRead++;
+					if (changes) {
+						hunk.trailingContext++;
+					} else {
+						hunk.leadingContext++;
+					}
+				} else if (kind == '-') {
+					hunk.getOldLines().add(content);
+					oldRead++;
+					changes = true;
+					hunk.trailingContext = 0;
+				} else if (kind == '+') {
+					hunk.getNewLines().add(content);
+					newRead++;
+					changes = true;
+					hunk.trailingContext = 0;
+				} else if (kind == '\\') {
+					// "\ No newline at end of file" after the last old or new line
+					if (lastKind == ' ' || lastKind == '-') {
+						hunk.oldNoNewline = true;
+					}
+					if (lastKind == ' ' || lastKind == '+') {
+						hunk.newNoNewline = true;
+					}
+				} else {
+					// truncated hunk
+					break;
+				}
+				lastKind = kind;
+				line = readLine();
+			}
+			return hunk;
+		}
+
+		private static String trimCR(String line) {
+			return line.endsWith("\r") ? line.substring(0, line.length() - 1) : line;
+		}
+
+		private static String parsePath(String line) {
+			String path = trimCR(line.substring(4));
+			int tab = path.indexOf('\t');
+			if (tab != -1) {
+				path = path.substring(0, tab);
+			}
+			path = path.trim();
+			if (path.startsWith("a/") || path.startsWith("b/") || path.startsWith("a\\") || path.startsWith("b\\")) {
+				path = path.substring(2);
+			}
+			return path;
+		}
+	}
+
+	private static class FilePatch {
+
+		private final String oldPath;
+
+		private final String newPath;
+
+		private final List<Hunk> hunks = new LinkedList<Hunk>();
+
+		public FilePatch(String oldPath, String newPath) {
+			this.oldPath = oldPath;
+			this.newPath = newPath;
+		}
+
+		public String getPath() {
+			return isDeletedFile() ? oldPath : newPath;
+		}
+
+		public boolean isNewFile() {
+			return DEV_NULL.equals(oldPath);
+		}
+
+		public boolean isDeletedFile() {
+			return DEV_NULL.equals(newPath);
+		}
+
+		public List<Hunk> getHunks() {
+			return hunks;
+		}
+	}
+
+	private static class Hunk {
+
+		private final String header;
+
+		private final int oldStart;
+
+		private final List<String> oldLines = new ArrayList<String>();
+
+		private final List<String> newLines = new ArrayList<String>();
+
+		private int leadingContext = 0;
+
+		private int trailingContext = 0;
+
+		private boolean exact = true;
+
+		private boolean oldNoNewline = false;
+
+		private boolean newNoNewline = false;
+
+		public Hunk(String header, int oldStart) {
+			this.header = header;
+			this.oldStart = oldStart;
+		}
+
+		public String getHeader() {
+			return header;
+		}
+
+		public int getOldStart() {
+			return oldStart;
+		}
+
+		public List<String> getOldLines() {
+			return oldLines;
+		}
+
+		public List<String> getNewLines() {
+			return newLines;
+		}
+
+		public int getLeadingContext() {
+			return leadingContext;
+		}
+
+		public int getTrailingContext() {
+			return trailingContext;
+		}
+
+		public boolean isExact() {
+			return exact;
+		}
+
+		/**
+		 * Returns if the last old line of the hunk is the last line of the file and it has no line feed.
+		 */
+		public boolean isOldNoNewline() {
+			return oldNoNewline;
+		}
+
+		/**
+		 * Returns if the last new line of the hunk is the last line of the patched file and it has no
+		 * line feed.
+		 */
+		public boolean isNewNoNewline() {
+			return newNoNewline;
+		}
+
+		public void setExact(boolean exact) {
+			this.exact = exact;
+		}
+	}
+}
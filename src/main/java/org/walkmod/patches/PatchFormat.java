@@ -17,7 +17,8 @@ package org.walkmod.patches;
 
 public enum PatchFormat {
 
-	JSON("json", new JsonPatchFormatter()), RAW("raw", new RawPatchFormatter());
+	JSON("json", new JsonPatchFormatter()), RAW("raw", new RawPatchFormatter()), NDJSON("ndjson",
+			new NdjsonPatchFormatter()), BINARY("binary", new BinaryPatchFormatter());
 
 	private final String name;
 
@@ -0,0 +1,83 @@
+/*
+  Copyright (C) 2013 Raquel Pau and Albert Coroleu.
+
+ Walkmod is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Lesser General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Walkmod is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public License
+ along with Walkmod.  If not, see <http://www.gnu.org/licenses/>.*/
+package org.walkmod.patches;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Result of applying a patch with a {@link PatchApplier}: the patched files and the hunks that could
+ * not be applied. It is updated by several threads.
+ */
+public class PatchReport {
+
+	private final List<File> patchedFiles = Collections.synchronizedList(new LinkedList<File>());
+
+	private final List<String> failures = Collections.synchronizedList(new LinkedList<String>());
+
+	private final AtomicInteger appliedHunks = new AtomicInteger();
+
+	private final AtomicInteger fuzzyHunks = new AtomicInteger();
+
+	void addPatchedFile(File file) {
+		patchedFiles.add(file);
+	}
+
+	void addAppliedHunk(boolean exact) {
+		appliedHunks.incrementAndGet();
+		if (!exact) {
+			fuzzyHunks.incrementAndGet();
+		}
+	}
+
+	void addFailure(String failure) {
+		failures.add(failure);
+	}
+
+	public List<File> getPatchedFiles() {
+		synchronized (patchedFiles) {
+			return new ArrayList<File>(patchedFiles);
+		}
+	}
+
+	/**
+	 * Returns the description of the hunks (or files) that could not be applied.
+	 */
+	public List<String> getFailures() {
+		synchronized (failures) {
+			return new ArrayList<String>(failures);
+		}
+	}
+
+	public int getAppliedHunks() {
+		return appliedHunks.get();
+	}
+
+	/**
+	 * Returns the number of hunks applied at a different line or ignoring some context lines.
+	 */
+	public int getFuzzyHunks() {
+		return fuzzyHunks.get();
+	}
+
+	public boolean isSuccessful() {
+		return failures.isEmpty();
+	}
+}
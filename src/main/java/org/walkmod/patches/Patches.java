@@ -16,41 +16,67 @@
 package org.walkmod.patches;
 
 import java.io.File;
-import java.util.Arrays;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 
-import difflib.DiffUtils;
-import difflib.Patch;
+import org.walkmod.patches.diff.DiffEngine;
+import org.walkmod.patches.diff.LineSequence;
+import org.walkmod.util.LineRanges;
+
 import difflib.PatchFailedException;
 
 public class Patches {
 
+	private static final DiffEngine DEFAULT_ENGINE = new DiffEngine();
+
 	public static String generatePatch(String originalText, String text, String location) {
-		List<String> original = Arrays.asList(originalText.split("\n"));
-		List<String> revised = Arrays.asList(text.split("\n"));
+		return generatePatch(originalText, text, location, null);
+	}
 
-		Patch<String> patches = DiffUtils.diff(original, revised);
-		List<String> unifiedDiffs = DiffUtils.generateUnifiedDiff("a" + File.separator + location, "b" + File.separator
-				+ location, original, patches, 4);
-		Iterator<String> it = unifiedDiffs.iterator();
+	/**
+	 * Generates a unified diff that only contains the hunks that modify the changed lines of the
+	 * original text.
+	 *
+	 * @param changedLines
+	 *            lines of the original text that can be modified. If it is null, all the hunks are
+	 *            generated.
+	 */
+	public static String generatePatch(String originalText, String text, String location, LineRanges changedLines) {
+		return generatePatch(originalText, text, location, changedLines, DEFAULT_ENGINE);
+	}
 
-		StringBuffer sb = new StringBuffer();
-		while (it.hasNext()) {
-			sb.append(it.next());
-			if (it.hasNext()) {
-				sb.append('\n');
-			}
-		}
-		return sb.toString();
+	/**
+	 * Generates a unified diff with a given diff engine (algorithm and context size).
+	 */
+	public static String generatePatch(String originalText, String text, String location, LineRanges changedLines,
+			DiffEngine engine) {
+		return engine.generatePatch(originalText, text, "a" + File.separator + location, "b" + File.separator
+				+ location, changedLines);
 	}
 
+	/**
+	 * Applies a unified diff to a text with the {@link PatchApplier}, which reads the hunk headers like
+	 * the generated ones (e.g. <code>-N,0</code> inserts after the line N).
+	 *
+	 * @return the patched lines, without a line feed at the end.
+	 */
 	public static String applyPatch(String text, String patch) throws PatchFailedException {
-		List<String> original = Arrays.asList(text.split("\n"));
-		List<String> diff = Arrays.asList(patch.split("\n"));
-
-		Patch<String> generatedPatch = DiffUtils.parseUnifiedDiff(diff);
-		Iterator<String> it = DiffUtils.patch(original, generatedPatch).iterator();
+		LineSequence original = new LineSequence(text);
+		List<String> lines = new ArrayList<String>(original.size());
+		for (int i = 0; i < original.size(); i++) {
+			lines.add(text.substring(original.getStart(i), original.getEnd(i)));
+		}
+		try {
+			if (!new PatchApplier(null).apply(lines, new StringReader(patch))) {
+				throw new PatchFailedException("Some hunks of the patch cannot be applied");
+			}
+		} catch (IOException e) {
+			throw new PatchFailedException(e.getMessage());
+		}
+		Iterator<String> it = lines.iterator();
 		StringBuffer sb = new StringBuffer();
 		while (it.hasNext()) {
 			sb.append(it.next());
@@ -0,0 +1,125 @@
+/*
+  Copyright (C) 2013 Raquel Pau and Albert Coroleu.
+
+ Walkmod is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Lesser General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Walkmod is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public License
+ along with Walkmod.  If not, see <http://www.gnu.org/licenses/>.*/
+package org.walkmod.patches.diff;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Algorithm to compute the edits between two sequences of line ids (see {@link LineInterner}). The
+ * common prefix and suffix of each compared region are skipped before running the algorithm.
+ * Implementations are stateless, so they can be shared by several threads.
+ */
+public abstract class DiffAlgorithm {
+
+	public static final String MYERS = "myers";
+
+	public static final String HISTOGRAM = "histogram";
+
+	public static final String PATIENCE = "patience";
+
+	/**
+	 * Returns the algorithm of a name: {@link #MYERS}, {@link #HISTOGRAM} or {@link #PATIENCE}.
+	 */
+	public static DiffAlgorithm getInstance(String name) {
+		if (MYERS.equalsIgnoreCase(name)) {
+			return new MyersDiff();
+		} else if (HISTOGRAM.equalsIgnoreCase(name)) {
+			return new HistogramDiff();
+		} else if (PATIENCE.equalsIgnoreCase(name)) {
+			return new PatienceDiff();
+		}
+		throw new IllegalArgumentException("Invalid diff algorithm " + name + ". Use " + MYERS + ", " + HISTOGRAM
+				+ " or " + PATIENCE);
+	}
+
+	/**
+	 * Returns the edits that transform a into b, sorted and without adjacent edits.
+	 *
+	 * @param a
+	 *            ids of the original lines.
+	 * @param b
+	 *            ids of the revised lines.
+	 * @param ids
+	 *            number of different ids, which are between 0 and ids - 1.
+	 */
+	public List<Edit> diff(int[] a, int[] b, int ids) {
+		List<Edit> edits = new ArrayList<Edit>();
+		createComparison(a, b, ids, edits).compare(0, a.length, 0, b.length);
+		// a replacement can be found as a deletion and an insertion
+		Iterator<Edit> it = edits.iterator();
+		Edit previous = null;
+		while (it.hasNext()) {
+			Edit edit = it.next();
+			if (previous != null && previous.getEndA() == edit.getBeginA() && previous.getEndB() == edit.getBeginB()) {
+				previous.extend(edit);
+				it.remove();
+			} else {
+				previous = edit;
+			}
+		}
+		return edits;
+	}
+
+	protected abstract Comparison createComparison(int[] a, int[] b, int ids, List<Edit> edits);
+
+	/**
+	 * State of a single diff. The edits must be added in order.
+	 */
+	protected abstract static class Comparison {
+
+		protected final int[] a;
+
+		protected final int[] b;
+
+		protected final List<Edit> edits;
+
+		protected Comparison(int[] a, int[] b, List<Edit> edits) {
+			this.a = a;
+			this.b = b;
+			this.edits = edits;
+		}
+
+		/**
+		 * Compares the region of a between aBegin and aEnd (exclusive) with the region of b between
+		 * bBegin and bEnd (exclusive).
+		 */
+		public void compare(int aBegin, int aEnd, int bBegin, int bEnd) {
+			while (aBegin < aEnd && bBegin < bEnd && a[aBegin] == b[bBegin]) {
+				aBegin++;
+				bBegin++;
+			}
+			while (aBegin < aEnd && bBegin < bEnd && a[aEnd - 1] == b[bEnd - 1]) {
+				aEnd--;
+				bEnd--;
+			}
+			if (aBegin == aEnd && bBegin == bEnd) {
+				return;
+			}
+			if (aBegin == aEnd || bBegin == bEnd) {
+				edits.add(new Edit(aBegin, aEnd, bBegin, bEnd));
+				return;
+			}
+			compareChanged(aBegin, aEnd, bBegin, bEnd);
+		}
+
+		/**
+		 * Compares two non empty regions whose first and last lines are different.
+		 */
+		protected abstract void compareChanged(int aBegin, int aEnd, int bBegin, int bEnd);
+	}
+}
@@ -0,0 +1,245 @@
+/*
+  Copyright (C) 2013 Raquel Pau and Albert Coroleu.
+
+ Walkmod is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Lesser General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Walkmod is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public License
+ along with Walkmod.  If not, see <http://www.gnu.org/licenses/>.*/
+package org.walkmod.patches.diff;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.walkmod.util.LineRanges;
+
+/**
+ * Computes the differences between two texts and formats them as a unified diff. The lines are
+ * compared as regions of the texts: the common prefix and suffix are skipped without hashing them,
+ * and the rest of lines are interned to integer ids for the {@link DiffAlgorithm}. It is thread safe.
+ */
+public class DiffEngine {
+
+	public static final int DEFAULT_CONTEXT_SIZE = 4;
+
+	private final DiffAlgorithm algorithm;
+
+	private final int contextSize;
+
+	public DiffEngine() {
+		this(new MyersDiff(), DEFAULT_CONTEXT_SIZE);
+	}
+
+	/**
+	 * @param algorithm
+	 *            name of the {@link DiffAlgorithm}.
+	 * @param contextSize
+	 *            number of unchanged lines around the changes of each hunk.
+	 */
+	public DiffEngine(String algorithm, int contextSize) {
+		this(DiffAlgorithm.getInstance(algorithm), contextSize);
+	}
+
+	public DiffEngine(DiffAlgorithm algorithm, int contextSize) {
+		if (contextSize < 0) {
+			throw new IllegalArgumentException("Invalid context size " + contextSize);
+		}
+		this.algorithm = algorithm;
+		this.contextSize = contextSize;
+	}
+
+	public DiffAlgorithm getAlgorithm() {
+		return algorithm;
+	}
+
+	public int getContextSize() {
+		return contextSize;
+	}
+
+	/**
+	 * Returns the edits that transform the original lines into the revised ones.
+	 */
+	public List<Edit> diff(LineSequence original, LineSequence revised) {
+		int n = original.size();
+		int m = revised.size();
+		int prefix = 0;
+		while (prefix < n && prefix < m && original.equals(prefix, revised, prefix)) {
+			prefix++;
+		}
+		int suffix = 0;
+		while (suffix < n - prefix && suffix < m - prefix && original.equals(n - suffix - 1, revised, m - suffix - 1)) {
+			suffix++;
+		}
+		LineInterner interner = new LineInterner();
+		int[] a = interner.intern(original, prefix, n - suffix);
+		int[] b = interner.intern(revised, prefix, m - suffix);
+		List<Edit> edits = algorithm.diff(a, b, interner.size());
+		if (prefix > 0) {
+			for (Edit edit : edits) {
+				edit.shift(prefix, prefix);
+			}
+		}
+		return edits;
+	}
+
+	/**
+	 * Generates a unified diff that only contains the hunks that modify the changed lines of the
+	 * original text.
+	 *
+	 * @param changedLines
+	 *            lines of the original text that can be modified. If it is null, all the hunks are
+	 *            generated.
+	 * @return the unified diff, without a line feed at the end, or an empty string if the texts are
+	 *         equal.
+	 */
+	public String generatePatch(String originalText, String text, String originalName, String revisedName,
+			LineRanges changedLines) {
+		LineSequence original = new LineSequence(originalText);
+		LineSequence revised = new LineSequence(text);
+		List<Edit> edits = diff(original, revised);
+		if (changedLines != null) {
+			filter(edits, changedLines);
+		}
+		StringBuilder sb = new StringBuilder();
+		writeUnifiedDiff(sb, originalName, revisedName, original, revised, edits);
+		return sb.toString();
+	}
+
+	/**
+	 * Generates a unified diff per hunk. The texts are diffed once, and the changes whose context
+	 * lines overlap or are adjacent are merged into the same hunk.
+	 *
+	 * @param changedLines
+	 *            lines of the original text that can be modified. If it is null, all the hunks are
+	 *            generated.
+	 * @return the hunks, in the order of the original text.
+	 */
+	public List<Hunk> generateHunks(String originalText, String text, String originalName, String revisedName,
+			LineRanges changedLines) {
+		LineSequence original = new LineSequence(originalText);
+		LineSequence revised = new LineSequence(text);
+		List<Edit> edits = diff(original, revised);
+		if (changedLines != null) {
+			filter(edits, changedLines);
+		}
+		List<Hunk> result = new ArrayList<Hunk>();
+		int first = 0;
+		int delta = 0;
+		while (first < edits.size()) {
+			int last = getLastEditOfHunk(edits, first);
+			StringBuilder sb = new StringBuilder();
+			sb.append("--- ").append(originalName).append('\n');
+			sb.append("+++ ").append(revisedName);
+			delta += writeHunk(sb, original, revised, edits, first, last, delta);
+			int beginLine = edits.get(first).getBeginA() + 1;
+			int endLine = Math.max(edits.get(last).getEndA(), beginLine - 1);
+			result.add(new Hunk(beginLine, endLine, last - first + 1, sb.toString()));
+			first = last + 1;
+		}
+		return result;
+	}
+
+	private static void filter(List<Edit> edits, LineRanges changedLines) {
+		Iterator<Edit> it = edits.iterator();
+		while (it.hasNext()) {
+			Edit edit = it.next();
+			int position = edit.getBeginA();
+			boolean inRange;
+			if (edit.getLengthA() > 0) {
+				inRange = changedLines.intersects(position + 1, edit.getEndA());
+			} else {
+				// an insertion between the original lines position and position + 1
+				inRange = changedLines.intersects(position, position + 1);
+			}
+			if (!inRange) {
+				it.remove();
+			}
+		}
+	}
+
+	/**
+	 * Writes the edits as a unified diff. The edits whose context lines overlap are written in the
+	 * same hunk.
+	 */
+	public void writeUnifiedDiff(StringBuilder sb, String originalName, String revisedName, LineSequence original,
+			LineSequence revised, List<Edit> edits) {
+		if (edits.isEmpty()) {
+			return;
+		}
+		sb.append("--- ").append(originalName).append('\n');
+		sb.append("+++ ").append(revisedName);
+		int first = 0;
+		int delta = 0;
+		while (first < edits.size()) {
+			int last = getLastEditOfHunk(edits, first);
+			delta += writeHunk(sb, original, revised, edits, first, last, delta);
+			first = last + 1;
+		}
+	}
+
+	private int getLastEditOfHunk(List<Edit> edits, int first) {
+		int last = first;
+		while (last + 1 < edits.size()
+				&& edits.get(last).getEndA() + contextSize >= edits.get(last + 1).getBeginA() - contextSize) {
+			last++;
+		}
+		return last;
+	}
+
+	/**
+	 * Writes the edits from first to last as a hunk. The revised lines of the hunk are numbered as if
+	 * only the given edits were applied, so the positions of the edits that have been filtered out (e.g.
+	 * out of the changed lines) do not shift them. An empty range starts at the line that precedes it.
+	 *
+	 * @param delta
+	 *            net number of lines added by the edits before the first one.
+	 * @return the net number of lines added by the edits of the hunk.
+	 */
+	private int writeHunk(StringBuilder sb, LineSequence original, LineSequence revised, List<Edit> edits,
+			int first, int last, int delta) {
+		Edit firstEdit = edits.get(first);
+		Edit lastEdit = edits.get(last);
+		int contextBegin = Math.max(firstEdit.getBeginA() - contextSize, 0);
+		int contextEnd = Math.min(lastEdit.getEndA() + contextSize, original.size());
+		int originalTotal = contextEnd - contextBegin;
+		int revisedTotal = originalTotal;
+		for (int i = first; i <= last; i++) {
+			revisedTotal += edits.get(i).getLengthB() - edits.get(i).getLengthA();
+		}
+		int revisedBegin = contextBegin + delta;
+		sb.append("\n@@ -").append(originalTotal > 0 ? contextBegin + 1 : contextBegin).append(',')
+				.append(originalTotal);
+		sb.append(" +").append(revisedTotal > 0 ? revisedBegin + 1 : revisedBegin).append(',')
+				.append(revisedTotal).append(" @@");
+		int line = contextBegin;
+		for (int i = first; i <= last; i++) {
+			Edit edit = edits.get(i);
+			for (; line < edit.getBeginA(); line++) {
+				appendLine(sb, ' ', original, line);
+			}
+			for (; line < edit.getEndA(); line++) {
+				appendLine(sb, '-', original, line);
+			}
+			for (int j = edit.getBeginB(); j < edit.getEndB(); j++) {
+				appendLine(sb, '+', revised, j);
+			}
+		}
+		for (; line < contextEnd; line++) {
+			appendLine(sb, ' ', original, line);
+		}
+		return revisedTotal - originalTotal;
+	}
+
+	private static void appendLine(StringBuilder sb, char prefix, LineSequence lines, int line) {
+		sb.append('\n').append(prefix);
+		lines.appendLine(sb, line);
+	}
+}
@@ -0,0 +1,97 @@
+/*
+  Copyright (C) 2013 Raquel Pau and Albert Coroleu.
+
+ Walkmod is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Lesser General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Walkmod is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public License
+ along with Walkmod.  If not, see <http://www.gnu.org/licenses/>.*/
+package org.walkmod.patches.diff;
+
+/**
+ * Region of the original lines (from beginA to endA, exclusive) that is replaced by a region of the
+ * revised lines (from beginB to endB, exclusive). Insertions have an empty original region and
+ * deletions an empty revised region. The indexes are 0-based.
+ */
+public class Edit {
+
+	private int beginA;
+
+	private int endA;
+
+	private int beginB;
+
+	private int endB;
+
+	public Edit(int beginA, int endA, int beginB, int endB) {
+		this.beginA = beginA;
+		this.endA = endA;
+		this.beginB = beginB;
+		this.endB = endB;
+	}
+
+	public int getBeginA() {
+		return beginA;
+	}
+
+	public int getEndA() {
+		return endA;
+	}
+
+	public int getBeginB() {
+		return beginB;
+	}
+
+	public int getEndB() {
+		return endB;
+	}
+
+	public int getLengthA() {
+		return endA - beginA;
+	}
+
+	public int getLengthB() {
+		return endB - beginB;
+	}
+
+	/**
+	 * Extends this edit up to the end of another one that starts where this one ends.
+	 */
+	void extend(Edit next) {
+		endA = next.endA;
+		endB = next.endB;
+	}
+
+	void shift(int offsetA, int offsetB) {
+		beginA += offsetA;
+		endA += offsetA;
+		beginB += offsetB;
+		endB += offsetB;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (o instanceof Edit) {
+			Edit other = (Edit) o;
+			return beginA == other.beginA && endA == other.endA && beginB == other.beginB && endB == other.endB;
+		}
+		return false;
+	}
+
+	@Override
+	public int hashCode() {
+		return ((beginA * 31 + endA) * 31 + beginB) * 31 + endB;
+	}
+
+	@Override
+	public String toString() {
+		return "Edit[" + beginA + "-" + endA + "," + beginB + "-" + endB + "]";
+	}
+}
@@ -0,0 +1,124 @@
+/*
+  Copyright (C) 2013 Raquel Pau and Albert Coroleu.
+
+ Walkmod is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Lesser General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Walkmod is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public License
+ along with Walkmod.  If not, see <http://www.gnu.org/licenses/>.*/
+package org.walkmod.patches.diff;
+
+import java.util.List;
+
+/**
+ * Histogram diff: it looks for the longest common region that contains the least frequent lines of
+ * the original region, which are usually meaningful lines instead of blank lines or braces, and
+ * compares the lines before and after it recursively. Regions without common lines that are rare
+ * enough are compared with {@link MyersDiff}.
+ */
+public class HistogramDiff extends DiffAlgorithm {
+
+	private static final int MAX_CHAIN_LENGTH = 64;
+
+	private static final int MAX_DEPTH = 64;
+
+	@Override
+	protected Comparison createComparison(int[] a, int[] b, int ids, List<Edit> edits) {
+		return new HistogramComparison(a, b, ids, edits);
+	}
+
+	private static class HistogramComparison extends Comparison {
+
+		private final int[] counts;
+
+		private final int[] heads;
+
+		private final int[] next;
+
+		private final MyersDiff.MyersComparison fallback;
+
+		private int depth = 0;
+
+		public HistogramComparison(int[] a, int[] b, int ids, List<Edit> edits) {
+			super(a, b, edits);
+			counts = new int[ids];
+			heads = new int[ids];
+			next = new int[a.length];
+			fallback = new MyersDiff.MyersComparison(a, b, edits);
+		}
+
+		@Override
+		protected void compareChanged(int aBegin, int aEnd, int bBegin, int bEnd) {
+			if (depth >= MAX_DEPTH) {
+				fallback.compareChanged(aBegin, aEnd, bBegin, bEnd);
+				return;
+			}
+			// occurrences of each line of the original region, in order
+			for (int i = aEnd - 1; i >= aBegin; i--) {
+				int id = a[i];
+				next[i] = counts[id] == 0 ? -1 : heads[id];
+				heads[id] = i;
+				counts[id]++;
+			}
+			int bestCount = MAX_CHAIN_LENGTH + 1;
+			int bestABegin = -1;
+			int bestAEnd = -1;
+			int bestBBegin = -1;
+			int bestBEnd = -1;
+			int bi = bBegin;
+			while (bi < bEnd) {
+				int id = b[bi];
+				int nextB = bi + 1;
+				if (counts[id] > 0 && counts[id] <= bestCount) {
+					for (int ai = heads[id]; ai != -1; ai = next[ai]) {
+						int count = counts[id];
+						int as = ai;
+						int bs = bi;
+						while (as > aBegin && bs > bBegin && a[as - 1] == b[bs - 1]) {
+							as--;
+							bs--;
+							count = Math.min(count, counts[a[as]]);
+						}
+						int ae = ai + 1;
+						int be = bi + 1;
+						while (ae < aEnd && be < bEnd && a[ae] == b[be]) {
+							count = Math.min(count, counts[a[ae]]);
+							ae++;
+							be++;
+						}
+						if (count < bestCount || (count == bestCount && ae - as > bestAEnd - bestABegin)) {
+							bestCount = count;
+							bestABegin = as;
+							bestAEnd = ae;
+							bestBBegin = bs;
+							bestBEnd = be;
+						}
+						nextB = Math.max(nextB, be);
+					}
+				}
+				bi = nextB;
+			}
+			for (int i = aBegin; i < aEnd; i++) {
+				counts[a[i]] = 0;
+			}
+			if (bestABegin == -1) {
+				fallback.compareChanged(aBegin, aEnd, bBegin, bEnd);
+				return;
+			}
+			depth++;
+			try {
+				compare(aBegin, bestABegin, bBegin, bestBBegin);
+				compare(bestAEnd, aEnd, bestBEnd, bEnd);
+			} finally {
+				depth--;
+			}
+		}
+	}
+}
@@ -0,0 +1,64 @@
+/*
+  Copyright (C) 2013 Raquel Pau and Albert Coroleu.
+
+ Walkmod is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Lesser General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Walkmod is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public License
+ along with Walkmod.  If not, see <http://www.gnu.org/licenses/>.*/
+package org.walkmod.patches.diff;
+
+/**
+ * Hunk of a unified diff, which groups the edits whose context lines overlap or are adjacent. The
+ * diff contains the file headers, so each hunk can be applied separately.
+ */
+public class Hunk {
+
+	private final int beginLine;
+
+	private final int endLine;
+
+	private final int edits;
+
+	private final String diff;
+
+	/**
+	 * @param beginLine
+	 *            first original line (1-based) modified by the hunk.
+	 * @param endLine
+	 *            last original line modified by the hunk. For insertions, the line before them.
+	 * @param edits
+	 *            number of edits of the hunk.
+	 * @param diff
+	 *            unified diff of the hunk.
+	 */
+	public Hunk(int beginLine, int endLine, int edits, String diff) {
+		this.beginLine = beginLine;
+		this.endLine = endLine;
+		this.edits = edits;
+		this.diff = diff;
+	}
+
+	public int getBeginLine() {
+		return beginLine;
+	}
+
+	public int getEndLine() {
+		return endLine;
+	}
+
+	public int getEdits() {
+		return edits;
+	}
+
+	public String getDiff() {
+		return diff;
+	}
+}
@@ -0,0 +1,101 @@
+/*
+  Copyright (C) 2013 Raquel Pau and Albert Coroleu.
+
+ Walkmod is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Lesser General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Walkmod is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public License
+ along with Walkmod.  If not, see <http://www.gnu.org/licenses/>.*/
+package org.walkmod.patches.diff;
+
+import java.util.Arrays;
+
+/**
+ * Assigns the same integer id to the equal lines of several {@link LineSequence}, so that the diff
+ * algorithms compare integers instead of strings. The ids are consecutive, starting at 0.
+ */
+public class LineInterner {
+
+	private int[] table = new int[64];
+
+	private LineSequence[] sequences = new LineSequence[32];
+
+	private int[] lines = new int[32];
+
+	private int[] hashes = new int[32];
+
+	private int size = 0;
+
+	/**
+	 * Returns the ids of the lines between begin and end (exclusive) of a sequence.
+	 */
+	public int[] intern(LineSequence sequence, int begin, int end) {
+		int[] result = new int[end - begin];
+		for (int i = begin; i < end; i++) {
+			result[i - begin] = intern(sequence, i);
+		}
+		return result;
+	}
+
+	public int[] intern(LineSequence sequence) {
+		return intern(sequence, 0, sequence.size());
+	}
+
+	private int intern(LineSequence sequence, int line) {
+		int hash = sequence.hash(line);
+		int mask = table.length - 1;
+		int slot = mix(hash) & mask;
+		while (table[slot] != 0) {
+			int id = table[slot] - 1;
+			if (hashes[id] == hash && sequence.equals(line, sequences[id], lines[id])) {
+				return id;
+			}
+			slot = (slot + 1) & mask;
+		}
+		int id = size++;
+		if (id == sequences.length) {
+			sequences = Arrays.copyOf(sequences, id * 2);
+			lines = Arrays.copyOf(lines, id * 2);
+			hashes = Arrays.copyOf(hashes, id * 2);
+		}
+		sequences[id] = sequence;
+		lines[id] = line;
+		hashes[id] = hash;
+		table[slot] = id + 1;
+		if (size * 2 > table.length) {
+			rehash();
+		}
+		return id;
+	}
+
+	private void rehash() {
+		table = new int[table.length * 2];
+		int mask = table.length - 1;
+		for (int id = 0; id < size; id++) {
+			int slot = mix(hashes[id]) & mask;
+			while (table[slot] != 0) {
+				slot = (slot + 1) & mask;
+			}
+			table[slot] = id + 1;
+		}
+	}
+
+	private static int mix(int hash) {
+		hash ^= (hash >>> 20) ^ (hash >>> 12);
+		return hash ^ (hash >>> 7) ^ (hash >>> 4);
+	}
+
+	/**
+	 * Returns the number of different lines.
+	 */
+	public int size() {
+		return size;
+	}
+}
@@ -0,0 +1,111 @@
+/*
+  Copyright (C) 2013 Raquel Pau and Albert Coroleu.
+
+ Walkmod is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Lesser General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Walkmod is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public License
+ along with Walkmod.  If not, see <http://www.gnu.org/licenses/>.*/
+package org.walkmod.patches.diff;
+
+/**
+ * Lines of a text, which are regions of the text instead of new strings. The text is split like
+ * <code>text.split("\n")</code>: the line feeds are removed (but not the carriage returns) and the
+ * trailing empty lines are ignored. Unlike <code>split</code>, the empty text has no lines, like an
+ * empty file.
+ */
+public class LineSequence {
+
+	private final CharSequence text;
+
+	private final int[] starts;
+
+	private final int[] ends;
+
+	private final int size;
+
+	public LineSequence(CharSequence text) {
+		this.text = text;
+		int length = text.length();
+		int lines = 1;
+		for (int i = 0; i < length; i++) {
+			if (text.charAt(i) == '\n') {
+				lines++;
+			}
+		}
+		starts = new int[lines];
+		ends = new int[lines];
+		int line = 0;
+		int start = 0;
+		for (int i = 0; i < length; i++) {
+			if (text.charAt(i) == '\n') {
+				starts[line] = start;
+				ends[line++] = i;
+				start = i + 1;
+			}
+		}
+		starts[line] = start;
+		ends[line] = length;
+		int count = lines;
+		while (count > 0 && starts[count - 1] == ends[count - 1]) {
+			count--;
+		}
+		size = count;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public CharSequence getText() {
+		return text;
+	}
+
+	public int getStart(int line) {
+		return starts[line];
+	}
+
+	public int getEnd(int line) {
+		return ends[line];
+	}
+
+	/**
+	 * Appends a line, without its line feed.
+	 */
+	public void appendLine(StringBuilder sb, int line) {
+		sb.append(text, starts[line], ends[line]);
+	}
+
+	public int hash(int line) {
+		int hash = 0;
+		for (int i = starts[line]; i < ends[line]; i++) {
+			hash = 31 * hash + text.charAt(i);
+		}
+		return hash;
+	}
+
+	/**
+	 * Returns if a line has the same characters than a line of another sequence.
+	 */
+	public boolean equals(int line, LineSequence other, int otherLine) {
+		int length = ends[line] - starts[line];
+		if (length != other.ends[otherLine] - other.starts[otherLine]) {
+			return false;
+		}
+		int i = starts[line];
+		int j = other.starts[otherLine];
+		for (int k = 0; k < length; k++) {
+			if (text.charAt(i + k) != other.text.charAt(j + k)) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
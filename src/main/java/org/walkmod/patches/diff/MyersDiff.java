@@ -0,0 +1,160 @@
+/*
+  Copyright (C) 2013 Raquel Pau and Albert Coroleu.
+
+ Walkmod is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Lesser General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Walkmod is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public License
+ along with Walkmod.  If not, see <http://www.gnu.org/licenses/>.*/
+package org.walkmod.patches.diff;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Myers' O(ND) diff algorithm in linear space: it looks for the middle snake of the shortest edit
+ * script from both ends and compares the two halves recursively. When the edit script is too
+ * expensive (very different regions), it splits the regions at the furthest point reached so far,
+ * so the result is not always minimal, but the time is bounded.
+ */
+public class MyersDiff extends DiffAlgorithm {
+
+	private static final int MIN_COST_LIMIT = 256;
+
+	@Override
+	protected Comparison createComparison(int[] a, int[] b, int ids, List<Edit> edits) {
+		return new MyersComparison(a, b, edits);
+	}
+
+	static class MyersComparison extends Comparison {
+
+		MyersComparison(int[] a, int[] b, List<Edit> edits) {
+			super(a, b, edits);
+		}
+
+		@Override
+		protected void compareChanged(int aBegin, int aEnd, int bBegin, int bEnd) {
+			int n = aEnd - aBegin;
+			int m = bEnd - bBegin;
+			int maxD = (n + m + 1) / 2;
+			int offset = maxD;
+			int length = 2 * maxD + 2;
+			int[] v1 = new int[length];
+			int[] v2 = new int[length];
+			Arrays.fill(v1, -1);
+			Arrays.fill(v2, -1);
+			v1[offset + 1] = 0;
+			v2[offset + 1] = 0;
+			int delta = n - m;
+			// if the delta is odd, the forward path overlaps with the reverse path
+			boolean front = (delta & 1) != 0;
+			int costLimit = Math.max(MIN_COST_LIMIT, (int) Math.sqrt((double) n + m) * 4);
+			int k1start = 0;
+			int k1end = 0;
+			int k2start = 0;
+			int k2end = 0;
+			for (int d = 0; d < maxD; d++) {
+				for (int k1 = -d + k1start; k1 <= d - k1end; k1 += 2) {
+					int k1Offset = offset + k1;
+					int x1;
+					if (k1 == -d || (k1 != d && v1[k1Offset - 1] < v1[k1Offset + 1])) {
+						x1 = v1[k1Offset + 1];
+					} else {
+						x1 = v1[k1Offset - 1] + 1;
+					}
+					int y1 = x1 - k1;
+					while (x1 < n && y1 < m && a[aBegin + x1] == b[bBegin + y1]) {
+						x1++;
+						y1++;
+					}
+					v1[k1Offset] = x1;
+					if (x1 > n) {
+						k1end += 2;
+					} else if (y1 > m) {
+						k1start += 2;
+					} else if (front) {
+						int k2Offset = offset + delta - k1;
+						if (k2Offset >= 0 && k2Offset < length && v2[k2Offset] != -1) {
+							int x2 = n - v2[k2Offset];
+							if (x1 >= x2) {
+								split(aBegin, aEnd, bBegin, bEnd, x1, y1);
+								return;
+							}
+						}
+					}
+				}
+				for (int k2 = -d + k2start; k2 <= d - k2end; k2 += 2) {
+					int k2Offset = offset + k2;
+					int x2;
+					if (k2 == -d || (k2 != d && v2[k2Offset - 1] < v2[k2Offset + 1])) {
+						x2 = v2[k2Offset + 1];
+					} else {
+						x2 = v2[k2Offset - 1] + 1;
+					}
+					int y2 = x2 - k2;
+					while (x2 < n && y2 < m && a[aEnd - x2 - 1] == b[bEnd - y2 - 1]) {
+						x2++;
+						y2++;
+					}
+					v2[k2Offset] = x2;
+					if (x2 > n) {
+						k2end += 2;
+					} else if (y2 > m) {
+						k2start += 2;
+					} else if (!front) {
+						int k1Offset = offset + delta - k2;
+						if (k1Offset >= 0 && k1Offset < length && v1[k1Offset] != -1) {
+							int x1 = v1[k1Offset];
+							int y1 = offset + x1 - k1Offset;
+							if (x1 >= n - x2) {
+								split(aBegin, aEnd, bBegin, bEnd, x1, y1);
+								return;
+							}
+						}
+					}
+				}
+				if (d >= costLimit && splitAtFurthest(aBegin, aEnd, bBegin, bEnd, v1, offset, d, k1start, k1end)) {
+					return;
+				}
+			}
+			edits.add(new Edit(aBegin, aEnd, bBegin, bEnd));
+		}
+
+		/**
+		 * Splits the regions at the forward path that has reached the furthest, which is part of a
+		 * valid (but maybe not minimal) edit script.
+		 */
+		private boolean splitAtFurthest(int aBegin, int aEnd, int bBegin, int bEnd, int[] v1, int offset, int d,
+				int k1start, int k1end) {
+			int n = aEnd - aBegin;
+			int m = bEnd - bBegin;
+			int bestX = -1;
+			int bestY = -1;
+			for (int k1 = -d + k1start; k1 <= d - k1end; k1 += 2) {
+				int x = v1[offset + k1];
+				int y = x - k1;
+				if (x >= 0 && x <= n && y >= 0 && y <= m && x + y > bestX + bestY && x + y > 0 && x + y < n + m) {
+					bestX = x;
+					bestY = y;
+				}
+			}
+			if (bestX < 0) {
+				return false;
+			}
+			split(aBegin, aEnd, bBegin, bEnd, bestX, bestY);
+			return true;
+		}
+
+		private void split(int aBegin, int aEnd, int bBegin, int bEnd, int x, int y) {
+			compare(aBegin, aBegin + x, bBegin, bBegin + y);
+			compare(aBegin + x, aEnd, bBegin + y, bEnd);
+		}
+	}
+}
@@ -0,0 +1,117 @@
+/*
+  Copyright (C) 2013 Raquel Pau and Albert Coroleu.
+
+ Walkmod is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Lesser General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Walkmod is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public License
+ along with Walkmod.  If not, see <http://www.gnu.org/licenses/>.*/
+package org.walkmod.patches.diff;
+
+import java.util.List;
+
+/**
+ * Patience diff: the lines that appear exactly once in both regions are matched in the longest
+ * sequence that keeps their order, and the lines between them are compared recursively. Regions
+ * without unique common lines are compared with {@link MyersDiff}.
+ */
+public class PatienceDiff extends DiffAlgorithm {
+
+	@Override
+	protected Comparison createComparison(int[] a, int[] b, int ids, List<Edit> edits) {
+		return new PatienceComparison(a, b, ids, edits);
+	}
+
+	private static class PatienceComparison extends Comparison {
+
+		private final int[] countsA;
+
+		private final int[] countsB;
+
+		private final int[] positionsA;
+
+		private final MyersDiff.MyersComparison fallback;
+
+		public PatienceComparison(int[] a, int[] b, int ids, List<Edit> edits) {
+			super(a, b, edits);
+			countsA = new int[ids];
+			countsB = new int[ids];
+			positionsA = new int[ids];
+			fallback = new MyersDiff.MyersComparison(a, b, edits);
+		}
+
+		@Override
+		protected void compareChanged(int aBegin, int aEnd, int bBegin, int bEnd) {
+			for (int i = aBegin; i < aEnd; i++) {
+				countsA[a[i]]++;
+				positionsA[a[i]] = i;
+			}
+			for (int j = bBegin; j < bEnd; j++) {
+				countsB[b[j]]++;
+			}
+			// unique common lines, in the order of b
+			int[] matchesA = new int[Math.min(aEnd - aBegin, bEnd - bBegin)];
+			int[] matchesB = new int[matchesA.length];
+			int matches = 0;
+			for (int j = bBegin; j < bEnd; j++) {
+				int id = b[j];
+				if (countsA[id] == 1 && countsB[id] == 1) {
+					matchesA[matches] = positionsA[id];
+					matchesB[matches++] = j;
+				}
+			}
+			for (int i = aBegin; i < aEnd; i++) {
+				countsA[a[i]] = 0;
+			}
+			for (int j = bBegin; j < bEnd; j++) {
+				countsB[b[j]] = 0;
+			}
+			if (matches == 0) {
+				fallback.compareChanged(aBegin, aEnd, bBegin, bEnd);
+				return;
+			}
+			// longest increasing subsequence of the positions in a (patience sorting)
+			int[] tails = new int[matches];
+			int[] previous = new int[matches];
+			int piles = 0;
+			for (int k = 0; k < matches; k++) {
+				int low = 0;
+				int high = piles;
+				while (low < high) {
+					int mid = (low + high) >>> 1;
+					if (matchesA[tails[mid]] < matchesA[k]) {
+						low = mid + 1;
+					} else {
+						high = mid;
+					}
+				}
+				previous[k] = low > 0 ? tails[low - 1] : -1;
+				tails[low] = k;
+				if (low == piles) {
+					piles++;
+				}
+			}
+			int[] anchors = new int[piles];
+			for (int k = tails[piles - 1], i = piles - 1; k != -1; k = previous[k], i--) {
+				anchors[i] = k;
+			}
+			int nextA = aBegin;
+			int nextB = bBegin;
+			for (int i = 0; i < piles; i++) {
+				int anchorA = matchesA[anchors[i]];
+				int anchorB = matchesB[anchors[i]];
+				compare(nextA, anchorA, nextB, anchorB);
+				nextA = anchorA + 1;
+				nextB = anchorB + 1;
+			}
+			compare(nextA, aEnd, nextB, bEnd);
+		}
+	}
+}
@@ -20,11 +20,16 @@ import java.io.File;
 import org.walkmod.ChainReader;
 import org.walkmod.Resource;
 import org.walkmod.util.FileResource;
+import org.walkmod.util.IncrementalManifest;
 
 public class DefaultFileReader extends ChainReader {
 
 	private String[] extensions;
 
+	private IncrementalManifest manifest;
+
+	private String[] files;
+
 	public String[] getExtensions() {
 		return extensions;
 	}
@@ -33,6 +38,22 @@ public class DefaultFileReader extends ChainReader {
 		this.extensions = extensions;
 	}
 
+	public IncrementalManifest getManifest() {
+		return manifest;
+	}
+
+	public void setManifest(IncrementalManifest manifest) {
+		this.manifest = manifest;
+	}
+
+	public String[] getFiles() {
+		return files;
+	}
+
+	public void setFiles(String[] files) {
+		this.files = files;
+	}
+
 	@Override
 	public Resource<File> read() throws Exception {
 		FileResource resource = new FileResource();
@@ -40,6 +61,8 @@ public class DefaultFileReader extends ChainReader {
 		resource.setExtensions(getExtensions());
 		resource.setExcludes(getExcludes());
 		resource.setIncludes(getIncludes());
+		resource.setManifest(getManifest());
+		resource.setFiles(getFiles());
 		return resource;
 	}
 }
@@ -0,0 +1,139 @@
+/*
+  Copyright (C) 2013 Raquel Pau and Albert Coroleu.
+
+ Walkmod is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Lesser General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Walkmod is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public License
+ along with Walkmod.  If not, see <http://www.gnu.org/licenses/>.*/
+package org.walkmod.util;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Sources of explicit file lists: plain lists (one path per line) from a file or the standard input,
+ * and the files changed according to <code>git diff</code>.
+ */
+public class ChangedFiles {
+
+	/** Name of the source that represents the standard input. */
+	public static final String STDIN = "-";
+
+	/**
+	 * Reads one path per line. Empty lines and lines starting with <code>#</code> are ignored.
+	 */
+	public static List<String> read(Reader reader) throws IOException {
+		List<String> result = new LinkedList<String>();
+		BufferedReader br = new BufferedReader(reader);
+		String line = br.readLine();
+		while (line != null) {
+			line = line.trim();
+			if (line.length() > 0 && !line.startsWith("#")) {
+				result.add(line);
+			}
+			line = br.readLine();
+		}
+		return result;
+	}
+
+	/**
+	 * Reads the paths of a file, or of the standard input if the source is {@link #STDIN}.
+	 */
+	public static List<String> read(String source) throws IOException {
+		if (STDIN.equals(source)) {
+			return read(new InputStreamReader(System.in));
+		}
+		InputStream is = new FileInputStream(source);
+		try {
+			return read(new InputStreamReader(is));
+		} finally {
+			is.close();
+		}
+	}
+
+	/**
+	 * Returns the paths, relative to the directory, of the files added, copied, modified or renamed
+	 * according to <code>git diff --name-only</code>.
+	 *
+	 * @param directory
+	 *            working directory of git.
+	 * @param revision
+	 *            revision to compare with (e.g. HEAD or origin/master). If it is null, the working tree
+	 *            is compared with the index.
+	 */
+	public static List<String> fromGitDiff(File directory, String revision) throws IOException {
+		List<String> command = new LinkedList<String>();
+		command.add("git");
+		command.add("diff");
+		command.add("--name-only");
+		command.add("--relative");
+		command.add("--diff-filter=ACMR");
+		if (revision != null) {
+			command.add(revision);
+		}
+		ProcessBuilder pb = new ProcessBuilder(command);
+		pb.directory(directory);
+		Process process = pb.start();
+		try {
+			process.getOutputStream().close();
+			// the error output is drained in parallel, so that git never blocks writing it
+			ErrorReader error = new ErrorReader(process.getErrorStream());
+			error.start();
+			List<String> result = read(new InputStreamReader(process.getInputStream()));
+			int exitValue = process.waitFor();
+			error.join();
+			if (exitValue != 0) {
+				throw new IOException("git diff fails (" + exitValue + "): " + error.getText().trim());
+			}
+			return result;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("git diff has been interrupted");
+		} finally {
+			process.destroy();
+		}
+	}
+
+	private static class ErrorReader extends Thread {
+
+		private final InputStream is;
+
+		private volatile String text = "";
+
+		public ErrorReader(InputStream is) {
+			super("git-diff-stderr");
+			setDaemon(true);
+			this.is = is;
+		}
+
+		@Override
+		public void run() {
+			try {
+				text = IOUtils.toString(is);
+			} catch (IOException e) {
+				text = e.getMessage();
+			}
+		}
+
+		public String getText() {
+			return text;
+		}
+	}
+}
@@ -0,0 +1,102 @@
+/*
+  Copyright (C) 2013 Raquel Pau and Albert Coroleu.
+
+ Walkmod is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Lesser General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Walkmod is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public License
+ along with Walkmod.  If not, see <http://www.gnu.org/licenses/>.*/
+package org.walkmod.util;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * SHA-1 digests of files and contents, as hexadecimal strings.
+ */
+public class ContentHash {
+
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+	private final MessageDigest digest;
+
+	public ContentHash() {
+		try {
+			digest = MessageDigest.getInstance("SHA-1");
+		} catch (NoSuchAlgorithmException e) {
+			// all the Java platforms must support SHA-1
+			throw new IllegalStateException(e);
+		}
+	}
+
+	public ContentHash update(byte[] content) {
+		digest.update(content);
+		return this;
+	}
+
+	public ContentHash update(byte[] content, int offset, int length) {
+		digest.update(content, offset, length);
+		return this;
+	}
+
+	public ContentHash update(String content) {
+		if (content != null) {
+			try {
+				digest.update(content.getBytes("UTF-8"));
+			} catch (UnsupportedEncodingException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+		// separates the consecutive values
+		digest.update((byte) 0);
+		return this;
+	}
+
+	public ContentHash update(File file) throws IOException {
+		InputStream is = new FileInputStream(file);
+		try {
+			byte[] buffer = new byte[8192];
+			int read = is.read(buffer);
+			while (read != -1) {
+				digest.update(buffer, 0, read);
+				read = is.read(buffer);
+			}
+		} finally {
+			is.close();
+		}
+		return this;
+	}
+
+	/**
+	 * Returns the digest of all the updated values and resets it.
+	 */
+	public String toHex() {
+		byte[] bytes = digest.digest();
+		char[] result = new char[bytes.length * 2];
+		for (int i = 0; i < bytes.length; i++) {
+			result[i * 2] = HEX[(bytes[i] >> 4) & 0xf];
+			result[i * 2 + 1] = HEX[bytes[i] & 0xf];
+		}
+		return new String(result);
+	}
+
+	public static String of(File file) throws IOException {
+		return new ContentHash().update(file).toHex();
+	}
+
+	public static String of(byte[] content) {
+		return new ContentHash().update(content).toHex();
+	}
+}
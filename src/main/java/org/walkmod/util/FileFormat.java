@@ -0,0 +1,201 @@
+/*
+  Copyright (C) 2013 Raquel Pau and Albert Coroleu.
+
+ Walkmod is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Lesser General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Walkmod is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public License
+ along with Walkmod.  If not, see <http://www.gnu.org/licenses/>.*/
+package org.walkmod.util;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Text format of a file: its line ending, its charset and if it starts with a byte order mark (BOM).
+ * It is detected from the first bytes of the file, so that the writers keep the format of the
+ * original files. The format of a file that has been read can also carry the hash of its content,
+ * so that the writers know if a new content is the same without reading the file again.
+ */
+public class FileFormat {
+
+	/** Number of bytes read to detect the format of a file. */
+	public static final int HEAD_SIZE = 8192;
+
+	private static final byte[][] BOMS = { { 0, 0, (byte) 0xFE, (byte) 0xFF }, { (byte) 0xFF, (byte) 0xFE, 0, 0 },
+			{ (byte) 0xEF, (byte) 0xBB, (byte) 0xBF }, { (byte) 0xFE, (byte) 0xFF }, { (byte) 0xFF, (byte) 0xFE } };
+
+	private static final String[] BOM_ENCODINGS = { "UTF-32BE", "UTF-32LE", "UTF-8", "UTF-16BE", "UTF-16LE" };
+
+	private final String lineEnding;
+
+	private final String encoding;
+
+	private final boolean bom;
+
+	private final String contentHash;
+
+	private final long length;
+
+	private final long lastModified;
+
+	/**
+	 * @param lineEnding
+	 *            <code>\n</code>, <code>\r\n</code>, <code>\r</code> or null if it is unknown.
+	 * @param encoding
+	 *            charset of the file.
+	 * @param bom
+	 *            if the file starts with a byte order mark.
+	 */
+	public FileFormat(String lineEnding, String encoding, boolean bom) {
+		this(lineEnding, encoding, bom, null, -1, 0);
+	}
+
+	private FileFormat(String lineEnding, String encoding, boolean bom, String contentHash, long length,
+			long lastModified) {
+		this.lineEnding = lineEnding;
+		this.encoding = encoding;
+		this.bom = bom;
+		this.contentHash = contentHash;
+		this.length = length;
+		this.lastModified = lastModified;
+	}
+
+	/**
+	 * Returns the same format with the hash of the content that has been read from a file, together
+	 * with the size and last modification of the file.
+	 *
+	 * @see ContentHash
+	 */
+	public FileFormat withContentHash(File file, String contentHash) {
+		return new FileFormat(lineEnding, encoding, bom, contentHash, file.length(), file.lastModified());
+	}
+
+	/**
+	 * Returns the same format without content hash, e.g. once the file has been written.
+	 */
+	public FileFormat withoutContentHash() {
+		if (contentHash == null) {
+			return this;
+		}
+		return new FileFormat(lineEnding, encoding, bom);
+	}
+
+	/**
+	 * Returns the hash of the content of a file if it is known and the file has not been modified
+	 * since it was read, or null otherwise.
+	 */
+	public String getContentHash(File file) {
+		if (contentHash != null && file.length() == length && file.lastModified() == lastModified) {
+			return contentHash;
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the first line ending of the file, or null if it has a single line.
+	 */
+	public String getLineEnding() {
+		return lineEnding;
+	}
+
+	/**
+	 * Returns <code>\r</code> if the lines end with a carriage return (with or without line feed)
+	 * and <code>\n</code> otherwise.
+	 */
+	public char getEndLineChar() {
+		return lineEnding != null && lineEnding.charAt(0) == '\r' ? '\r' : '\n';
+	}
+
+	public String getEncoding() {
+		return encoding;
+	}
+
+	public boolean hasBom() {
+		return bom;
+	}
+
+	/**
+	 * Returns the length of the byte order mark, or 0 if there is none.
+	 */
+	public static int getBomLength(byte[] content, int length) {
+		for (int i = 0; i < BOMS.length; i++) {
+			if (startsWith(content, length, BOMS[i])) {
+				return BOMS[i].length;
+			}
+		}
+		return 0;
+	}
+
+	private static boolean startsWith(byte[] content, int length, byte[] prefix) {
+		if (length < prefix.length) {
+			return false;
+		}
+		for (int i = 0; i < prefix.length; i++) {
+			if (content[i] != prefix[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Detects the format of the beginning of a file.
+	 *
+	 * @param content
+	 *            the first bytes of the file.
+	 * @param length
+	 *            number of bytes of the content.
+	 * @param defaultEncoding
+	 *            charset of the file if it does not start with a byte order mark.
+	 */
+	public static FileFormat detect(byte[] content, int length, String defaultEncoding) throws IOException {
+		String encoding = defaultEncoding;
+		int bomLength = 0;
+		for (int i = 0; i < BOMS.length && bomLength == 0; i++) {
+			if (startsWith(content, length, BOMS[i])) {
+				bomLength = BOMS[i].length;
+				encoding = BOM_ENCODINGS[i];
+			}
+		}
+		String text = new String(content, bomLength, length - bomLength, encoding);
+		String lineEnding = null;
+		for (int i = 0; i < text.length() && lineEnding == null; i++) {
+			char c = text.charAt(i);
+			if (c == '\n') {
+				lineEnding = "\n";
+			} else if (c == '\r') {
+				// a carriage return at the end of the head is considered a \r\n
+				lineEnding = i + 1 < text.length() && text.charAt(i + 1) != '\n' ? "\r" : "\r\n";
+			}
+		}
+		return new FileFormat(lineEnding, encoding, bomLength > 0);
+	}
+
+	/**
+	 * Detects the format of a file reading its first {@link #HEAD_SIZE} bytes.
+	 */
+	public static FileFormat detect(File file, String defaultEncoding) throws IOException {
+		byte[] head = new byte[HEAD_SIZE];
+		int length = 0;
+		InputStream is = new FileInputStream(file);
+		try {
+			int read = 0;
+			while (length < HEAD_SIZE && (read = is.read(head, length, HEAD_SIZE - length)) != -1) {
+				length += read;
+			}
+		} finally {
+			is.close();
+		}
+		return detect(head, length, defaultEncoding);
+	}
+}
@@ -17,15 +17,16 @@
 package org.walkmod.util;
 
 import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
+import java.util.Map;
 
-import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
-import org.apache.commons.io.filefilter.IOFileFilter;
 import org.apache.commons.io.filefilter.SuffixFileFilter;
-import org.apache.commons.io.filefilter.TrueFileFilter;
 import org.walkmod.Resource;
 
 public class FileResource implements Resource<File> {
@@ -38,6 +39,10 @@ public class FileResource implements Resource<File> {
 
 	private String[] excludes;
 
+	private IncrementalManifest manifest;
+
+	private String[] files;
+
 	public File getFile() {
 		return file;
 	}
@@ -51,6 +56,30 @@ public class FileResource implements Resource<File> {
 		setFile(f);
 	}
 
+	public IncrementalManifest getManifest() {
+		return manifest;
+	}
+
+	/**
+	 * Sets the manifest of the incremental mode. The files that have not changed since the last
+	 * execution without modifications are not iterated.
+	 */
+	public void setManifest(IncrementalManifest manifest) {
+		this.manifest = manifest;
+	}
+
+	public String[] getFiles() {
+		return files;
+	}
+
+	/**
+	 * Sets an explicit list of files to iterate instead of scanning the directory. The files out of the
+	 * directory, or rejected by the extensions and the include and exclude rules, are ignored.
+	 */
+	public void setFiles(String[] files) {
+		this.files = files;
+	}
+
 	public String[] getExtensions() {
 		return extensions;
 	}
@@ -67,124 +96,77 @@ public class FileResource implements Resource<File> {
 		return suffixes;
 	}
 
-	private boolean matches(String fileName, String filter) {
-
-		return filter.startsWith(fileName) || FilenameUtils.wildcardMatch(fileName, filter)
-				|| fileName.startsWith(filter);
-
-	}
-
 	@Override
 	public Iterator<File> iterator() {
-		String fileNormalized = FilenameUtils.normalize(file.getAbsolutePath(), true);
-		if (includes != null) {
-			for (int i = 0; i < includes.length; i++) {
-
-				if (!includes[i].startsWith(fileNormalized)) {
+		if (file.isDirectory()) {
+			final PathPatternMatcher matcher = new PathPatternMatcher(file.getAbsolutePath(), includes, excludes);
+			final FileFilter suffixFilter = extensions != null ? new SuffixFileFilter(toSuffixes(extensions)) : null;
+			final IncrementalManifest manifest = this.manifest;
 
-					includes[i] = fileNormalized + "/" + includes[i];
+			FileFilter filter = new FileFilter() {
 
+				@Override
+				public boolean accept(File file) {
+					return (suffixFilter == null || suffixFilter.accept(file)) && matcher.matches(file)
+							&& (manifest == null || !manifest.isUnchanged(file));
 				}
-				if (includes[i].endsWith("**")) {
-					includes[i] = includes[i].substring(0, includes[i].length() - 3);
+			};
+			FileFilter directoryFilter = new FileFilter() {
+
+				@Override
+				public boolean accept(File dir) {
+					return !matcher.canPrune(dir);
 				}
+			};
+			if (files != null) {
+				return selectFiles(filter).iterator();
 			}
+			return new FileTreeIterator(file, filter, directoryFilter);
 		}
-		if (excludes != null) {
-			for (int i = 0; i < excludes.length; i++) {
+		Collection<File> aux = new LinkedList<File>();
+		if (extensions == null && (files == null || resolveFiles().containsKey(normalize(file)))
+				&& (manifest == null || !manifest.isUnchanged(file))) {
+			aux.add(file);
+		}
+		return aux.iterator();
+	}
 
-				if (!excludes[i].startsWith(fileNormalized)) {
-					excludes[i] = fileNormalized + "/" + excludes[i];
+	private static String normalize(File file) {
+		return PathPatternMatcher.normalize(file.getAbsolutePath());
+	}
 
-				}
-				if (excludes[i].endsWith("**")) {
-					excludes[i] = excludes[i].substring(0, excludes[i].length() - 3);
-				}
+	/**
+	 * Returns the explicit files by their canonical path, as the resource directory, so that the files
+	 * under a symbolic link are found.
+	 */
+	private Map<String, File> resolveFiles() {
+		Map<String, File> result = new LinkedHashMap<String, File>();
+		for (int i = 0; i < files.length; i++) {
+			File current = new File(files[i]).getAbsoluteFile();
+			try {
+				current = current.getCanonicalFile();
+			} catch (IOException e) {
+				// it is compared by its absolute path
 			}
+			result.put(normalize(current), current);
 		}
+		return result;
+	}
 
-		if (file.isDirectory()) {
-
-			IOFileFilter filter = null;
-
-			IOFileFilter directoryFilter = TrueFileFilter.INSTANCE;
-			if (excludes != null || includes != null) {
-
-				directoryFilter = new IOFileFilter() {
-
-					@Override
-					public boolean accept(File dir, String name) {
-
-						boolean excludesEval = false;
-						boolean includesEval = false;
-						String aux = FilenameUtils.normalize(name, true);
-						if (excludes != null) {
-							for (int i = 0; i < excludes.length && !excludesEval; i++) {
-								excludesEval = (FilenameUtils.wildcardMatch(aux, excludes[i]) || dir.getAbsolutePath()
-										.startsWith(excludes[i]));
-							}
-						}
-						if (includes != null) {
-							for (int i = 0; i < includes.length && !includesEval; i++) {
-								includesEval = matches(aux, includes[i]);
-							}
-						} else {
-							includesEval = true;
-						}
-						return (includesEval && !excludesEval) || (includes == null && excludes == null);
-
-					}
-
-					@Override
-					public boolean accept(File file) {
-						boolean excludesEval = false;
-						boolean includesEval = false;
-
-						String aux = FilenameUtils.normalize(file.getAbsolutePath(), true);
-						if (excludes != null) {
-
-							for (int i = 0; i < excludes.length && !excludesEval; i++) {
-								excludesEval = (FilenameUtils.wildcardMatch(aux, excludes[i]) || file.getParentFile()
-										.getAbsolutePath().startsWith(excludes[i]));
-							}
-						}
-						if (includes != null) {
-							for (int i = 0; i < includes.length && !includesEval; i++) {
-								includesEval = matches(aux, includes[i]);
-							}
-						} else {
-							includesEval = true;
-						}
-						boolean result = (includesEval && !excludesEval) || (includes == null && excludes == null);
-
-						return result;
-
-					}
-				};
-				if (extensions == null) {
-					filter = directoryFilter;
-
-				} else {
-					String[] suffixes = toSuffixes(extensions);
-					filter = new SuffixFileFilter(suffixes);
-				}
-
-			} else {
-				if (extensions == null) {
-					filter = TrueFileFilter.INSTANCE;
-				} else {
-					String[] suffixes = toSuffixes(extensions);
-					filter = new SuffixFileFilter(suffixes);
-				}
+	/**
+	 * Returns the explicit files that exist in the resource directory and are accepted by the filter,
+	 * without scanning the directory.
+	 */
+	private Collection<File> selectFiles(FileFilter filter) {
+		String root = normalize(file) + "/";
+		Collection<File> result = new LinkedList<File>();
+		for (Map.Entry<String, File> entry : resolveFiles().entrySet()) {
+			File current = entry.getValue();
+			if (entry.getKey().startsWith(root) && current.isFile() && filter.accept(current)) {
+				result.add(current);
 			}
-
-			return FileUtils.listFiles(file, filter, directoryFilter).iterator();
 		}
-		Collection<File> aux = new LinkedList<File>();
-		if (extensions == null) {
-			aux.add(file);
-		}
-		return aux.iterator();
+		return result;
 	}
 
 	@Override
@@ -0,0 +1,116 @@
+/*
+  Copyright (C) 2013 Raquel Pau and Albert Coroleu.
+
+ Walkmod is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Lesser General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Walkmod is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public License
+ along with Walkmod.  If not, see <http://www.gnu.org/licenses/>.*/
+package org.walkmod.util;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.NoSuchElementException;
+
+/**
+ * Iterates the files of a directory tree as they are discovered, in the same order as
+ * <code>FileUtils.listFiles</code>, without loading the whole tree in memory. Only one directory
+ * listing per tree level is kept. The directories rejected by the directory filter are never
+ * listed, so their subtree is pruned.
+ */
+public class FileTreeIterator implements Iterator<File> {
+
+	private final FileFilter fileFilter;
+
+	private final FileFilter directoryFilter;
+
+	private final LinkedList<DirectoryCursor> stack = new LinkedList<DirectoryCursor>();
+
+	private File next;
+
+	/**
+	 * @param root
+	 *            directory to iterate. It is not evaluated by the directory filter.
+	 * @param fileFilter
+	 *            filter of the returned files.
+	 * @param directoryFilter
+	 *            filter of the directories to enter.
+	 */
+	public FileTreeIterator(File root, FileFilter fileFilter, FileFilter directoryFilter) {
+		this.fileFilter = fileFilter;
+		this.directoryFilter = directoryFilter;
+		push(root);
+	}
+
+	private void push(File directory) {
+		File[] entries = directory.listFiles();
+		if (entries != null && entries.length > 0) {
+			stack.addLast(new DirectoryCursor(entries));
+		}
+	}
+
+	private File advance() {
+		while (!stack.isEmpty()) {
+			DirectoryCursor cursor = stack.getLast();
+			if (cursor.position == cursor.entries.length) {
+				stack.removeLast();
+			} else {
+				File current = cursor.entries[cursor.position];
+				// releases the reference as soon as possible
+				cursor.entries[cursor.position] = null;
+				cursor.position++;
+				if (current.isDirectory()) {
+					if (directoryFilter.accept(current)) {
+						push(current);
+					}
+				} else if (fileFilter.accept(current)) {
+					return current;
+				}
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public boolean hasNext() {
+		if (next == null) {
+			next = advance();
+		}
+		return next != null;
+	}
+
+	@Override
+	public File next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		File result = next;
+		next = null;
+		return result;
+	}
+
+	@Override
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+
+	private static class DirectoryCursor {
+
+		private final File[] entries;
+
+		private int position = 0;
+
+		public DirectoryCursor(File[] entries) {
+			this.entries = entries;
+		}
+	}
+}
@@ -0,0 +1,174 @@
+/*
+  Copyright (C) 2013 Raquel Pau and Albert Coroleu.
+
+ Walkmod is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Lesser General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Walkmod is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public License
+ along with Walkmod.  If not, see <http://www.gnu.org/licenses/>.*/
+package org.walkmod.util;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Detects the files created or modified under a set of directories by comparing snapshots of their
+ * size and last modification time. The directories are scanned by polling. Hidden directories
+ * (e.g. <code>.git</code> or <code>.walkmod</code>) and the directories that the include and exclude
+ * rules of a root prune (e.g. <code>target</code>) are skipped.
+ */
+public class FileWatcher {
+
+	private final Map<File, PathPatternMatcher> roots = new LinkedHashMap<File, PathPatternMatcher>();
+
+	private Map<String, Stamp> snapshot;
+
+	/**
+	 * Takes the initial snapshot of the roots.
+	 *
+	 * @param roots
+	 *            directories or files to watch.
+	 */
+	public FileWatcher(Collection<File> roots) {
+		for (File root : roots) {
+			this.roots.put(root.getAbsoluteFile(), new PathPatternMatcher(null, null, null));
+		}
+		snapshot = scan();
+	}
+
+	/**
+	 * Takes the initial snapshot of the roots.
+	 *
+	 * @param roots
+	 *            directories or files to watch, and the rules of the files of each one.
+	 */
+	public FileWatcher(Map<File, PathPatternMatcher> roots) {
+		for (Map.Entry<File, PathPatternMatcher> entry : roots.entrySet()) {
+			this.roots.put(entry.getKey().getAbsoluteFile(), entry.getValue());
+		}
+		snapshot = scan();
+	}
+
+	private Map<String, Stamp> scan() {
+		Map<String, Stamp> result = new HashMap<String, Stamp>();
+		for (Map.Entry<File, PathPatternMatcher> entry : roots.entrySet()) {
+			File root = entry.getKey();
+			final PathPatternMatcher matcher = entry.getValue();
+			if (root.isDirectory()) {
+				FileFilter fileFilter = new FileFilter() {
+					@Override
+					public boolean accept(File file) {
+						return matcher.matches(file);
+					}
+				};
+				FileFilter directoryFilter = new FileFilter() {
+					@Override
+					public boolean accept(File directory) {
+						return !directory.getName().startsWith(".") && !matcher.canPrune(directory);
+					}
+				};
+				Iterator<File> it = new FileTreeIterator(root, fileFilter, directoryFilter);
+				while (it.hasNext()) {
+					File file = it.next();
+					result.put(file.getPath(), new Stamp(file));
+				}
+			} else if (root.isFile()) {
+				result.put(root.getPath(), new Stamp(root));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Scans the roots and returns the files created or modified since the previous scan. Deleted
+	 * files are forgotten.
+	 */
+	public Set<File> poll() {
+		Map<String, Stamp> current = scan();
+		Set<File> result = new LinkedHashSet<File>();
+		for (Map.Entry<String, Stamp> entry : current.entrySet()) {
+			if (!entry.getValue().equals(snapshot.get(entry.getKey()))) {
+				result.add(new File(entry.getKey()));
+			}
+		}
+		snapshot = current;
+		return result;
+	}
+
+	/**
+	 * Waits until some file is created or modified and returns all the files changed until a scan
+	 * does not find new changes. So, a burst of changes (e.g. saving several files or a checkout)
+	 * is returned at once.
+	 *
+	 * @param interval
+	 *            milliseconds between two scans.
+	 * @throws InterruptedException
+	 *             if the current thread is interrupted while waiting.
+	 */
+	public Set<File> awaitChanges(long interval) throws InterruptedException {
+		Set<File> result = new LinkedHashSet<File>();
+		while (true) {
+			Thread.sleep(interval);
+			Set<File> changes = poll();
+			if (changes.isEmpty() && !result.isEmpty()) {
+				return result;
+			}
+			result.addAll(changes);
+		}
+	}
+
+	/**
+	 * Updates the snapshot of some files without reporting them, e.g. the files written by walkmod
+	 * itself.
+	 */
+	public void update(Collection<File> files) {
+		for (File file : files) {
+			String path = file.getAbsolutePath();
+			if (file.isFile()) {
+				snapshot.put(path, new Stamp(file));
+			} else {
+				snapshot.remove(path);
+			}
+		}
+	}
+
+	private static class Stamp {
+
+		private final long lastModified;
+
+		private final long length;
+
+		public Stamp(File file) {
+			this.lastModified = file.lastModified();
+			this.length = file.length();
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (o instanceof Stamp) {
+				Stamp other = (Stamp) o;
+				return lastModified == other.lastModified && length == other.length;
+			}
+			return false;
+		}
+
+		@Override
+		public int hashCode() {
+			return (int) (lastModified ^ (lastModified >>> 32)) * 31 + (int) length;
+		}
+	}
+}
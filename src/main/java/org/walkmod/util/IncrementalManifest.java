@@ -0,0 +1,221 @@
+/*
+  Copyright (C) 2013 Raquel Pau and Albert Coroleu.
+
+ Walkmod is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Lesser General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Walkmod is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public License
+ along with Walkmod.  If not, see <http://www.gnu.org/licenses/>.*/
+package org.walkmod.util;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Persistent record of the files of a chain that were processed without producing changes. It is
+ * stored per chain under the cache directory and keyed by the file path, size, last modification
+ * and content hash. The whole manifest is discarded when its fingerprint (e.g. a hash of the
+ * configuration files and the resolved plugins) changes.
+ *
+ * The reader asks {@link #isUnchanged(File)} for every file before parsing it. The files that are
+ * not skipped are recorded as candidates and, once the chain has been executed,
+ * {@link #save(Collection, Collection)} stores those that have been neither modified nor reported by a
+ * visitor, so that the findings of a file are reported again until it changes.
+ */
+public class IncrementalManifest {
+
+	public static final String CACHE_DIRECTORY = ".walkmod" + File.separator + "cache";
+
+	private static final String FINGERPRINT_KEY = "walkmod.fingerprint";
+
+	private static Logger log = Logger.getLogger(IncrementalManifest.class);
+
+	private final File file;
+
+	private final String fingerprint;
+
+	private final Map<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+
+	private final Set<String> candidates = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+	/**
+	 * @param file
+	 *            file of the manifest. The previous entries are loaded if it exists.
+	 * @param fingerprint
+	 *            hash of all the inputs of the chain, except the files.
+	 */
+	public IncrementalManifest(File file, String fingerprint) {
+		this.file = file;
+		this.fingerprint = fingerprint;
+		if (file.exists()) {
+			load();
+		}
+	}
+
+	public static File getManifestFile(File executionDirectory, String chainName) {
+		String name = chainName != null ? chainName.replaceAll("[^A-Za-z0-9._-]", "_") : "default";
+		return new File(new File(executionDirectory, CACHE_DIRECTORY), name + ".manifest");
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	public String getFingerprint() {
+		return fingerprint;
+	}
+
+	private void load() {
+		Properties properties = new Properties();
+		try {
+			InputStream is = new FileInputStream(file);
+			try {
+				properties.load(is);
+			} finally {
+				is.close();
+			}
+		} catch (IOException e) {
+			log.warn("The incremental manifest " + file.getAbsolutePath() + " cannot be read. It will be rebuilt.");
+			return;
+		}
+		if (fingerprint.equals(properties.getProperty(FINGERPRINT_KEY))) {
+			for (String key : properties.stringPropertyNames()) {
+				if (!FINGERPRINT_KEY.equals(key)) {
+					Entry entry = Entry.parse(properties.getProperty(key));
+					if (entry != null) {
+						entries.put(key, entry);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns if the file has the same content than the last time it was processed without changes.
+	 * Otherwise, it is recorded as a candidate to store.
+	 */
+	public boolean isUnchanged(File file) {
+		String key = file.getAbsolutePath();
+		Entry entry = entries.get(key);
+		if (entry != null && entry.size == file.length()) {
+			long lastModified = file.lastModified();
+			if (entry.lastModified == lastModified) {
+				return true;
+			}
+			try {
+				if (entry.hash.equals(ContentHash.of(file))) {
+					entries.put(key, new Entry(entry.size, lastModified, entry.hash));
+					return true;
+				}
+			} catch (IOException e) {
+				log.debug("The file " + key + " cannot be hashed", e);
+			}
+		}
+		candidates.add(key);
+		return false;
+	}
+
+	/**
+	 * Stores the candidates that have not been modified nor reported, together with the previous
+	 * unchanged entries.
+	 *
+	 * @param writtenFiles
+	 *            files written during the execution. It can be null.
+	 * @param reportedFiles
+	 *            files that have produced visitor messages during the execution. It can be null.
+	 */
+	public void save(Collection<File> writtenFiles, Collection<File> reportedFiles) throws IOException {
+		Set<String> modified = new HashSet<String>();
+		addPaths(writtenFiles, modified);
+		addPaths(reportedFiles, modified);
+		for (String candidate : candidates) {
+			File current = new File(candidate);
+			if (!modified.contains(candidate) && current.isFile()) {
+				long lastModified = current.lastModified();
+				entries.put(candidate, new Entry(current.length(), lastModified, ContentHash.of(current)));
+			} else {
+				entries.remove(candidate);
+			}
+		}
+		for (String key : modified) {
+			entries.remove(key);
+		}
+		candidates.clear();
+
+		Properties properties = new Properties();
+		properties.setProperty(FINGERPRINT_KEY, fingerprint);
+		for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+			properties.setProperty(entry.getKey(), entry.getValue().toString());
+		}
+		File parent = file.getParentFile();
+		if (parent != null && !parent.exists()) {
+			parent.mkdirs();
+		}
+		OutputStream os = new FileOutputStream(file);
+		try {
+			properties.store(os, "walkmod incremental manifest");
+		} finally {
+			os.close();
+		}
+	}
+
+	private static void addPaths(Collection<File> files, Set<String> paths) {
+		if (files != null) {
+			for (File file : files) {
+				paths.add(file.getAbsolutePath());
+			}
+		}
+	}
+
+	private static class Entry {
+
+		private final long size;
+
+		private final long lastModified;
+
+		private final String hash;
+
+		public Entry(long size, long lastModified, String hash) {
+			this.size = size;
+			this.lastModified = lastModified;
+			this.hash = hash;
+		}
+
+		public static Entry parse(String value) {
+			String[] parts = value.split(":");
+			if (parts.length == 3) {
+				try {
+					return new Entry(Long.parseLong(parts[0]), Long.parseLong(parts[1]), parts[2]);
+				} catch (NumberFormatException e) {
+					return null;
+				}
+			}
+			return null;
+		}
+
+		@Override
+		public String toString() {
+			return size + ":" + lastModified + ":" + hash;
+		}
+	}
+}
@@ -0,0 +1,118 @@
+/*
+  Copyright (C) 2013 Raquel Pau and Albert Coroleu.
+
+ Walkmod is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Lesser General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Walkmod is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public License
+ along with Walkmod.  If not, see <http://www.gnu.org/licenses/>.*/
+package org.walkmod.util;
+
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writer that translates the line endings (<code>\n</code>, <code>\r</code> or <code>\r\n</code>) to a
+ * given one. The characters between two line endings are written as a single run, so the
+ * underlying writer receives a few bulk writes instead of one write per character.
+ */
+public class LineEndingWriter extends FilterWriter {
+
+	private static final int CHUNK_SIZE = 4096;
+
+	private final String endLine;
+
+	private final boolean unixEndLine;
+
+	private char[] chunk;
+
+	private boolean lastWasCR = false;
+
+	private char last = '\0';
+
+	private long count = 0;
+
+	public LineEndingWriter(Writer out, String endLine) {
+		super(out);
+		this.endLine = endLine;
+		this.unixEndLine = "\n".equals(endLine);
+	}
+
+	@Override
+	public void write(int c) throws IOException {
+		write(new char[] { (char) c }, 0, 1);
+	}
+
+	@Override
+	public void write(String str, int off, int len) throws IOException {
+		if (chunk == null) {
+			chunk = new char[CHUNK_SIZE];
+		}
+		int end = off + len;
+		while (off < end) {
+			int size = Math.min(CHUNK_SIZE, end - off);
+			str.getChars(off, off + size, chunk, 0);
+			write(chunk, 0, size);
+			off += size;
+		}
+	}
+
+	@Override
+	public void write(char[] cbuf, int off, int len) throws IOException {
+		if (len <= 0) {
+			return;
+		}
+		int end = off + len;
+		int start = off;
+		for (int i = off; i < end; i++) {
+			char c = cbuf[i];
+			if (c == '\n') {
+				if (lastWasCR) {
+					// second character of \r\n, whose line ending has been already written
+					out.write(cbuf, start, i - start);
+					start = i + 1;
+					lastWasCR = false;
+				} else if (!unixEndLine) {
+					out.write(cbuf, start, i - start);
+					out.write(endLine);
+					start = i + 1;
+				}
+			} else if (c == '\r') {
+				out.write(cbuf, start, i - start);
+				out.write(endLine);
+				start = i + 1;
+				lastWasCR = true;
+			} else {
+				lastWasCR = false;
+			}
+		}
+		out.write(cbuf, start, end - start);
+		last = cbuf[end - 1];
+		count += len;
+	}
+
+	/**
+	 * Writes a line ending if the content does not finish with one.
+	 */
+	public void terminateLastLine() throws IOException {
+		if (count > 0 && last != '\n' && last != '\r') {
+			out.write(endLine);
+			last = '\n';
+		}
+	}
+
+	/**
+	 * Returns if nothing has been written.
+	 */
+	public boolean isEmpty() {
+		return count == 0;
+	}
+}
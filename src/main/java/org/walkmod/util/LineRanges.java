@@ -0,0 +1,181 @@
+/*
+  Copyright (C) 2013 Raquel Pau and Albert Coroleu.
+
+ Walkmod is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Lesser General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Walkmod is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public License
+ along with Walkmod.  If not, see <http://www.gnu.org/licenses/>.*/
+package org.walkmod.util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Sorted set of line ranges (1-based and inclusive) of a file, e.g. the lines changed by a pull
+ * request. Overlapping and adjacent ranges are merged, so the lookups are binary searches.
+ */
+public class LineRanges {
+
+	private static final Pattern HUNK_HEADER = Pattern.compile("^@@ -(\\d+)(?:,(\\d+))? \\+(\\d+)(?:,(\\d+))? @@.*");
+
+	private int[] begins = new int[0];
+
+	private int[] ends = new int[0];
+
+	public LineRanges() {
+	}
+
+	public LineRanges(int beginLine, int endLine) {
+		add(beginLine, endLine);
+	}
+
+	/**
+	 * Adds the lines between beginLine and endLine, both included.
+	 */
+	public synchronized void add(int beginLine, int endLine) {
+		if (endLine < beginLine) {
+			return;
+		}
+		int size = begins.length;
+		int[] newBegins = new int[size + 1];
+		int[] newEnds = new int[size + 1];
+		int j = 0;
+		int i = 0;
+		// ranges before the new one
+		while (i < size && ends[i] < beginLine - 1) {
+			newBegins[j] = begins[i];
+			newEnds[j++] = ends[i++];
+		}
+		// ranges overlapping or adjacent to the new one
+		int begin = beginLine;
+		int end = endLine;
+		while (i < size && begins[i] <= endLine + 1) {
+			begin = Math.min(begin, begins[i]);
+			end = Math.max(end, ends[i++]);
+		}
+		newBegins[j] = begin;
+		newEnds[j++] = end;
+		while (i < size) {
+			newBegins[j] = begins[i];
+			newEnds[j++] = ends[i++];
+		}
+		begins = Arrays.copyOf(newBegins, j);
+		ends = Arrays.copyOf(newEnds, j);
+	}
+
+	public synchronized boolean isEmpty() {
+		return begins.length == 0;
+	}
+
+	public boolean contains(int line) {
+		return intersects(line, line);
+	}
+
+	/**
+	 * Returns if some of the lines between beginLine and endLine, both included, is in the ranges.
+	 */
+	public synchronized boolean intersects(int beginLine, int endLine) {
+		// first range that ends at or after beginLine
+		int low = 0;
+		int high = ends.length;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (ends[mid] < beginLine) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low < begins.length && begins[low] <= endLine;
+	}
+
+	@Override
+	public synchronized String toString() {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < begins.length; i++) {
+			if (i > 0) {
+				sb.append(',');
+			}
+			sb.append(begins[i]).append('-').append(ends[i]);
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Parses the lines added or modified in the new version of the files of a unified diff (e.g. the
+	 * output of <code>git diff</code>). A deletion marks the line that follows it.
+	 *
+	 * @param reader
+	 *            the unified diff.
+	 * @return the changed line ranges, in the order of the diff, by file path. The prefix
+	 *         <code>b/</code> of git is removed. Deleted files are ignored.
+	 */
+	public static Map<String, LineRanges> parseUnifiedDiff(Reader reader) throws IOException {
+		Map<String, LineRanges> result = new LinkedHashMap<String, LineRanges>();
+		BufferedReader br = new BufferedReader(reader);
+		LineRanges current = null;
+		int oldRemaining = 0;
+		int newRemaining = 0;
+		int newLine = 0;
+		String line = br.readLine();
+		while (line != null) {
+			if (oldRemaining > 0 || newRemaining > 0) {
+				// hunk body
+				if (line.startsWith("+")) {
+					current.add(newLine, newLine);
+					newLine++;
+					newRemaining--;
+				} else if (line.startsWith("-")) {
+					current.add(newLine, newLine);
+					oldRemaining--;
+				} else if (!line.startsWith("\\")) {
+					newLine++;
+					newRemaining--;
+					oldRemaining--;
+				}
+			} else if (line.startsWith("+++ ")) {
+				String path = line.substring(4);
+				int tab = path.indexOf('\t');
+				if (tab != -1) {
+					path = path.substring(0, tab);
+				}
+				path = path.trim();
+				if ("/dev/null".equals(path)) {
+					current = null;
+				} else {
+					if (path.startsWith("b/")) {
+						path = path.substring(2);
+					}
+					current = result.get(path);
+					if (current == null) {
+						current = new LineRanges();
+						result.put(path, current);
+					}
+				}
+			} else if (current != null && line.startsWith("@@")) {
+				Matcher m = HUNK_HEADER.matcher(line);
+				if (m.matches()) {
+					oldRemaining = m.group(2) != null ? Integer.parseInt(m.group(2)) : 1;
+					newLine = Integer.parseInt(m.group(3));
+					newRemaining = m.group(4) != null ? Integer.parseInt(m.group(4)) : 1;
+				}
+			}
+			line = br.readLine();
+		}
+		return result;
+	}
+}
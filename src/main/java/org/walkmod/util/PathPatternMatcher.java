@@ -0,0 +1,254 @@
+/*
+  Copyright (C) 2013 Raquel Pau and Albert Coroleu.
+
+ Walkmod is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Lesser General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Walkmod is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public License
+ along with Walkmod.  If not, see <http://www.gnu.org/licenses/>.*/
+package org.walkmod.util;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import org.apache.commons.io.FilenameUtils;
+
+/**
+ * Include and exclude rules of readers and writers, compiled once. A pattern without wildcards
+ * selects a file or a whole directory. A pattern with wildcards (<code>*</code> and <code>?</code>,
+ * with the semantics of <code>FilenameUtils.wildcardMatch</code>) is matched against the whole path and
+ * its parent directories, so it also selects the files of a matching directory. Relative patterns are
+ * resolved against the base path and a trailing <code>/**</code> is equivalent to the directory
+ * itself.
+ *
+ * The literal patterns of a kind are looked up by path prefix in a hash set and the literal prefixes
+ * of all of them are stored in a trie, so the cost of those lookups only depends on the length of the
+ * path. The wildcard patterns are merged into a single regular expression, which is evaluated once
+ * per query, but whose cost grows with the number of wildcard patterns. The given arrays are never
+ * modified.
+ */
+public class PathPatternMatcher {
+
+	private final PatternSet includes;
+
+	private final PatternSet excludes;
+
+	/**
+	 * @param basePath
+	 *            directory of the relative patterns. If it is null, the patterns are used as they are.
+	 * @param includes
+	 *            included patterns. If it is null, everything is included.
+	 * @param excludes
+	 *            excluded patterns. It can be null.
+	 */
+	public PathPatternMatcher(String basePath, String[] includes, String[] excludes) {
+		String base = null;
+		if (basePath != null) {
+			base = normalize(basePath);
+		}
+		this.includes = includes != null ? new PatternSet(base, includes) : null;
+		this.excludes = excludes != null ? new PatternSet(base, excludes) : null;
+	}
+
+	/**
+	 * Normalizes a path to the representation used by the patterns.
+	 */
+	public static String normalize(String path) {
+		String result = FilenameUtils.normalizeNoEndSeparator(path, true);
+		if (result == null) {
+			result = path.replace('\\', '/');
+		}
+		return result;
+	}
+
+	public boolean hasRules() {
+		return includes != null || excludes != null;
+	}
+
+	/**
+	 * Returns if a file is included and not excluded.
+	 */
+	public boolean matches(String path) {
+		if (!hasRules()) {
+			return true;
+		}
+		String aux = normalize(path);
+		return (includes == null || includes.contains(aux)) && (excludes == null || !excludes.contains(aux));
+	}
+
+	public boolean matches(File file) {
+		return matches(file.getAbsolutePath());
+	}
+
+	/**
+	 * Returns if none of the files of a directory can match, because the directory is excluded or it is
+	 * out of the included ones. Then, it is not necessary to traverse it.
+	 */
+	public boolean canPrune(String directory) {
+		if (!hasRules()) {
+			return false;
+		}
+		String aux = normalize(directory);
+		return (excludes != null && excludes.contains(aux)) || (includes != null && !includes.mayContain(aux));
+	}
+
+	public boolean canPrune(File directory) {
+		return canPrune(directory.getAbsolutePath());
+	}
+
+	private static class PatternSet {
+
+		private final Set<String> literals = new HashSet<String>();
+
+		/** literal prefixes of all patterns, ended by a separator when the pattern is literal. */
+		private final PrefixTrie prefixes = new PrefixTrie();
+
+		private final Pattern wildcards;
+
+		public PatternSet(String base, String[] patterns) {
+			StringBuilder regex = new StringBuilder();
+			for (int i = 0; i < patterns.length; i++) {
+				String pattern = normalizePattern(patterns[i]);
+				if (base != null && !pattern.startsWith(base)) {
+					pattern = base + "/" + pattern;
+				}
+				int wildcard = indexOfWildcard(pattern);
+				if (wildcard == -1) {
+					literals.add(pattern);
+					prefixes.add(pattern + "/");
+				} else {
+					prefixes.add(pattern.substring(0, wildcard));
+					if (regex.length() > 0) {
+						regex.append('|');
+					}
+					regex.append(toRegex(pattern));
+				}
+			}
+			wildcards = regex.length() > 0 ? Pattern.compile(regex.toString()) : null;
+		}
+
+		private static String normalizePattern(String pattern) {
+			String aux = pattern.replace('\\', '/');
+			if (aux.endsWith("/**")) {
+				aux = aux.substring(0, aux.length() - 3);
+			}
+			while (aux.length() > 1 && aux.endsWith("/")) {
+				aux = aux.substring(0, aux.length() - 1);
+			}
+			return aux;
+		}
+
+		private static int indexOfWildcard(String pattern) {
+			int star = pattern.indexOf('*');
+			int question = pattern.indexOf('?');
+			if (star == -1) {
+				return question;
+			}
+			if (question == -1) {
+				return star;
+			}
+			return Math.min(star, question);
+		}
+
+		/**
+		 * The optional suffix matches the files of the directories selected by the pattern.
+		 */
+		private static String toRegex(String pattern) {
+			StringBuilder result = new StringBuilder("(?:");
+			int start = 0;
+			for (int i = 0; i < pattern.length(); i++) {
+				char c = pattern.charAt(i);
+				if (c == '*' || c == '?') {
+					if (start < i) {
+						result.append(Pattern.quote(pattern.substring(start, i)));
+					}
+					result.append(c == '*' ? ".*" : ".");
+					start = i + 1;
+				}
+			}
+			if (start < pattern.length()) {
+				result.append(Pattern.quote(pattern.substring(start)));
+			}
+			return result.append(")(?:/.*)?").toString();
+		}
+
+		/**
+		 * Returns if the path, or any of its parent directories, is selected.
+		 */
+		public boolean contains(String path) {
+			if (!literals.isEmpty()) {
+				if (literals.contains(path)) {
+					return true;
+				}
+				int index = path.indexOf('/', 1);
+				while (index != -1) {
+					if (literals.contains(path.substring(0, index))) {
+						return true;
+					}
+					index = path.indexOf('/', index + 1);
+				}
+			}
+			return wildcards != null && wildcards.matcher(path).matches();
+		}
+
+		/**
+		 * Returns if the directory, or some of its files, can be selected.
+		 */
+		public boolean mayContain(String directory) {
+			return prefixes.isRelated(directory + "/");
+		}
+	}
+
+	/**
+	 * Trie of the characters of some prefixes.
+	 */
+	private static class PrefixTrie {
+
+		private final Map<Character, PrefixTrie> children = new HashMap<Character, PrefixTrie>();
+
+		/** if a prefix ends at this node. */
+		private boolean end = false;
+
+		public void add(String prefix) {
+			PrefixTrie node = this;
+			for (int i = 0; i < prefix.length(); i++) {
+				Character c = prefix.charAt(i);
+				PrefixTrie child = node.children.get(c);
+				if (child == null) {
+					child = new PrefixTrie();
+					node.children.put(c, child);
+				}
+				node = child;
+			}
+			node.end = true;
+		}
+
+		/**
+		 * Returns if some prefix starts with the text or the text starts with some prefix.
+		 */
+		public boolean isRelated(String text) {
+			PrefixTrie node = this;
+			for (int i = 0; i < text.length(); i++) {
+				if (node.end) {
+					return true;
+				}
+				node = node.children.get(text.charAt(i));
+				if (node == null) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+}
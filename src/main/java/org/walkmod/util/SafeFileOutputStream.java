@@ -0,0 +1,287 @@
+/*
+  Copyright (C) 2013 Raquel Pau and Albert Coroleu.
+
+ Walkmod is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Lesser General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Walkmod is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public License
+ along with Walkmod.  If not, see <http://www.gnu.org/licenses/>.*/
+package org.walkmod.util;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+
+import org.apache.commons.io.FileUtils;
+
+/**
+ * Output stream of a file that can be replaced atomically and synced to the disk. In atomic mode,
+ * the content is written into a temporary file of the same directory, which replaces the target
+ * file when the stream is closed. So, the target file is never truncated, even if the process is
+ * killed. If some write fails, the target file is not replaced.
+ *
+ * The replacement can also be deferred until {@link #commit()}, so that a batch of files is synced
+ * to the disk before any of them replaces its target.
+ *
+ * If the unchanged targets are kept, the content is always written into a temporary file and hashed
+ * while it is written. Then, the target is only replaced (or, in non atomic mode, overwritten) if its
+ * content is different.
+ */
+public class SafeFileOutputStream extends OutputStream {
+
+	private final File target;
+
+	private final File temp;
+
+	private final boolean atomic;
+
+	private final boolean sync;
+
+	private final boolean deferred;
+
+	private final ContentHash hash;
+
+	private long length = 0;
+
+	private String currentHash;
+
+	private boolean changed = true;
+
+	private final FileOutputStream out;
+
+	private boolean failed = false;
+
+	private boolean closed = false;
+
+	private boolean pending = false;
+
+	/**
+	 * @param target
+	 *            file to write.
+	 * @param atomic
+	 *            if the target must be replaced atomically when the stream is closed.
+	 * @param sync
+	 *            if the content must be synced to the disk when the stream is closed.
+	 */
+	public SafeFileOutputStream(File target, boolean atomic, boolean sync) throws IOException {
+		this(target, atomic, sync, false);
+	}
+
+	/**
+	 * @param target
+	 *            file to write.
+	 * @param atomic
+	 *            if the target must be replaced atomically.
+	 * @param sync
+	 *            if the content must be synced to the disk when the stream is closed.
+	 * @param deferred
+	 *            if the target is replaced by {@link #commit()} instead of when the stream is closed.
+	 *            It requires the atomic mode.
+	 */
+	public SafeFileOutputStream(File target, boolean atomic, boolean sync, boolean deferred) throws IOException {
+		this(target, atomic, sync, deferred, false);
+	}
+
+	/**
+	 * @param target
+	 *            file to write.
+	 * @param atomic
+	 *            if the target must be replaced atomically.
+	 * @param sync
+	 *            if the content must be synced to the disk when the stream is closed.
+	 * @param deferred
+	 *            if the target is replaced by {@link #commit()} instead of when the stream is closed.
+	 *            It requires the atomic mode.
+	 * @param keepUnchanged
+	 *            if the target is kept when the written content is the same as its current one.
+	 */
+	public SafeFileOutputStream(File target, boolean atomic, boolean sync, boolean deferred, boolean keepUnchanged)
+			throws IOException {
+		if (deferred && !atomic) {
+			throw new IllegalArgumentException("Only the atomic replacements can be deferred");
+		}
+		this.target = target.getAbsoluteFile();
+		this.atomic = atomic;
+		this.sync = sync;
+		this.deferred = deferred;
+		this.hash = keepUnchanged ? new ContentHash() : null;
+		if (atomic || keepUnchanged) {
+			temp = File.createTempFile("." + target.getName(), ".tmp", this.target.getParentFile());
+			out = new FileOutputStream(temp);
+		} else {
+			temp = null;
+			out = new FileOutputStream(this.target);
+		}
+	}
+
+	/**
+	 * Sets the hash of the current content of the target, if it is known, so that the target is not
+	 * read to know if it has changed.
+	 *
+	 * @see ContentHash
+	 */
+	public void setCurrentHash(String currentHash) {
+		this.currentHash = currentHash;
+	}
+
+	/**
+	 * Returns false if the stream has been closed without replacing the target, because it had the
+	 * same content.
+	 */
+	public boolean isChanged() {
+		return changed;
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		write(new byte[] { (byte) b }, 0, 1);
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		try {
+			out.write(b, off, len);
+		} catch (IOException e) {
+			failed = true;
+			throw e;
+		}
+		if (hash != null) {
+			hash.update(b, off, len);
+			length += len;
+		}
+	}
+
+	@Override
+	public void flush() throws IOException {
+		out.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		try {
+			if (!failed) {
+				if (hash != null && hasSameContent()) {
+					changed = false;
+				} else if (sync && (atomic || temp == null) && !deferred) {
+					out.flush();
+					out.getFD().sync();
+				}
+			}
+		} catch (IOException e) {
+			failed = true;
+			throw e;
+		} finally {
+			out.close();
+			if (temp != null) {
+				if (failed || !changed) {
+					temp.delete();
+				} else if (deferred) {
+					pending = true;
+				} else if (atomic) {
+					replace(temp, target);
+				} else {
+					overwrite(temp, target);
+				}
+			}
+		}
+	}
+
+	private boolean hasSameContent() throws IOException {
+		if (!target.isFile() || target.length() != length) {
+			return false;
+		}
+		String current = currentHash;
+		if (current == null) {
+			current = ContentHash.of(target);
+		}
+		return current.equals(hash.toHex());
+	}
+
+	/**
+	 * Copies the content into the target itself, which keeps its identity (e.g. its links and owner).
+	 */
+	private void overwrite(File source, File target) throws IOException {
+		try {
+			FileUtils.copyFile(source, target, false);
+			if (sync) {
+				sync(target);
+			}
+		} finally {
+			source.delete();
+		}
+	}
+
+	/**
+	 * Returns if the stream has been closed and its target is waiting for {@link #commit()}.
+	 */
+	public boolean isPending() {
+		return pending;
+	}
+
+	/**
+	 * Syncs the content of a pending replacement to the disk.
+	 */
+	public void syncPending() throws IOException {
+		if (pending) {
+			sync(temp);
+		}
+	}
+
+	/**
+	 * Replaces the target with the content of a pending replacement.
+	 */
+	public void commit() throws IOException {
+		if (pending) {
+			pending = false;
+			replace(temp, target);
+		}
+	}
+
+	/**
+	 * Discards a pending replacement, so the target is kept.
+	 */
+	public void discard() {
+		if (pending) {
+			pending = false;
+			temp.delete();
+		}
+	}
+
+	private static void replace(File source, File target) throws IOException {
+		if (target.canExecute()) {
+			source.setExecutable(true);
+		}
+		// the rename replaces the target atomically in POSIX systems, but fails in Windows if it exists
+		if (!source.renameTo(target)) {
+			if (!target.delete() || !source.renameTo(target)) {
+				source.delete();
+				throw new IOException("The file " + target.getPath() + " cannot be replaced");
+			}
+		}
+	}
+
+	/**
+	 * Syncs the content of an existing file to the disk.
+	 */
+	public static void sync(File file) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			raf.getFD().sync();
+		} finally {
+			raf.close();
+		}
+	}
+}
@@ -16,18 +16,26 @@
 
 package org.walkmod.walkers;
 
+import java.io.File;
+import java.io.IOException;
 import java.lang.reflect.Method;
-import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Queue;
+import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ConcurrentLinkedQueue;
-
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.io.FileUtils;
 import org.apache.log4j.Logger;
 import org.walkmod.ChainWalker;
 import org.walkmod.Resource;
@@ -37,6 +45,11 @@ import org.walkmod.exceptions.WalkModException;
 import org.walkmod.merger.IdentificableNode;
 import org.walkmod.merger.MergeEngine;
 import org.walkmod.merger.Mergeable;
+import org.walkmod.util.ContentHash;
+import org.walkmod.util.FileFormat;
+import org.walkmod.util.LineRanges;
+import org.walkmod.util.PathPatternMatcher;
+import org.walkmod.writers.Summary;
 
 public abstract class AbstractWalker implements ChainWalker {
 
@@ -60,8 +73,52 @@ public abstract class AbstractWalker implements ChainWalker {
 
    public static final String ORIGINAL_FILE_KEY = "original_file_key";
 
+   /**
+    * Key of the {@link LineRanges} of the original file that can be modified. There are no restrictions if
+    * it is missing.
+    */
+   public static final String CHANGED_LINES_KEY = "changed_lines_key";
+
+   /**
+    * Key of the {@link FileFormat} (line ending, charset and byte order mark) of the original file, if it
+    * has been read with {@link #readFile(File, String)}.
+    */
+   public static final String ORIGINAL_FILE_FORMAT_KEY = "original_file_format_key";
+
+   private static final MethodDispatcher VISIT_DISPATCHER = new MethodDispatcher("visit", VisitorContext.class);
+
+   private static final MethodDispatcher WRITE_DISPATCHER = new MethodDispatcher("write", VisitorContext.class,
+         false);
+
+   private static final AcceptMethodResolver ACCEPT_RESOLVER = new AcceptMethodResolver();
+
+   private static final int PENDING_ELEMENTS_PER_THREAD = 4;
+
    private List<String> constraintProviders = null;
 
+   private int threads = 1;
+
+   private int ioThreads = 0;
+
+   private int pipelineCapacity = 0;
+
+   private Map<String, LineRanges> changedLines = null;
+
+   private VisitorMessageSink visitorMessageSink = null;
+
+   private String messagesFile = null;
+
+   private String messagesFormat = VisitorMessageFileSink.JSONL;
+
+   private final Map<String, FileFormat> fileFormats = new ConcurrentHashMap<String, FileFormat>();
+
+   private final ThreadLocal<Collection<VisitorMessage>> elementMessages = new ThreadLocal<Collection<VisitorMessage>>();
+
+   private final ThreadLocal<List<Object[]>> deferredWrites = new ThreadLocal<List<Object[]>>();
+
+   /** synchronized view of the visited elements that the parallel executions share. */
+   private Set<Object> synchronizedVisitedElements;
+
    public AbstractWalker() {
       this.visitedElements = new HashSet<Object>();
       this.visitorMessages = new LinkedList<VisitorMessage>();
@@ -103,48 +160,35 @@ public abstract class AbstractWalker implements ChainWalker {
             if (isMergeable && mergePolicy == null) {
                mergePolicy = "default";
             }
-            Method[] methods = visitor.getClass().getMethods();
-            List<Object> restVisitors = visitors.subList(index + 1, visitors.size());
-            List<TransformationConfig> restTransformations = transformations.subList(index + 1, transformations.size());
-            Set<String> visitedTypes = new HashSet<String>();
-            for (int j = 0; j < methods.length; j++) {
-               if (methods[j].getName().equals("visit")) {
-                  Class<?> type = methods[j].getParameterTypes()[0];
-                  if ((!visitedTypes.contains(element.getClass().getName())) && type.isInstance(element)) {
-                     visitedTypes.add(type.getName());
-                     int paramsLength = methods[j].getParameterTypes().length;
-                     Object[] params = new Object[paramsLength];
-                     params[0] = element;
-                     VisitorContext args = new VisitorContext(getChainConfig());
-                     args.putAll(context);
-                     if (paramsLength == 2) {
-                        params[1] = args;
-                     }
-                     methods[j].invoke(visitor, params);
-                     context.getVisitorMessages().addAll(args.getVisitorMessages());
-                     MergeEngine me = null;
-                     if (isMergeable) {
-                        me = chainConfig.getConfiguration().getMergeEngine(mergePolicy);
-                     }
-                     if (args.hasResultNodes()) {
+            if (VISIT_DISPATCHER.isDispatchable(visitor, element)) {
+               List<Object> restVisitors = visitors.subList(index + 1, visitors.size());
+               List<TransformationConfig> restTransformations = transformations.subList(index + 1,
+                     transformations.size());
+               VisitorContext args = new VisitorContext(getChainConfig());
+               args.putAll(context);
+               VISIT_DISPATCHER.dispatch(visitor, element, args);
+               context.getVisitorMessages().addAll(args.getVisitorMessages());
+               MergeEngine me = null;
+               if (isMergeable) {
+                  me = chainConfig.getConfiguration().getMergeEngine(mergePolicy);
+               }
+               if (args.hasResultNodes()) {
 
-                        Iterator<Object> it = args.getResultNodes().iterator();
+                  Iterator<Object> it = args.getResultNodes().iterator();
 
-                        while (it.hasNext()) {
-                           Object currentArg = it.next();
-                           if (isMergeable) {
-                              currentArg = merge(currentArg, me, context);
-                           }
+                  while (it.hasNext()) {
+                     Object currentArg = it.next();
+                     if (isMergeable) {
+                        currentArg = merge(currentArg, me, context);
+                     }
 
-                           context.addResultNode(currentArg);
+                     context.addResultNode(currentArg);
 
-                           visit(currentArg, restVisitors, restTransformations, context);
-                        }
-                        return;
-                     } else {
-                        context.addResultNode(element);
-                     }
+                     visit(currentArg, restVisitors, restTransformations, context);
                   }
+                  return;
+               } else {
+                  context.addResultNode(element);
                }
             }
             index++;
@@ -161,6 +205,8 @@ public abstract class AbstractWalker implements ChainWalker {
    }
 
    protected void visit(Object element, VisitorContext vc) throws Exception {
+      putChangedLines(vc);
+      putOriginalFileFormat(vc);
       Collection<TransformationConfig> colTransformations = getChainConfig().getWalkerConfig().getTransformations();
       List<TransformationConfig> transformations;
       if (colTransformations instanceof List) {
@@ -174,6 +220,84 @@ public abstract class AbstractWalker implements ChainWalker {
       }
    }
 
+   private void putChangedLines(VisitorContext vc) {
+      if (changedLines != null && !vc.containsKey(CHANGED_LINES_KEY)) {
+         Object file = vc.get(ORIGINAL_FILE_KEY);
+         if (file instanceof File) {
+            LineRanges ranges = changedLines.get(PathPatternMatcher.normalize(((File) file).getAbsolutePath()));
+            if (ranges == null) {
+               // the file has not been changed
+               ranges = new LineRanges();
+            }
+            vc.put(CHANGED_LINES_KEY, ranges);
+         }
+      }
+   }
+
+   private void putOriginalFileFormat(VisitorContext vc) {
+      if (!fileFormats.isEmpty() && !vc.containsKey(ORIGINAL_FILE_FORMAT_KEY)) {
+         Object file = vc.get(ORIGINAL_FILE_KEY);
+         if (file instanceof File) {
+            FileFormat format = fileFormats.remove(((File) file).getAbsolutePath());
+            if (format != null) {
+               vc.put(ORIGINAL_FILE_FORMAT_KEY, format);
+            }
+         }
+      }
+   }
+
+   /**
+    * Removes the format of a file that has been read, but not visited (e.g. because it cannot be parsed),
+    * once its walk ends.
+    */
+   private void forgetFileFormat(Object element) {
+      if (element instanceof File && !fileFormats.isEmpty()) {
+         fileFormats.remove(((File) element).getAbsolutePath());
+      }
+   }
+
+   /**
+    * Reads the text of a file (e.g. to parse it) and records its format and the hash of its content,
+    * which are put into the context of the file, so that the writers do not need to read the original
+    * file again to preserve its line endings, charset and byte order mark, nor to know if it has changed.
+    * The byte order mark is not part of the text.
+    * 
+    * @param file
+    *           file to read
+    * @param encoding
+    *           charset of the file if it does not start with a byte order mark
+    * @return the text of the file
+    * @throws IOException
+    *            if the file can't be read
+    */
+   protected String readFile(File file, String encoding) throws IOException {
+      byte[] bytes = FileUtils.readFileToByteArray(file);
+      int bomLength = FileFormat.getBomLength(bytes, bytes.length);
+      FileFormat format = FileFormat.detect(bytes, Math.min(bytes.length, FileFormat.HEAD_SIZE), encoding);
+      fileFormats.put(file.getAbsolutePath(), format.withContentHash(file, ContentHash.of(bytes)));
+      return new String(bytes, bomLength, bytes.length - bomLength, format.getEncoding());
+   }
+
+   /**
+    * Returns if a node between the given lines of the original file can be modified. Walkers should not
+    * visit nodes out of the changed lines.
+    * 
+    * @param vc
+    *           context of the file
+    * @param beginLine
+    *           first line of the node
+    * @param endLine
+    *           last line of the node
+    * @return true if there are no changed lines restrictions or some line of the node has been changed
+    */
+   protected boolean isInChangedLines(VisitorContext vc, int beginLine, int endLine) {
+      if (vc != null) {
+         LineRanges ranges = vc.getChangedLines();
+         return ranges == null || ranges.intersects(beginLine, endLine);
+      }
+      return true;
+   }
+
    protected void writeAll(Collection<Object> elements) throws Exception {
       writeAll(elements, null);
    }
@@ -192,20 +316,11 @@ public abstract class AbstractWalker implements ChainWalker {
    }
 
    protected void write(Object element, VisitorContext vc) throws Exception {
-      Method[] methods = writer.getClass().getMethods();
-      for (int j = 0; j < methods.length; j++) {
-         if (methods[j].getName().equals("write")) {
-            Class<?> type = methods[j].getParameterTypes()[0];
-            int paramsLength = methods[j].getParameterTypes().length;
-            Object[] params = new Object[paramsLength];
-            params[0] = element;
-            if (paramsLength == 2) {
-               params[1] = vc;
-            }
-            if (type.isInstance(element)) {
-               methods[j].invoke(writer, params);
-            }
-         }
+      List<Object[]> writes = deferredWrites.get();
+      if (writes != null) {
+         writes.add(new Object[] { element, vc });
+      } else {
+         WRITE_DISPATCHER.dispatch(writer, element, vc);
       }
    }
 
@@ -252,35 +367,302 @@ public abstract class AbstractWalker implements ChainWalker {
 
    public void walk(Object element) throws Exception {
       if (element != null) {
-         Collection<java.lang.Class<?>> types = new LinkedList<Class<?>>();
-         types.add(element.getClass());
-         Queue<java.lang.Class<?>> interfaces = new ConcurrentLinkedQueue<java.lang.Class<?>>(types);
-         Collection<java.lang.Class<?>> visitedTypes = new LinkedList<java.lang.Class<?>>();
-         while (interfaces.size() > 0) {
-            java.lang.Class<?> type = interfaces.poll();
-            if (visitedTypes.add(type)) {
+         Method[] methods = ACCEPT_RESOLVER.resolve(getClass(), element.getClass());
+         for (int i = 0; i < methods.length; i++) {
+            methods[i].invoke(this, element);
+         }
+      }
+   }
+
+   /**
+    * Walks an element whose contents have been loaded in the read stage of the pipelined execution. By
+    * default, the contents are ignored.
+    * 
+    * @param element
+    *           element to walk
+    * @param contents
+    *           result of {@link #read(Object)}
+    * @throws Exception
+    *            if the element can't be walked
+    */
+   public void walk(Object element, Object contents) throws Exception {
+      walk(element);
+   }
+
+   /**
+    * Loads the contents of an element (e.g. the text of a file) in the I/O threads of the pipelined
+    * execution, so that the I/O overlaps the parsing and visiting of other elements. Walkers that support
+    * the read stage must override {@link #walk(Object, Object)} too.
+    * 
+    * @param element
+    *           element to read
+    * @return the element contents or null if there is no read stage
+    * @throws Exception
+    *            if the element can't be read
+    */
+   protected Object read(Object element) throws Exception {
+      return null;
+   }
+
+   @Override
+   public void execute() throws Exception {
+      VisitorMessageSink sink = getVisitorMessageSink();
+      try {
+         if (ioThreads > 0) {
+            executePipelined();
+         } else if (threads > 1) {
+            executeInParallel();
+         } else {
+            Iterator<?> it = getResource().iterator();
+            while (it.hasNext()) {
+               Object current = it.next();
                try {
-                  Method m = this.getClass().getMethod("accept", type);
-                  m.invoke(this, element);
-                  interfaces.addAll(Arrays.asList(type.getInterfaces()));
-               } catch (NoSuchMethodException e) {
+                  walk(current);
+               } catch (WalkModException e) {
+                  log.error(e.getMessage());
+               } finally {
+                  forgetFileFormat(current);
                }
             }
          }
+      } finally {
+         if (sink != null) {
+            sink.close();
+         }
       }
    }
 
-   @Override
-   public void execute() throws Exception {
-      Iterator<?> it = getResource().iterator();
-      while (it.hasNext()) {
-         Object current = it.next();
-         try {
-            walk(current);
-         } catch (WalkModException e) {
-            log.error(e.getMessage());
+   /**
+    * Wraps the visited elements into a synchronized set, unless they have already been wrapped by a
+    * previous execution.
+    */
+   private void synchronizeVisitedElements() {
+      Set<Object> visited = getVisitedElements();
+      if (visited != synchronizedVisitedElements) {
+         synchronizedVisitedElements = Collections.synchronizedSet(visited);
+         setVisitedElements(synchronizedVisitedElements);
+      }
+   }
+
+   /**
+    * Walks the resource elements with a pool of {@link #getThreads()} threads. The visitor messages of each
+    * element are collected in the resource order, so the report is the same than in a sequential execution.
+    * The number of elements in progress is bounded to keep the memory usage stable.
+    * 
+    * @throws Exception
+    *            the first error (in the resource order) that is not a WalkModException.
+    */
+   protected void executeInParallel() throws Exception {
+      synchronizeVisitedElements();
+      ExecutorService executor = Executors.newFixedThreadPool(threads);
+      LinkedList<Future<Collection<VisitorMessage>>> pending = new LinkedList<Future<Collection<VisitorMessage>>>();
+      try {
+         Iterator<?> it = getResource().iterator();
+         while (it.hasNext()) {
+            final Object current = it.next();
+            pending.add(executor.submit(new Callable<Collection<VisitorMessage>>() {
+               @Override
+               public Collection<VisitorMessage> call() throws Exception {
+                  Collection<VisitorMessage> messages = new LinkedList<VisitorMessage>();
+                  elementMessages.set(messages);
+                  try {
+                     walk(current);
+                  } catch (WalkModException e) {
+                     log.error(e.getMessage());
+                  } finally {
+                     elementMessages.remove();
+                     forgetFileFormat(current);
+                  }
+                  return messages;
+               }
+            }));
+            if (pending.size() >= threads * PENDING_ELEMENTS_PER_THREAD) {
+               collectVisitorMessages(pending.removeFirst());
+            }
+         }
+         while (!pending.isEmpty()) {
+            collectVisitorMessages(pending.removeFirst());
+         }
+      } finally {
+         executor.shutdownNow();
+      }
+   }
+
+   /**
+    * Walks the resource elements with a {@link PipelineExecutor}: reads and writes run in
+    * {@link #getIoThreads()} threads and the walks in {@link #getThreads()} threads. The writes of each
+    * element are deferred until its walk finishes. The visitor messages are collected in the resource
+    * order.
+    * 
+    * @throws Exception
+    *            the first error (in the resource order) that is not a WalkModException.
+    */
+   protected void executePipelined() throws Exception {
+      synchronizeVisitedElements();
+      int capacity = pipelineCapacity;
+      if (capacity < 1) {
+         capacity = (threads + ioThreads) * PENDING_ELEMENTS_PER_THREAD;
+      }
+      PipelineExecutor pipeline = new PipelineExecutor(ioThreads, threads, capacity);
+      pipeline.execute(getResource().iterator(), new PipelineExecutor.Stages() {
+
+         @Override
+         public Object read(Object element) throws Exception {
+            return AbstractWalker.this.read(element);
+         }
+
+         @Override
+         public Object process(Object element, Object input) throws Exception {
+            ElementResult result = new ElementResult();
+            elementMessages.set(result.messages);
+            deferredWrites.set(result.writes);
+            try {
+               walk(element, input);
+            } catch (WalkModException e) {
+               log.error(e.getMessage());
+            } finally {
+               elementMessages.remove();
+               deferredWrites.remove();
+               forgetFileFormat(element);
+            }
+            return result;
+         }
+
+         @Override
+         public void write(Object element, Object output) throws Exception {
+            Iterator<Object[]> it = ((ElementResult) output).writes.iterator();
+            try {
+               while (it.hasNext()) {
+                  Object[] write = it.next();
+                  WRITE_DISPATCHER.dispatch(writer, write[0], write[1]);
+               }
+            } catch (WalkModException e) {
+               log.error(e.getMessage());
+            }
          }
+
+         @Override
+         public void completed(Object element, Object output) throws Exception {
+            addVisitorMessages(((ElementResult) output).messages);
+         }
+      });
+   }
+
+   private static class ElementResult {
+
+      private Collection<VisitorMessage> messages = new LinkedList<VisitorMessage>();
+
+      private List<Object[]> writes = new LinkedList<Object[]>();
+   }
+
+   private void collectVisitorMessages(Future<Collection<VisitorMessage>> result) throws Exception {
+      try {
+         addVisitorMessages(result.get());
+      } catch (ExecutionException e) {
+         Throwable cause = e.getCause();
+         if (cause instanceof Exception) {
+            throw (Exception) cause;
+         }
+         throw e;
+      }
+   }
+
+   /**
+    * Sets the number of threads to walk the resource elements. Values greater than 1 enable the parallel
+    * execution, which requires thread safe visitors, parsers and writers.
+    * 
+    * @param threads
+    *           number of threads
+    */
+   public void setThreads(int threads) {
+      this.threads = threads;
+   }
+
+   public int getThreads() {
+      return threads;
+   }
+
+   /**
+    * Sets the number of I/O threads of the pipelined execution. Values greater than 0 enable it, with
+    * {@link #getThreads()} threads for the walks. It requires thread safe visitors, parsers and writers.
+    * 
+    * @param ioThreads
+    *           number of threads for the read and write stages
+    */
+   public void setIoThreads(int ioThreads) {
+      this.ioThreads = ioThreads;
+   }
+
+   public int getIoThreads() {
+      return ioThreads;
+   }
+
+   /**
+    * Sets the maximum number of elements in progress in the pipelined execution. By default, it is
+    * proportional to the number of threads.
+    * 
+    * @param pipelineCapacity
+    *           maximum number of elements in progress
+    */
+   public void setPipelineCapacity(int pipelineCapacity) {
+      this.pipelineCapacity = pipelineCapacity;
+   }
+
+   public int getPipelineCapacity() {
+      return pipelineCapacity;
+   }
+
+   /**
+    * Sets where the visitor messages are sent while the resource is walked. Then, they are not kept in
+    * memory and {@link #getVisitorMessages()} does not return them.
+    */
+   public void setVisitorMessageSink(VisitorMessageSink visitorMessageSink) {
+      this.visitorMessageSink = visitorMessageSink;
+   }
+
+   public VisitorMessageSink getVisitorMessageSink() {
+      if (visitorMessageSink == null && messagesFile != null) {
+         visitorMessageSink = new VisitorMessageFileSink(new File(messagesFile), messagesFormat);
       }
+      return visitorMessageSink;
+   }
+
+   /**
+    * Sets the file where the visitor messages are streamed with a {@link VisitorMessageFileSink}, instead
+    * of keeping them in memory. It is useful to check big projects with many messages.
+    */
+   public void setMessagesFile(String messagesFile) {
+      this.messagesFile = messagesFile;
+   }
+
+   public String getMessagesFile() {
+      return messagesFile;
+   }
+
+   /**
+    * Sets the format of the messages file: {@link VisitorMessageFileSink#JSONL} (by default) or
+    * {@link VisitorMessageFileSink#SARIF}.
+    */
+   public void setMessagesFormat(String messagesFormat) {
+      this.messagesFormat = messagesFormat;
+   }
+
+   public String getMessagesFormat() {
+      return messagesFormat;
+   }
+
+   /**
+    * Restricts the modifications to the changed lines of each file (e.g. the lines of a pull request).
+    * 
+    * @param changedLines
+    *           line ranges by normalized absolute path. The files that are not included can't be modified.
+    */
+   public void setChangedLines(Map<String, LineRanges> changedLines) {
+      this.changedLines = changedLines;
+   }
+
+   public Map<String, LineRanges> getChangedLines() {
+      return changedLines;
    }
 
    @Override
@@ -306,10 +688,46 @@ public abstract class AbstractWalker implements ChainWalker {
 
    protected void addVisitorMessages(VisitorContext ctx) {
       Collection<String> messages = ctx.getVisitorMessages();
+      if (!messages.isEmpty()) {
+         Object file = ctx.get(ORIGINAL_FILE_KEY);
+         if (file instanceof File) {
+            Summary.getInstance().addReportedFile((File) file);
+         }
+      }
       String location = getLocation(ctx);
+      Collection<VisitorMessage> target = elementMessages.get();
+      // in a sequential execution, the messages go straight to the sink
+      boolean toSink = target == null && visitorMessageSink != null;
+      if (toSink) {
+         target = new LinkedList<VisitorMessage>();
+      } else if (target == null) {
+         target = this.visitorMessages;
+      }
       for (String message : messages) {
          VisitorMessage m = new VisitorMessage(location, message);
-         this.visitorMessages.add(m);
+         target.add(m);
+      }
+      if (toSink) {
+         addVisitorMessages(target);
+      }
+   }
+
+   /**
+    * Sends the messages of an element to the visitor message sink or, if there is no sink, keeps them in
+    * memory.
+    */
+   private void addVisitorMessages(Collection<VisitorMessage> messages) {
+      VisitorMessageSink sink = visitorMessageSink;
+      if (sink == null) {
+         visitorMessages.addAll(messages);
+      } else {
+         try {
+            for (VisitorMessage message : messages) {
+               sink.add(message);
+            }
+         } catch (IOException e) {
+            throw new WalkModException("The visitor messages cannot be written", e);
+         }
       }
    }
 
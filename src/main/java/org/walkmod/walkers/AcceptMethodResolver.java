@@ -0,0 +1,111 @@
+/*
+  Copyright (C) 2013 Raquel Pau and Albert Coroleu.
+
+ Walkmod is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Lesser General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Walkmod is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public License
+ along with Walkmod.  If not, see <http://www.gnu.org/licenses/>.*/
+package org.walkmod.walkers;
+
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Resolves the sequence of <code>accept</code> methods that a walker runs for an element. It starts with
+ * the <code>accept</code> method of the element class and continues, in breadth-first order, with the
+ * interfaces of every type that has its own <code>accept</code> method. The sequence is computed once per
+ * (walker class, element class) pair, so walking an element does not search methods by name or use
+ * exceptions for the missing ones.
+ */
+public class AcceptMethodResolver {
+
+	private final String methodName;
+
+	private final ConcurrentMap<Class<?>, ConcurrentMap<Class<?>, Method[]>> table = new ConcurrentHashMap<Class<?>, ConcurrentMap<Class<?>, Method[]>>();
+
+	public AcceptMethodResolver() {
+		this("accept");
+	}
+
+	public AcceptMethodResolver(String methodName) {
+		this.methodName = methodName;
+	}
+
+	/**
+	 * Returns the methods to invoke, in order, to walk an element.
+	 *
+	 * @param walkerType
+	 *            class of the walker
+	 * @param elementType
+	 *            class of the walked element
+	 * @return the resolved methods. It is empty if the walker does not accept the element.
+	 */
+	public Method[] resolve(Class<?> walkerType, Class<?> elementType) {
+		ConcurrentMap<Class<?>, Method[]> resolved = table.get(walkerType);
+		if (resolved == null) {
+			resolved = new ConcurrentHashMap<Class<?>, Method[]>();
+			ConcurrentMap<Class<?>, Method[]> previous = table.putIfAbsent(walkerType, resolved);
+			if (previous != null) {
+				resolved = previous;
+			}
+		}
+		Method[] methods = resolved.get(elementType);
+		if (methods == null) {
+			methods = lookup(walkerType, elementType);
+			resolved.putIfAbsent(elementType, methods);
+		}
+		return methods;
+	}
+
+	private Method[] lookup(Class<?> walkerType, Class<?> elementType) {
+		Map<Class<?>, Method> candidates = new HashMap<Class<?>, Method>();
+		Method[] methods = walkerType.getMethods();
+		for (int i = 0; i < methods.length; i++) {
+			if (methods[i].getName().equals(methodName)) {
+				Class<?>[] params = methods[i].getParameterTypes();
+				if (params.length == 1) {
+					Method previous = candidates.get(params[0]);
+					// Class.getMethod returns the most specific return type
+					if (previous == null
+							|| previous.getReturnType().isAssignableFrom(methods[i].getReturnType())) {
+						candidates.put(params[0], methods[i]);
+					}
+				}
+			}
+		}
+		List<Method> result = new LinkedList<Method>();
+		Queue<Class<?>> types = new LinkedList<Class<?>>();
+		types.add(elementType);
+		Set<Class<?>> visitedTypes = new HashSet<Class<?>>();
+		while (!types.isEmpty()) {
+			Class<?> type = types.poll();
+			if (visitedTypes.add(type)) {
+				Method method = candidates.get(type);
+				if (method != null) {
+					result.add(method);
+					Class<?>[] interfaces = type.getInterfaces();
+					for (int i = 0; i < interfaces.length; i++) {
+						types.add(interfaces[i]);
+					}
+				}
+			}
+		}
+		return result.toArray(new Method[result.size()]);
+	}
+}
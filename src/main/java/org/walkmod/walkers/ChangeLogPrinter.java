@@ -19,16 +19,19 @@ import java.util.Map;
 import java.util.Set;
 
 import org.apache.log4j.Logger;
+import org.walkmod.writers.Summary;
 
 public class ChangeLogPrinter {
 
-	private Map<String, Integer> added;
+	private Map<String, ? extends Number> added;
 
-	private Map<String, Integer> deleted;
+	private Map<String, ? extends Number> deleted;
 
-	private Map<String, Integer> updated;
+	private Map<String, ? extends Number> updated;
 
-	private Map<String, Integer> unmodified;
+	private Map<String, ? extends Number> unmodified;
+
+	private Summary summary;
 
 	private static Logger log = Logger.getLogger(ChangeLogPrinter.class);
 
@@ -40,6 +43,17 @@ public class ChangeLogPrinter {
 		this.unmodified = unmodified;
 	}
 
+	/**
+	 * Prints the changes counted by a summary, e.g. the total changes of an execution.
+	 */
+	public ChangeLogPrinter(Summary summary) {
+		this.added = summary.getChanges(Summary.ADDED);
+		this.updated = summary.getChanges(Summary.UPDATED);
+		this.deleted = summary.getChanges(Summary.DELETED);
+		this.unmodified = summary.getChanges(Summary.UNMODIFIED);
+		this.summary = summary;
+	}
+
 	private void printChangesByKey() {
 		Set<String> keys = added.keySet();
 		for (String key : keys) {
@@ -57,17 +71,17 @@ public class ChangeLogPrinter {
 					}
 				}
 			}
-			int total = added.get(key) + deleted.get(key) + updated.get(key) + unmodified.get(key);
+			long addedItems = count(added, key);
+			long deletedItems = count(deleted, key);
+			long updatedItems = count(updated, key);
+			long total = addedItems + deletedItems + updatedItems + count(unmodified, key);
 			String resume = "";
-			if (total == unmodified.get(key)) {
+			if (addedItems + deletedItems + updatedItems == 0) {
 				resume = printedLabel + "s : [changes : 0]";
 			} else {
 				String addedMsg = "0";
 				String deletedMsg = "0";
 				String updatedMsg = "0";
-				int addedItems = added.get(key);
-				int deletedItems = deleted.get(key);
-				int updatedItems = updated.get(key);
 				if (addedItems > 0) {
 					addedMsg = addedItems + "/" + total;
 				}
@@ -84,7 +98,26 @@ public class ChangeLogPrinter {
 		}
 	}
 
+	private static long count(Map<String, ? extends Number> changes, String key) {
+		Number count = changes.get(key);
+		if (count == null) {
+			return 0;
+		}
+		return count.longValue();
+	}
+
+	/**
+	 * Prints the changes and, unless they come from a summary, adds them to the summary of the current
+	 * execution.
+	 */
 	public void print() {
 		printChangesByKey();
+		if (summary == null) {
+			Summary current = Summary.getInstance();
+			for (String key : added.keySet()) {
+				current.addChanges(key, count(added, key), count(updated, key), count(deleted, key),
+						count(unmodified, key));
+			}
+		}
 	}
 }
@@ -0,0 +1,195 @@
+/*
+  Copyright (C) 2013 Raquel Pau and Albert Coroleu.
+
+ Walkmod is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Lesser General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Walkmod is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public License
+ along with Walkmod.  If not, see <http://www.gnu.org/licenses/>.*/
+package org.walkmod.walkers;
+
+import java.lang.reflect.Method;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Dispatch table for the public <code>name(T)</code> and <code>name(T, context)</code> overloads of a
+ * class (e.g. the <code>visit</code> methods of a visitor). The overloads are resolved once per (target
+ * class, argument class) pair and cached together with the misses. By default, only the overload with
+ * the most specific parameter type is invoked, but it can also invoke all the applicable overloads (e.g.
+ * the <code>write</code> methods of a writer). Later dispatches are a table lookup plus a direct
+ * invocation.
+ */
+public class MethodDispatcher {
+
+	private static final Dispatch NONE = new Dispatch(new Method[0]);
+
+	private final String methodName;
+
+	private final Class<?> contextType;
+
+	private final boolean mostSpecificOnly;
+
+	private final ConcurrentMap<Class<?>, ConcurrentMap<Class<?>, Dispatch>> table = new ConcurrentHashMap<Class<?>, ConcurrentMap<Class<?>, Dispatch>>();
+
+	/**
+	 * @param methodName
+	 *            name of the dispatched methods.
+	 * @param contextType
+	 *            type of the optional second argument of the dispatched methods.
+	 */
+	public MethodDispatcher(String methodName, Class<?> contextType) {
+		this(methodName, contextType, true);
+	}
+
+	/**
+	 * @param methodName
+	 *            name of the dispatched methods.
+	 * @param contextType
+	 *            type of the optional second argument of the dispatched methods.
+	 * @param mostSpecificOnly
+	 *            if only the most specific overload is invoked. Otherwise, all the applicable
+	 *            overloads are invoked.
+	 */
+	public MethodDispatcher(String methodName, Class<?> contextType, boolean mostSpecificOnly) {
+		this.methodName = methodName;
+		this.contextType = contextType;
+		this.mostSpecificOnly = mostSpecificOnly;
+	}
+
+	public String getMethodName() {
+		return methodName;
+	}
+
+	/**
+	 * Returns the overload that the target type uses for the argument type.
+	 *
+	 * @param targetType
+	 *            class that declares the dispatched methods.
+	 * @param argType
+	 *            class of the dispatched argument.
+	 * @return the first invoked overload or null if there is no applicable method.
+	 */
+	public Method resolve(Class<?> targetType, Class<?> argType) {
+		Method[] methods = getDispatch(targetType, argType).methods;
+		if (methods.length == 0) {
+			return null;
+		}
+		return methods[0];
+	}
+
+	public boolean isDispatchable(Object target, Object arg) {
+		return getDispatch(target.getClass(), arg.getClass()).methods.length > 0;
+	}
+
+	/**
+	 * Invokes the resolved overloads of the target for the argument.
+	 *
+	 * @param target
+	 *            object whose method is invoked.
+	 * @param arg
+	 *            first argument.
+	 * @param context
+	 *            second argument, only passed to the overloads that accept it.
+	 * @return if some method has been invoked.
+	 * @throws Exception
+	 *             if the invoked method fails.
+	 */
+	public boolean dispatch(Object target, Object arg, Object context) throws Exception {
+		Dispatch dispatch = getDispatch(target.getClass(), arg.getClass());
+		if (dispatch.methods.length == 0) {
+			return false;
+		}
+		dispatch.invoke(target, arg, context);
+		return true;
+	}
+
+	private Dispatch getDispatch(Class<?> targetType, Class<?> argType) {
+		ConcurrentMap<Class<?>, Dispatch> dispatches = table.get(targetType);
+		if (dispatches == null) {
+			dispatches = new ConcurrentHashMap<Class<?>, Dispatch>();
+			ConcurrentMap<Class<?>, Dispatch> previous = table.putIfAbsent(targetType, dispatches);
+			if (previous != null) {
+				dispatches = previous;
+			}
+		}
+		Dispatch dispatch = dispatches.get(argType);
+		if (dispatch == null) {
+			dispatch = lookup(targetType, argType);
+			dispatches.putIfAbsent(argType, dispatch);
+		}
+		return dispatch;
+	}
+
+	private Dispatch lookup(Class<?> targetType, Class<?> argType) {
+		List<Method> applicable = new LinkedList<Method>();
+		Method best = null;
+		Class<?> bestType = null;
+		Method[] methods = targetType.getMethods();
+		for (int i = 0; i < methods.length; i++) {
+			Method current = methods[i];
+			if (current.getName().equals(methodName) && !current.isBridge()) {
+				Class<?>[] params = current.getParameterTypes();
+				boolean validArity = params.length == 1
+						|| (params.length == 2 && params[1].isAssignableFrom(contextType));
+				if (validArity && params[0].isAssignableFrom(argType)) {
+					applicable.add(current);
+					if (best == null || (bestType.isAssignableFrom(params[0]) && (bestType != params[0]
+							|| params.length > best.getParameterTypes().length))) {
+						best = current;
+						bestType = params[0];
+					}
+				}
+			}
+		}
+		if (best == null) {
+			return NONE;
+		}
+		if (mostSpecificOnly) {
+			applicable.clear();
+			applicable.add(best);
+		}
+		for (Method method : applicable) {
+			try {
+				// public methods of non public classes (e.g. anonymous visitors)
+				method.setAccessible(true);
+			} catch (SecurityException e) {
+			}
+		}
+		return new Dispatch(applicable.toArray(new Method[applicable.size()]));
+	}
+
+	private static class Dispatch {
+
+		private final Method[] methods;
+
+		private final boolean[] withContext;
+
+		public Dispatch(Method[] methods) {
+			this.methods = methods;
+			this.withContext = new boolean[methods.length];
+			for (int i = 0; i < methods.length; i++) {
+				withContext[i] = methods[i].getParameterTypes().length == 2;
+			}
+		}
+
+		public void invoke(Object target, Object arg, Object context) throws Exception {
+			for (int i = 0; i < methods.length; i++) {
+				if (withContext[i]) {
+					methods[i].invoke(target, arg, context);
+				} else {
+					methods[i].invoke(target, arg);
+				}
+			}
+		}
+	}
+}
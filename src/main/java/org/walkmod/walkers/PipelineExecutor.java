@@ -0,0 +1,198 @@
+/*
+  Copyright (C) 2013 Raquel Pau and Albert Coroleu.
+
+ Walkmod is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Lesser General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Walkmod is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public License
+ along with Walkmod.  If not, see <http://www.gnu.org/licenses/>.*/
+package org.walkmod.walkers;
+
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Executes the read, process and write stages of a sequence of elements as a pipeline. The read and write
+ * stages run in a pool of I/O threads and the process stage (e.g. parse and visit) in a pool of CPU
+ * threads, so the I/O of an element overlaps the processing of the others. The number of elements in
+ * progress is bounded by the pipeline capacity: when it is reached, the iteration waits for the oldest
+ * element, which keeps the memory usage stable for very large resources. Completed elements are reported
+ * in the iteration order.
+ */
+public class PipelineExecutor {
+
+	private final int ioThreads;
+
+	private final int cpuThreads;
+
+	private final int capacity;
+
+	/**
+	 * Stages of the pipeline. The read and process stages return the input of the next one.
+	 */
+	public interface Stages {
+
+		public Object read(Object element) throws Exception;
+
+		public Object process(Object element, Object input) throws Exception;
+
+		public void write(Object element, Object output) throws Exception;
+
+		/**
+		 * Called from the iterating thread, in the iteration order, once the element has been written.
+		 */
+		public void completed(Object element, Object output) throws Exception;
+	}
+
+	public PipelineExecutor(int ioThreads, int cpuThreads, int capacity) {
+		if (ioThreads < 1 || cpuThreads < 1 || capacity < 1) {
+			throw new IllegalArgumentException("The pipeline requires at least one thread per stage and capacity");
+		}
+		this.ioThreads = ioThreads;
+		this.cpuThreads = cpuThreads;
+		this.capacity = capacity;
+	}
+
+	public int getIoThreads() {
+		return ioThreads;
+	}
+
+	public int getCpuThreads() {
+		return cpuThreads;
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Runs all the elements through the pipeline.
+	 *
+	 * @param elements
+	 *            elements to process.
+	 * @param stages
+	 *            stages to apply.
+	 * @throws Exception
+	 *             the first error, in the iteration order, produced by some stage. The remaining
+	 *             elements are discarded.
+	 */
+	public void execute(Iterator<?> elements, Stages stages) throws Exception {
+		ExecutorService io = Executors.newFixedThreadPool(ioThreads);
+		ExecutorService cpu = Executors.newFixedThreadPool(cpuThreads);
+		LinkedList<Job> pending = new LinkedList<Job>();
+		try {
+			while (elements.hasNext()) {
+				Job job = new Job(elements.next(), stages, io, cpu);
+				pending.add(job);
+				io.execute(job.reader());
+				if (pending.size() >= capacity) {
+					complete(pending.removeFirst(), stages);
+				}
+			}
+			while (!pending.isEmpty()) {
+				complete(pending.removeFirst(), stages);
+			}
+		} finally {
+			io.shutdownNow();
+			cpu.shutdownNow();
+		}
+	}
+
+	private void complete(Job job, Stages stages) throws Exception {
+		job.done.await();
+		if (job.error != null) {
+			if (job.error instanceof Exception) {
+				throw (Exception) job.error;
+			}
+			if (job.error instanceof Error) {
+				throw (Error) job.error;
+			}
+			throw new RuntimeException(job.error);
+		}
+		stages.completed(job.element, job.output);
+	}
+
+	private static class Job {
+
+		private final Object element;
+
+		private final Stages stages;
+
+		private final ExecutorService io;
+
+		private final ExecutorService cpu;
+
+		private final CountDownLatch done = new CountDownLatch(1);
+
+		private volatile Object input;
+
+		private volatile Object output;
+
+		private volatile Throwable error;
+
+		public Job(Object element, Stages stages, ExecutorService io, ExecutorService cpu) {
+			this.element = element;
+			this.stages = stages;
+			this.io = io;
+			this.cpu = cpu;
+		}
+
+		private void fail(Throwable e) {
+			error = e;
+			done.countDown();
+		}
+
+		public Runnable reader() {
+			return new Runnable() {
+				@Override
+				public void run() {
+					try {
+						input = stages.read(element);
+						cpu.execute(processor());
+					} catch (Throwable e) {
+						fail(e);
+					}
+				}
+			};
+		}
+
+		public Runnable processor() {
+			return new Runnable() {
+				@Override
+				public void run() {
+					try {
+						output = stages.process(element, input);
+						input = null;
+						io.execute(writer());
+					} catch (Throwable e) {
+						fail(e);
+					}
+				}
+			};
+		}
+
+		public Runnable writer() {
+			return new Runnable() {
+				@Override
+				public void run() {
+					try {
+						stages.write(element, output);
+						done.countDown();
+					} catch (Throwable e) {
+						fail(e);
+					}
+				}
+			};
+		}
+	}
+}
@@ -29,6 +29,8 @@ import java.util.LinkedList;
 import java.util.Map;
 
 import org.walkmod.conf.entities.ChainConfig;
+import org.walkmod.util.FileFormat;
+import org.walkmod.util.LineRanges;
 
 public class VisitorContext extends HashMap<String, Object> {
 
@@ -109,6 +111,21 @@ public class VisitorContext extends HashMap<String, Object> {
 		return result != null && !result.isEmpty();
 	}
 
+	/**
+	 * Returns the lines of the original file that can be modified, or null if there are no
+	 * restrictions.
+	 */
+	public LineRanges getChangedLines() {
+		return (LineRanges) get(AbstractWalker.CHANGED_LINES_KEY);
+	}
+
+	/**
+	 * Returns the format of the original file, if it has been detected when the file was read.
+	 */
+	public FileFormat getOriginalFileFormat() {
+		return (FileFormat) get(AbstractWalker.ORIGINAL_FILE_FORMAT_KEY);
+	}
+
 	public ChainConfig getArchitectureConfig() {
 		return ac;
 	}
@@ -0,0 +1,200 @@
+/*
+  Copyright (C) 2013 Raquel Pau and Albert Coroleu.
+
+ Walkmod is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Lesser General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Walkmod is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public License
+ along with Walkmod.  If not, see <http://www.gnu.org/licenses/>.*/
+package org.walkmod.walkers;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * Streams the visitor messages into a file, in JSON Lines ({@link #JSONL}) or SARIF ({@link #SARIF})
+ * format. The messages are written while they are received through a bounded buffer, so the memory
+ * usage does not depend on the number of messages. The locations are interned: each location is
+ * written once and the messages refer to it by its index.
+ * <p>
+ * In JSON Lines format, the first message of a location is preceded by the line
+ * <code>{"location":0,"uri":"src/Foo.java"}</code>, and each message is a line like
+ * <code>{"location":0,"type":"...","text":"..."}</code>. In SARIF format, the messages are the results of
+ * a single run, whose artifacts are the locations.
+ */
+public class VisitorMessageFileSink implements VisitorMessageSink {
+
+	public static final String JSONL = "jsonl";
+
+	public static final String SARIF = "sarif";
+
+	private static final String SARIF_VERSION = "2.1.0";
+
+	private static final String SARIF_SCHEMA = "https://json.schemastore.org/sarif-2.1.0.json";
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private static final JsonFactory FACTORY = new JsonFactory();
+
+	private final File file;
+
+	private final String format;
+
+	private final Map<String, Integer> locations = new HashMap<String, Integer>();
+
+	private final List<String> uris = new LinkedList<String>();
+
+	private JsonGenerator generator;
+
+	/**
+	 * @param file
+	 *            file to write. It is created (or truncated) with the first message, or when the sink is
+	 *            closed if there are no messages.
+	 * @param format
+	 *            {@link #JSONL} or {@link #SARIF}.
+	 */
+	public VisitorMessageFileSink(File file, String format) {
+		if (!JSONL.equalsIgnoreCase(format) && !SARIF.equalsIgnoreCase(format)) {
+			throw new IllegalArgumentException("Invalid visitor messages format " + format + ". Use " + JSONL
+					+ " or " + SARIF);
+		}
+		this.file = file;
+		this.format = format.toLowerCase();
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	public String getFormat() {
+		return format;
+	}
+
+	@Override
+	public synchronized void add(VisitorMessage message) throws IOException {
+		if (generator == null) {
+			open();
+		}
+		String uri = message.getLocation() != null ? message.getLocation() : "";
+		Integer location = locations.get(uri);
+		boolean newLocation = location == null;
+		if (newLocation) {
+			location = locations.size();
+			locations.put(uri, location);
+		}
+		if (SARIF.equals(format)) {
+			if (newLocation) {
+				uris.add(uri);
+			}
+			generator.writeStartObject();
+			if (message.getType() != null) {
+				generator.writeStringField("ruleId", message.getType());
+			}
+			generator.writeObjectFieldStart("message");
+			generator.writeStringField("text", message.getText());
+			generator.writeEndObject();
+			generator.writeArrayFieldStart("locations");
+			generator.writeStartObject();
+			generator.writeObjectFieldStart("physicalLocation");
+			generator.writeObjectFieldStart("artifactLocation");
+			generator.writeStringField("uri", uri);
+			generator.writeNumberField("index", location);
+			generator.writeEndObject();
+			generator.writeEndObject();
+			generator.writeEndObject();
+			generator.writeEndArray();
+			generator.writeEndObject();
+		} else {
+			if (newLocation) {
+				generator.writeStartObject();
+				generator.writeNumberField("location", location);
+				generator.writeStringField("uri", uri);
+				generator.writeEndObject();
+				generator.writeRaw('\n');
+			}
+			generator.writeStartObject();
+			generator.writeNumberField("location", location);
+			if (message.getType() != null) {
+				generator.writeStringField("type", message.getType());
+			}
+			generator.writeStringField("text", message.getText());
+			generator.writeEndObject();
+			generator.writeRaw('\n');
+		}
+	}
+
+	private void open() throws IOException {
+		File parent = file.getAbsoluteFile().getParentFile();
+		if (parent != null && !parent.exists()) {
+			parent.mkdirs();
+		}
+		Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"), BUFFER_SIZE);
+		generator = FACTORY.createGenerator(writer);
+		// the lines are separated explicitly
+		generator.setRootValueSeparator(null);
+		if (SARIF.equals(format)) {
+			generator.writeStartObject();
+			generator.writeStringField("version", SARIF_VERSION);
+			generator.writeStringField("$schema", SARIF_SCHEMA);
+			generator.writeArrayFieldStart("runs");
+			generator.writeStartObject();
+			generator.writeObjectFieldStart("tool");
+			generator.writeObjectFieldStart("driver");
+			generator.writeStringField("name", "walkmod");
+			generator.writeEndObject();
+			generator.writeEndObject();
+			generator.writeArrayFieldStart("results");
+		}
+	}
+
+	/**
+	 * Finishes the file. It is written even if there are no messages, so that the absence of messages is
+	 * reported too, instead of keeping the messages of a previous execution.
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		if (generator == null) {
+			open();
+		}
+		try {
+			if (SARIF.equals(format)) {
+				generator.writeEndArray();
+				generator.writeArrayFieldStart("artifacts");
+				for (String uri : uris) {
+					generator.writeStartObject();
+					generator.writeObjectFieldStart("location");
+					generator.writeStringField("uri", uri);
+					generator.writeEndObject();
+					generator.writeEndObject();
+				}
+				generator.writeEndArray();
+				generator.writeEndObject();
+				generator.writeEndArray();
+				generator.writeEndObject();
+			}
+		} finally {
+			generator.close();
+			generator = null;
+			locations.clear();
+			uris.clear();
+		}
+	}
+}
@@ -0,0 +1,32 @@
+/*
+  Copyright (C) 2013 Raquel Pau and Albert Coroleu.
+
+ Walkmod is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Lesser General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Walkmod is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public License
+ along with Walkmod.  If not, see <http://www.gnu.org/licenses/>.*/
+package org.walkmod.walkers;
+
+import java.io.IOException;
+
+/**
+ * Destination of the visitor messages of a walker, which receives them while the resource is walked
+ * instead of keeping them in memory. It must support being called from several walker threads.
+ */
+public interface VisitorMessageSink {
+
+	public void add(VisitorMessage message) throws IOException;
+
+	/**
+	 * Called when the walker has finished, so that the pending messages are written.
+	 */
+	public void close() throws IOException;
+}
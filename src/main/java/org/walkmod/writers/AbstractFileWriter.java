@@ -16,19 +16,36 @@
 
 package org.walkmod.writers;
 
-import java.io.BufferedReader;
+import java.io.BufferedInputStream;
 import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.CharArrayWriter;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
-import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStreamWriter;
-import java.io.StringReader;
 import java.io.Writer;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
 
 import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.IOUtils;
 import org.apache.log4j.Logger;
 import org.walkmod.ChainWriter;
+import org.walkmod.util.ContentHash;
+import org.walkmod.util.FileFormat;
+import org.walkmod.util.LineEndingWriter;
+import org.walkmod.util.PathPatternMatcher;
+import org.walkmod.util.SafeFileOutputStream;
 import org.walkmod.walkers.AbstractWalker;
 import org.walkmod.walkers.VisitorContext;
 
@@ -42,16 +59,53 @@ public abstract class AbstractFileWriter implements ChainWriter {
 
     private String normalizedOutputDirectory;
 
+    private volatile PathPatternMatcher matcher;
+
     private String encoding = "UTF-8";
 
     private String platform = null;
 
+    private static final String BOM = "\uFEFF";
+
     private static final String UNIX = "unix";
     private static final String MAC = "mac";
     private static final String WINDOWS = "windows";
     
     private boolean createdEmptyFile = false;
 
+    private boolean skipUnchanged = false;
+
+    public static final String FSYNC_NONE = "none";
+
+    public static final String FSYNC_FILE = "file";
+
+    public static final String FSYNC_BATCH = "batch";
+
+    private boolean atomicWrites = false;
+
+    private String fsync = FSYNC_NONE;
+
+    private final List<File> unsyncedFiles = Collections.synchronizedList(new LinkedList<File>());
+
+    private final Map<File, SafeFileOutputStream> uncommittedFiles = Collections
+            .synchronizedMap(new LinkedHashMap<File, SafeFileOutputStream>());
+
+    private static final int PENDING_WRITES_PER_THREAD = 16;
+
+    private int writerThreads = 0;
+
+    private int writeQueueCapacity = 0;
+
+    private boolean groupWritesByDirectory = false;
+
+    private ExecutorService[] writerLanes;
+
+    private int pendingWrites = 0;
+
+    private final Object pendingWritesLock = new Object();
+
+    private final List<Exception> writeErrors = Collections.synchronizedList(new LinkedList<Exception>());
+
     private static Logger log = Logger.getLogger(AbstractFileWriter.class);
 
     public void setOutputDirectory(String outputDirectory) {
@@ -60,6 +114,7 @@ public abstract class AbstractFileWriter implements ChainWriter {
             this.outputDirectory.mkdir();
         }
         normalizedOutputDirectory = FilenameUtils.normalize(this.outputDirectory.getAbsolutePath(), true);
+        matcher = null;
     }
 
     public File getOutputDirectory() {
@@ -68,37 +123,20 @@ public abstract class AbstractFileWriter implements ChainWriter {
 
     public abstract File createOutputDirectory(Object o);
 
-    protected boolean isValid(File out) throws IOException {
+    protected PathPatternMatcher getPathMatcher() {
+        PathPatternMatcher result = matcher;
+        if (result == null) {
+            result = new PathPatternMatcher(normalizedOutputDirectory, includes, excludes);
+            matcher = result;
+        }
+        return result;
+    }
 
-        boolean write = true;
+    protected boolean isValid(File out) throws IOException {
         if (out != null) {
-            String aux = FilenameUtils.normalize(out.getCanonicalPath(), true);
-            if (excludes != null) {
-                for (int i = 0; i < excludes.length && write; i++) {
-                    if (!excludes[i].startsWith(normalizedOutputDirectory)) {
-                        excludes[i] = normalizedOutputDirectory + "/" + excludes[i];
-                        if (excludes[i].endsWith("\\*\\*")) {
-                            excludes[i] = excludes[i].substring(0, excludes[i].length() - 2);
-                        }
-                    }
-                    write = !(excludes[i].startsWith(aux) || FilenameUtils.wildcardMatch(aux, excludes[i]));
-                }
-            }
-            if (includes != null && write) {
-                write = false;
-                for (int i = 0; i < includes.length && !write; i++) {
-                    if (!includes[i].startsWith(normalizedOutputDirectory)) {
-                        includes[i] = normalizedOutputDirectory + "/" + includes[i];
-                        if (includes[i].endsWith("\\*\\*")) {
-                            includes[i] = includes[i].substring(0, includes[i].length() - 2);
-                        }
-                    }
-
-                    write = includes[i].startsWith(aux) || FilenameUtils.wildcardMatch(aux, includes[i]);
-                }
-            }
+            return getPathMatcher().matches(out.getCanonicalPath());
         }
-        return write;
+        return true;
     }
     
     public boolean requiresToAppend(VisitorContext vc){
@@ -106,7 +144,68 @@ public abstract class AbstractFileWriter implements ChainWriter {
     }
     
     protected Writer getWriter(File out) throws Exception{
-        return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(out), getEncoding()));
+        return getWriter(out, getEncoding());
+    }
+
+    /**
+     * Opens a file with a charset different from the configured one, e.g. the one of its byte order
+     * mark.
+     */
+    protected Writer getWriter(File out, String encoding) throws Exception {
+        if (!atomicWrites && FSYNC_NONE.equals(fsync)) {
+            return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(out), encoding));
+        }
+        return new BufferedWriter(new OutputStreamWriter(openStream(out, false), encoding));
+    }
+
+    /**
+     * Opens a file with the atomic and fsync policies of the writer.
+     * 
+     * @param keepUnchanged
+     *            if the file is kept when the written content is the same as its current one.
+     */
+    private SafeFileOutputStream openStream(File out, boolean keepUnchanged) throws IOException {
+        // in batch mode, the atomic replacements wait until all the files have been synced
+        boolean batch = FSYNC_BATCH.equals(fsync);
+        SafeFileOutputStream os = new SafeFileOutputStream(out, atomicWrites, FSYNC_FILE.equals(fsync), batch
+                && atomicWrites, keepUnchanged);
+        if (batch) {
+            if (atomicWrites) {
+                // a later write of the same file supersedes the pending one
+                SafeFileOutputStream previous = uncommittedFiles.put(out.getAbsoluteFile(), os);
+                if (previous != null) {
+                    previous.discard();
+                }
+            } else {
+                unsyncedFiles.add(out);
+            }
+        }
+        return os;
+    }
+
+    private Writer openWriter(File out, String encoding) throws Exception {
+        // subclasses may override getWriter(File), which is used whenever the charset is the configured one
+        if (getEncoding().equalsIgnoreCase(encoding)) {
+            return getWriter(out);
+        }
+        return getWriter(out, encoding);
+    }
+
+    /**
+     * Returns the format to keep in a file: the one detected when the original file was read or,
+     * otherwise, the one of the existing file, which is stored into the context. It returns null for
+     * new files.
+     */
+    protected FileFormat getFileFormat(File out, VisitorContext vc) throws IOException {
+        boolean original = vc != null && out.equals(vc.get(AbstractWalker.ORIGINAL_FILE_KEY));
+        FileFormat format = original ? vc.getOriginalFileFormat() : null;
+        if (format == null && out.isFile()) {
+            format = FileFormat.detect(out, getEncoding());
+            if (original) {
+                vc.put(AbstractWalker.ORIGINAL_FILE_FORMAT_KEY, format);
+            }
+        }
+        return format;
     }
     
     protected File getOutputFile(Object n, VisitorContext vc){
@@ -131,28 +230,50 @@ public abstract class AbstractFileWriter implements ChainWriter {
         if (out != null) {
 
             if (isValid(out)) {
-                Writer writer = null;
-
+                boolean append = requiresToAppend(vc);
+                FileFormat format = getFileFormat(out, vc);
+                String currentHash = getContentHash(out, vc);
+                String endLine = getEndLine(format, append);
+                String encoding = format != null ? format.getEncoding() : getEncoding();
+                String bom = format != null && format.hasBom() ? BOM : null;
+                vc.put("outFile", out);
                 try {
-                    vc.put("outFile", out);
-                    String content = getContent(n, vc);
-                    vc.remove("outFile");
-                    if (content != null && !"".equals(content)) {
-                        char endLineChar = getEndLineChar(out);
-                        writer = getWriter(out);
-                        if (requiresToAppend(vc)) {
-                            append(content, writer, endLineChar); 
-                        } else {
-                            write(content, writer, endLineChar);
+                    if (writerThreads == 0) {
+                        // the content goes straight to the file, or to a temporary one to compare it
+                        OutputFileWriter writer = new OutputFileWriter(out, encoding, bom, currentHash);
+                        try {
+                            LineEndingWriter lew = new LineEndingWriter(writer, endLine);
+                            getContent(n, vc, lew);
+                            if (append) {
+                                lew.terminateLastLine();
+                            }
+                        } finally {
+                            writer.close();
+                        }
+                        if (writer.isWritten()) {
+                            Summary.getInstance().addFile(out);
+                            log.debug(out.getPath() + " written ");
+                        } else if (writer.isOpened()) {
+                            log.debug(out.getPath() + " has not changed");
+                        }
+                    } else {
+                        // the content is built by the walker and written by the writer threads
+                        CharArrayWriter buffer = new CharArrayWriter();
+                        LineEndingWriter lew = new LineEndingWriter(buffer, endLine);
+                        getContent(n, vc, lew);
+                        if (append) {
+                            lew.terminateLastLine();
+                        }
+                        if (buffer.size() > 0) {
+                            String text = buffer.toString();
+                            if (bom != null && !text.startsWith(bom)) {
+                                text = bom + text;
+                            }
+                            writeBehind(out, text, encoding, currentHash);
                         }
-                        Summary.getInstance().addFile(out);
-                        log.debug(out.getPath() + " written ");
                     }
                 } finally {
-                    if (writer != null) {
-                        writer.close();
-
-                    }
+                    vc.remove("outFile");
                 }
             } else {
                 if (createdEmptyFile && out != null && out.isFile()) {
@@ -165,93 +286,283 @@ public abstract class AbstractFileWriter implements ChainWriter {
         }
     }
 
-    public void write(String content, Writer writer, char endLineChar) throws IOException {
-        char[] buffer = content.toCharArray();
+    /**
+     * Returns the hash of the current content of the output file, if it is the original file and it
+     * has not been modified since it was read. The hash is used once: it is removed from the context,
+     * because the file is about to be written.
+     */
+    private String getContentHash(File out, VisitorContext vc) {
+        if (!isSkipUnchanged() || vc == null || !out.equals(vc.get(AbstractWalker.ORIGINAL_FILE_KEY))) {
+            return null;
+        }
+        FileFormat format = vc.getOriginalFileFormat();
+        if (format == null) {
+            return null;
+        }
+        FileFormat written = format.withoutContentHash();
+        if (written != format) {
+            vc.put(AbstractWalker.ORIGINAL_FILE_FORMAT_KEY, written);
+        }
+        return format.getContentHash(out);
+    }
 
-        String endLine = "\n";
-        if (endLineChar == '\r') {
-            endLine = "\r\n";
+    /**
+     * Writes the content of a file, whose line endings have been already translated. It runs in the
+     * writer threads of the write-behind mode.
+     * 
+     * @param currentHash
+     *            hash of the current content of the file, or null if it is unknown.
+     */
+    protected void writeContent(File out, String text, String encoding, String currentHash) throws Exception {
+        if (isSkipUnchanged() && !isUncommitted(out) && hasContent(out, text.getBytes(encoding), currentHash)) {
+            log.debug(out.getPath() + " has not changed");
+            return;
         }
-        if (platform != null) {
-            if (platform.equals(UNIX)) {
-                endLine = "\n";
-            } else if (platform.equals(WINDOWS)) {
-                endLine = "\r\n";
-            } else if (platform.equals(MAC)) {
-                endLine = "\r";
+        Writer writer = openWriter(out, encoding);
+        try {
+            writer.write(text);
+        } finally {
+            writer.close();
+        }
+        Summary.getInstance().addFile(out);
+        log.debug(out.getPath() + " written ");
+    }
+
+    /**
+     * Returns if a file has been written in batch mode, but it has not replaced its target yet. So, the
+     * target does not have the last content of the file.
+     */
+    private boolean isUncommitted(File out) {
+        return !uncommittedFiles.isEmpty() && uncommittedFiles.containsKey(out.getAbsoluteFile());
+    }
+
+    /**
+     * Returns if a file already has exactly the given bytes. The sizes are compared first, and then the
+     * hash of the current content, if it is known. Otherwise, the file is read.
+     */
+    protected boolean hasContent(File out, byte[] bytes, String currentHash) throws IOException {
+        if (!out.isFile() || out.length() != bytes.length) {
+            return false;
+        }
+        if (currentHash != null) {
+            return currentHash.equals(ContentHash.of(bytes));
+        }
+        InputStream is = new BufferedInputStream(new FileInputStream(out));
+        try {
+            return IOUtils.contentEquals(is, new ByteArrayInputStream(bytes));
+        } finally {
+            is.close();
+        }
+    }
+
+    /**
+     * Queues the write of a file, waiting while the queue is full. The writes of the same file (or
+     * directory, if the writes are grouped by directory) are always run by the same thread, so they
+     * keep their order.
+     */
+    private void writeBehind(final File out, final String text, final String encoding, final String currentHash)
+            throws InterruptedException {
+        ExecutorService lane = getWriterLane(out);
+        int capacity = getWriteQueueCapacity();
+        synchronized (pendingWritesLock) {
+            while (pendingWrites >= capacity) {
+                pendingWritesLock.wait();
             }
+            pendingWrites++;
         }
-        for (int i = 0; i < buffer.length; i++) {
-            if (buffer[i] == '\n') {
-                writer.write(endLine);
-            } else if (buffer[i] == '\r') {
-                writer.write(endLine);
-                if (i + 1 < buffer.length && buffer[i + 1] == '\n') {
-                    i++;
+        // the lanes can outlive an execution, so the written file is added to the summary of the caller
+        final Summary summary = Summary.getInstance();
+        try {
+            lane.execute(new Runnable() {
+                @Override
+                public void run() {
+                    Summary previousSummary = Summary.setCurrent(summary);
+                    try {
+                        writeContent(out, text, encoding, currentHash);
+                    } catch (Exception e) {
+                        log.error(out.getPath() + " cannot be written", e);
+                        writeErrors.add(e);
+                    } finally {
+                        Summary.setCurrent(previousSummary);
+                        releasePendingWrite();
+                    }
                 }
-            } else {
-                writer.write(buffer[i]);
+            });
+        } catch (RejectedExecutionException e) {
+            releasePendingWrite();
+            throw e;
+        }
+    }
+
+    private void releasePendingWrite() {
+        synchronized (pendingWritesLock) {
+            pendingWrites--;
+            pendingWritesLock.notifyAll();
+        }
+    }
+
+    private synchronized ExecutorService getWriterLane(File out) {
+        if (writerLanes == null) {
+            ThreadFactory factory = new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "walkmod-writer");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            };
+            writerLanes = new ExecutorService[writerThreads];
+            for (int i = 0; i < writerThreads; i++) {
+                writerLanes[i] = Executors.newSingleThreadExecutor(factory);
             }
         }
+        File key = out.getAbsoluteFile();
+        if (groupWritesByDirectory && key.getParentFile() != null) {
+            key = key.getParentFile();
+        }
+        return writerLanes[(key.hashCode() & Integer.MAX_VALUE) % writerLanes.length];
+    }
 
+    public void write(String content, Writer writer, char endLineChar) throws IOException {
+        new LineEndingWriter(writer, getEndLine(endLineChar)).write(content);
     }
 
     public void append(String content, Writer writer, char endLineChar) throws IOException {
-        BufferedReader reader = new BufferedReader(new StringReader(content));
-        String line = reader.readLine();
-        String endLine = "\n";
-        if (endLineChar == '\r') {
-            endLine = "\r\n";
+        LineEndingWriter lew = new LineEndingWriter(writer, endLineChar == '\r' ? "\r\n" : "\n");
+        lew.write(content);
+        lew.terminateLastLine();
+    }
+
+    private String getEndLine(char endLineChar) {
+        if (platform != null) {
+            if (platform.equals(UNIX)) {
+                return "\n";
+            } else if (platform.equals(WINDOWS)) {
+                return "\r\n";
+            } else if (platform.equals(MAC)) {
+                return "\r";
+            }
         }
-        while (line != null) {
-            writer.append(line + endLine);
-            line = reader.readLine();
+        return endLineChar == '\r' ? "\r\n" : "\n";
+    }
+
+    private String getEndLine(FileFormat format, boolean append) {
+        char endLineChar = format != null ? format.getEndLineChar() : getDefaultEndLineChar();
+        return append ? (endLineChar == '\r' ? "\r\n" : "\n") : getEndLine(endLineChar);
+    }
+
+    private char getDefaultEndLineChar() {
+        String os = System.getProperty("os.name");
+        if (os.toLowerCase().startsWith("windows")) {
+            return '\r';
         }
+        return '\n';
     }
 
     public char getEndLineChar(File file) throws IOException {
-        char endLineChar = '\n';
         if (file.exists()) {
-            FileReader reader = new FileReader(file);
-            try {
-                char[] buffer = new char[150];
-                boolean detected = false;
-                int bytes = reader.read(buffer);
-                char previousChar = '\0';
-                while (bytes > 0 && !detected) {
-                    for (int i = 0; i < bytes && !detected; i++) {
-                        if (buffer[i] == '\r') {
-                            endLineChar = '\r';
-                            detected = true;
-                        }
-                        detected = detected || (previousChar == '\n' && buffer[i] != '\r');
-                        previousChar = buffer[i];
-
-                    }
-                    if (!detected) {
-                        bytes = reader.read(buffer);
-                    }
-                }
-            } finally {
-                reader.close();
-            }
-        } else {
-            String os = System.getProperty("os.name");
-            if (os.toLowerCase().startsWith("windows")) {
-                endLineChar = '\r';
-            }
+            return FileFormat.detect(file, getEncoding()).getEndLineChar();
         }
-        return endLineChar;
+        return getDefaultEndLineChar();
     }
 
     public abstract String getContent(Object n, VisitorContext vc);
 
+    /**
+     * Writes the content of an element into a writer that translates the line endings. Nothing is
+     * written into the file if nothing is written into the writer. By default, it writes the result
+     * of {@link #getContent(Object, VisitorContext)}. The writers whose printers can write directly into
+     * a {@link Writer} should override it, so that the whole content is not built as a String.
+     */
+    public void getContent(Object n, VisitorContext vc, Writer writer) throws IOException {
+        String content = getContent(n, vc);
+        if (content != null) {
+            writer.write(content);
+        }
+    }
+
+    /**
+     * Closes the writer threads of the write-behind mode after waiting for the pending writes.
+     */
     @Override
     public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            synchronized (this) {
+                if (writerLanes != null) {
+                    for (ExecutorService lane : writerLanes) {
+                        lane.shutdown();
+                    }
+                    writerLanes = null;
+                }
+            }
+        }
     }
 
+    /**
+     * Waits for the pending writes of the write-behind mode.
+     * 
+     * @throws IOException
+     *             if some of the pending writes has failed.
+     */
     @Override
     public void flush() throws IOException {
+        synchronized (pendingWritesLock) {
+            while (pendingWrites > 0) {
+                try {
+                    pendingWritesLock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while waiting for " + pendingWrites + " pending writes");
+                }
+            }
+        }
+        syncFiles();
+        synchronized (writeErrors) {
+            if (!writeErrors.isEmpty()) {
+                IOException error = new IOException(writeErrors.size() + " file(s) cannot be written",
+                        writeErrors.get(0));
+                writeErrors.clear();
+                throw error;
+            }
+        }
+    }
+
+    /**
+     * Syncs the files written in batch mode. The temporary files of the atomic writes are synced before
+     * any of them replaces its target, so a crash never leaves a replaced file whose content is not in
+     * the disk. If some of them cannot be synced, none replaces its target.
+     */
+    private void syncFiles() throws IOException {
+        File[] files;
+        synchronized (unsyncedFiles) {
+            files = unsyncedFiles.toArray(new File[unsyncedFiles.size()]);
+            unsyncedFiles.clear();
+        }
+        SafeFileOutputStream[] streams;
+        synchronized (uncommittedFiles) {
+            streams = uncommittedFiles.values().toArray(new SafeFileOutputStream[uncommittedFiles.size()]);
+            uncommittedFiles.clear();
+        }
+        for (File file : files) {
+            if (file.isFile()) {
+                SafeFileOutputStream.sync(file);
+            }
+        }
+        try {
+            for (SafeFileOutputStream stream : streams) {
+                stream.syncPending();
+            }
+        } catch (IOException e) {
+            for (SafeFileOutputStream stream : streams) {
+                stream.discard();
+            }
+            throw e;
+        }
+        for (SafeFileOutputStream stream : streams) {
+            stream.commit();
+        }
     }
 
     public void setPath(String path) {
@@ -264,12 +575,8 @@ public abstract class AbstractFileWriter implements ChainWriter {
 
     @Override
     public void setExcludes(String[] excludes) {
-        if (excludes != null && System.getProperty("os.name").toLowerCase().contains("windows")) {
-            for (int i = 0; i < excludes.length; i++) {
-                excludes[i] = FilenameUtils.normalize(excludes[i], true);
-            }
-        }
         this.excludes = excludes;
+        matcher = null;
     }
 
     @Override
@@ -279,12 +586,8 @@ public abstract class AbstractFileWriter implements ChainWriter {
 
     @Override
     public void setIncludes(String[] includes) {
-        if (includes != null && System.getProperty("os.name").toLowerCase().contains("windows")) {
-            for (int i = 0; i < includes.length; i++) {
-                includes[i] = FilenameUtils.normalize(includes[i], true);
-            }
-        }
         this.includes = includes;
+        matcher = null;
     }
 
     @Override
@@ -305,4 +608,174 @@ public abstract class AbstractFileWriter implements ChainWriter {
         this.platform = platform;
     }
 
+    /**
+     * Writer of the output file, which is not opened (nor truncated) until something is written. If the
+     * unchanged files are skipped and the file exists, the content is written into a temporary file and
+     * hashed, and the file is only replaced if the content is different.
+     */
+    private class OutputFileWriter extends Writer {
+
+        private final File out;
+
+        private final String encoding;
+
+        private final String bom;
+
+        private final String currentHash;
+
+        private Writer writer;
+
+        private SafeFileOutputStream stream;
+
+        public OutputFileWriter(File out, String encoding, String bom, String currentHash) {
+            this.out = out;
+            this.encoding = encoding;
+            this.bom = bom;
+            this.currentHash = currentHash;
+        }
+
+        private Writer open(char first) throws IOException {
+            if (writer == null) {
+                if (isSkipUnchanged() && out.isFile() && !isUncommitted(out)) {
+                    stream = openStream(out, true);
+                    stream.setCurrentHash(currentHash);
+                    writer = new BufferedWriter(new OutputStreamWriter(stream, encoding));
+                } else {
+                    try {
+                        writer = openWriter(out, encoding);
+                    } catch (IOException e) {
+                        throw e;
+                    } catch (Exception e) {
+                        throw new IOException(e);
+                    }
+                }
+                if (bom != null && first != bom.charAt(0)) {
+                    writer.write(bom);
+                }
+            }
+            return writer;
+        }
+
+        public boolean isOpened() {
+            return writer != null;
+        }
+
+        /**
+         * Returns if the file has been opened and it has not been kept because it had the same content.
+         */
+        public boolean isWritten() {
+            return writer != null && (stream == null || stream.isChanged());
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) throws IOException {
+            if (len > 0) {
+                open(cbuf[off]).write(cbuf, off, len);
+            }
+        }
+
+        @Override
+        public void write(String str, int off, int len) throws IOException {
+            if (len > 0) {
+                open(str.charAt(off)).write(str, off, len);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (writer != null) {
+                writer.flush();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (writer != null) {
+                writer.close();
+            }
+        }
+    }
+
+    /**
+     * Sets if the files whose new content is byte-identical to their current content are not written,
+     * so that their last modification time does not change and they are not reported as written.
+     * It is disabled by default, because the existing files are then written through a temporary
+     * file instead of {@link #getWriter(File)}, so it must not be enabled by writers that override it
+     * (e.g. to write patches instead of the output file itself).
+     */
+    public void setSkipUnchanged(boolean skipUnchanged) {
+        this.skipUnchanged = skipUnchanged;
+    }
+
+    public boolean isSkipUnchanged() {
+        return skipUnchanged;
+    }
+
+    /**
+     * Sets if the files are written into a temporary file that replaces the original one once it is
+     * complete, so that a killed execution never leaves truncated files.
+     */
+    public void setAtomicWrites(boolean atomicWrites) {
+        this.atomicWrites = atomicWrites;
+    }
+
+    public boolean isAtomicWrites() {
+        return atomicWrites;
+    }
+
+    /**
+     * Sets when the written files are synced to the disk: never ({@link #FSYNC_NONE}, by default), after
+     * writing each file ({@link #FSYNC_FILE}) or all together when the writer is flushed at the end
+     * of the chain ({@link #FSYNC_BATCH}).
+     */
+    public void setFsync(String fsync) {
+        if (!FSYNC_NONE.equals(fsync) && !FSYNC_FILE.equals(fsync) && !FSYNC_BATCH.equals(fsync)) {
+            throw new IllegalArgumentException("Invalid fsync policy " + fsync + ". Use " + FSYNC_NONE + ", "
+                    + FSYNC_FILE + " or " + FSYNC_BATCH);
+        }
+        this.fsync = fsync;
+    }
+
+    public String getFsync() {
+        return fsync;
+    }
+
+    /**
+     * Sets the number of threads that write the files in the background (write-behind), so that the
+     * walker does not wait for the disk. By default (0), the files are written by the walker.
+     */
+    public void setWriterThreads(int writerThreads) {
+        this.writerThreads = writerThreads;
+    }
+
+    public int getWriterThreads() {
+        return writerThreads;
+    }
+
+    /**
+     * Sets the maximum number of pending writes of the write-behind mode. By default, 16 per writer
+     * thread.
+     */
+    public void setWriteQueueCapacity(int writeQueueCapacity) {
+        this.writeQueueCapacity = writeQueueCapacity;
+    }
+
+    public int getWriteQueueCapacity() {
+        if (writeQueueCapacity > 0) {
+            return writeQueueCapacity;
+        }
+        return Math.max(writerThreads, 1) * PENDING_WRITES_PER_THREAD;
+    }
+
+    /**
+     * Sets if the files of the same directory are written by the same writer thread.
+     */
+    public void setGroupWritesByDirectory(boolean groupWritesByDirectory) {
+        this.groupWritesByDirectory = groupWritesByDirectory;
+    }
+
+    public boolean isGroupWritesByDirectory() {
+        return groupWritesByDirectory;
+    }
+
 }
@@ -15,16 +15,58 @@
   along with Walkmod.  If not, see <http://www.gnu.org/licenses/>.*/
 package org.walkmod.writers;
 
-import java.io.BufferedWriter;
+import java.io.BufferedOutputStream;
+import java.io.CharArrayWriter;
 import java.io.File;
 import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
 
+import org.walkmod.patches.BinaryPatchEncoder;
+import org.walkmod.patches.BinaryPatchFormatter;
+import org.walkmod.patches.Patch;
+import org.walkmod.patches.PatchFormat;
+import org.walkmod.patches.PatchFormatter;
+import org.walkmod.patches.Patches;
+import org.walkmod.patches.StreamingPatchFormatter;
+import org.walkmod.patches.diff.DiffAlgorithm;
+import org.walkmod.patches.diff.DiffEngine;
+import org.walkmod.patches.diff.Hunk;
+import org.walkmod.util.FileFormat;
+import org.walkmod.util.LineRanges;
+import org.walkmod.walkers.AbstractWalker;
 import org.walkmod.walkers.VisitorContext;
 
+/**
+ * Writer of the patches of the transformed files. All the patches of a chain are appended to a single
+ * long-lived channel (<code>walkmod.patch</code>), which is opened with the first patch and closed when
+ * the writer is flushed at the end of the chain. Each patch is appended at once, so patches written
+ * by several threads are never interleaved. Optionally, the patches can be split into several shards,
+ * which are written in parallel, and compressed with gzip. The patches of the <code>binary</code> format
+ * are encoded directly into their channel (<code>walkmod.patch.bin</code>), which can be applied with
+ * <code>walkmod patch --apply</code>.
+ * <p>
+ * The walkers write a result node per transformation of a file, but only the last one, which contains
+ * the changes of all the transformations, is diffed against the original file.
+ * </p>
+ */
 public abstract class AbstractPatchWriter extends AbstractFileWriter {
 
+	private static final String PATCH_FILE = "walkmod";
+
+	private static final String PATCH_EXTENSION = ".patch";
+
+	private static final String BINARY_EXTENSION = ".bin";
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
 	private boolean patchPerChange = true;
 
 	private boolean patchPerFile = true;
@@ -33,6 +75,18 @@ public abstract class AbstractPatchWriter extends AbstractFileWriter {
 
 	private String cause = "walkmod";
 
+	private int patchShards = 1;
+
+	private boolean compressPatches = false;
+
+	private PatchChannel[] channels;
+
+	private String diffAlgorithm = DiffAlgorithm.MYERS;
+
+	private int contextSize = DiffEngine.DEFAULT_CONTEXT_SIZE;
+
+	private volatile DiffEngine diffEngine;
+
 	@Override
 	public File createOutputDirectory(Object o) {
 		return null;
@@ -43,9 +97,214 @@ public abstract class AbstractPatchWriter extends AbstractFileWriter {
 		return true;
 	}
 
+	/**
+	 * The patches are appended to another file, so the content of the original file is never the same.
+	 */
 	@Override
-	protected Writer getWriter(File out) throws Exception {
-		return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(new File("walkmod.patch").getCanonicalFile(), true), getEncoding()));
+	public boolean isSkipUnchanged() {
+		return false;
+	}
+
+	/**
+	 * Skips the intermediate result nodes of a file, whose changes are included in the last one.
+	 */
+	@Override
+	public void write(Object n, VisitorContext vc) throws Exception {
+		if (isIntermediateResult(n, vc)) {
+			return;
+		}
+		super.write(n, vc);
+	}
+
+	/**
+	 * Returns if there is a later result node of the same original file, which is the output file of
+	 * all of them.
+	 */
+	protected boolean isIntermediateResult(Object n, VisitorContext vc) {
+		if (vc == null || vc.get(AbstractWalker.ORIGINAL_FILE_KEY) == null) {
+			return false;
+		}
+		Collection<Object> results = vc.getResultNodes();
+		if (results == null || results.size() < 2) {
+			return false;
+		}
+		Object last = null;
+		boolean found = false;
+		Iterator<Object> it = results.iterator();
+		while (it.hasNext()) {
+			last = it.next();
+			found = found || last == n;
+		}
+		return found && last != n;
+	}
+
+	/**
+	 * The patches keep the line endings of the original file, but not its charset or byte order mark.
+	 */
+	@Override
+	protected FileFormat getFileFormat(File out, VisitorContext vc) throws IOException {
+		FileFormat format = super.getFileFormat(out, vc);
+		if (format != null) {
+			return new FileFormat(format.getLineEnding(), getEncoding(), false);
+		}
+		return null;
+	}
+
+	/**
+	 * Returns a writer of the patch of a file, which is appended to its patch channel when it is
+	 * closed.
+	 */
+	@Override
+	protected Writer getWriter(File out, String encoding) throws Exception {
+		return new PatchEntryWriter(getChannel(out));
+	}
+
+	private synchronized PatchChannel getChannel(File out) throws IOException {
+		if (channels == null) {
+			int shards = Math.max(patchShards, 1);
+			channels = new PatchChannel[shards];
+			for (int i = 0; i < shards; i++) {
+				String name = PATCH_FILE + (shards > 1 ? "-" + i : "") + PATCH_EXTENSION
+						+ (getPatchFormatter() instanceof BinaryPatchFormatter ? BINARY_EXTENSION : "")
+						+ (compressPatches ? ".gz" : "");
+				channels[i] = new PatchChannel(new File(name).getCanonicalFile());
+			}
+		}
+		// all the patches of a file are written into the same shard
+		return channels[(out.getAbsoluteFile().hashCode() & Integer.MAX_VALUE) % channels.length];
+	}
+
+	/**
+	 * Waits for the pending patches and closes the patch channels, so that the patches of the chain
+	 * are complete.
+	 */
+	@Override
+	public void flush() throws IOException {
+		try {
+			super.flush();
+		} finally {
+			closeChannels();
+		}
+	}
+
+	private void closeChannels() throws IOException {
+		PatchChannel[] closed;
+		synchronized (this) {
+			closed = channels;
+			channels = null;
+		}
+		if (closed != null) {
+			IOException error = null;
+			for (PatchChannel channel : closed) {
+				try {
+					channel.close();
+				} catch (IOException e) {
+					if (error == null) {
+						error = e;
+					}
+				}
+			}
+			if (error != null) {
+				throw error;
+			}
+		}
+	}
+
+	/**
+	 * Generates the patch of a file, restricted to the changed lines of its context.
+	 */
+	protected String generatePatch(String originalText, String text, String location, VisitorContext vc) {
+		LineRanges changedLines = null;
+		if (vc != null) {
+			changedLines = vc.getChangedLines();
+		}
+		return Patches.generatePatch(originalText, text, location, changedLines, getDiffEngine());
+	}
+
+	/**
+	 * Generates the patches of the changes of a file, which are restricted to the changed lines of its
+	 * context. The texts are diffed once, and the changes whose hunks overlap or are adjacent are merged
+	 * into a single patch, so the patches never overlap.
+	 *
+	 * @return a patch per hunk, in the order of the original text.
+	 */
+	protected List<Patch> generatePatches(String originalText, String text, String location, VisitorContext vc) {
+		LineRanges changedLines = null;
+		if (vc != null) {
+			changedLines = vc.getChangedLines();
+		}
+		List<Hunk> hunks = getDiffEngine().generateHunks(originalText, text, "a" + File.separator + location,
+				"b" + File.separator + location, changedLines);
+		List<Patch> patches = new ArrayList<Patch>(hunks.size());
+		for (Hunk hunk : hunks) {
+			patches.add(new Patch(hunk.getDiff(), hunk.getBeginLine(), 1, hunk.getEndLine(), 1, cause, location,
+					hunk.getEdits() > 1));
+		}
+		return patches;
+	}
+
+	/**
+	 * Writes the patches of a file with the formatter of the {@link #getPatchFormat()}. Streaming
+	 * formatters (e.g. <code>ndjson</code>) write them directly into the writer, which is usually the
+	 * one received by {@link #getContent(Object, VisitorContext, Writer)}. Binary patches are not text,
+	 * so they are encoded into the patch channel of the location instead of the writer.
+	 */
+	protected void writePatches(String location, List<Patch> patches, Writer writer) throws IOException {
+		PatchFormatter formatter = getPatchFormatter();
+		if (formatter instanceof BinaryPatchFormatter) {
+			if (!patches.isEmpty()) {
+				File file = new File(location);
+				getChannel(file).append(patches);
+				// nothing is written into the writer of the file, so it is not recorded by the write
+				Summary.getInstance().addFile(file.getAbsoluteFile());
+			}
+		} else if (formatter instanceof StreamingPatchFormatter) {
+			((StreamingPatchFormatter) formatter).write(location, patches, writer);
+		} else {
+			writer.write(formatter.format(location, patches));
+		}
+	}
+
+	protected PatchFormatter getPatchFormatter() {
+		return PatchFormat.valueOf(patchFormat.toUpperCase()).getFormatter();
+	}
+
+	protected DiffEngine getDiffEngine() {
+		DiffEngine engine = diffEngine;
+		if (engine == null) {
+			engine = new DiffEngine(diffAlgorithm, contextSize);
+			diffEngine = engine;
+		}
+		return engine;
+	}
+
+	/**
+	 * Sets the algorithm to generate the patches: {@link DiffAlgorithm#MYERS} (by default),
+	 * {@link DiffAlgorithm#HISTOGRAM} or {@link DiffAlgorithm#PATIENCE}.
+	 */
+	public void setDiffAlgorithm(String diffAlgorithm) {
+		DiffAlgorithm.getInstance(diffAlgorithm);
+		this.diffAlgorithm = diffAlgorithm;
+		diffEngine = null;
+	}
+
+	public String getDiffAlgorithm() {
+		return diffAlgorithm;
+	}
+
+	/**
+	 * Sets the number of unchanged lines around the changes of each hunk. By default, 4.
+	 */
+	public void setContextSize(int contextSize) {
+		if (contextSize < 0) {
+			throw new IllegalArgumentException("Invalid context size " + contextSize);
+		}
+		this.contextSize = contextSize;
+		diffEngine = null;
+	}
+
+	public int getContextSize() {
+		return contextSize;
 	}
 
 	public void setPatchPerChange(boolean patchPerChange) {
@@ -80,4 +339,125 @@ public abstract class AbstractPatchWriter extends AbstractFileWriter {
 		return patchFormat;
 	}
 
+	/**
+	 * Sets the number of patch files (<code>walkmod-0.patch</code>, <code>walkmod-1.patch</code>...),
+	 * which can be written in parallel by the writer threads. All the patches of a file are written
+	 * into the same one. By default, there is a single <code>walkmod.patch</code>.
+	 */
+	public void setPatchShards(int patchShards) {
+		this.patchShards = patchShards;
+	}
+
+	public int getPatchShards() {
+		return patchShards;
+	}
+
+	/**
+	 * Sets if the patch files are compressed with gzip (<code>walkmod.patch.gz</code>). Each execution
+	 * appends a new gzip member, which is supported by the gzip tools.
+	 */
+	public void setCompressPatches(boolean compressPatches) {
+		this.compressPatches = compressPatches;
+	}
+
+	public boolean isCompressPatches() {
+		return compressPatches;
+	}
+
+	/**
+	 * Patch file that is opened in append mode with the first patch and kept open until it is closed.
+	 */
+	private class PatchChannel {
+
+		private final File file;
+
+		private OutputStream stream;
+
+		private Writer writer;
+
+		private BinaryPatchEncoder encoder;
+
+		public PatchChannel(File file) {
+			this.file = file;
+		}
+
+		private OutputStream open() throws IOException {
+			if (stream == null) {
+				OutputStream os = new BufferedOutputStream(new FileOutputStream(file, true), BUFFER_SIZE);
+				if (compressPatches) {
+					os = new GZIPOutputStream(os, BUFFER_SIZE);
+				}
+				stream = os;
+			}
+			return stream;
+		}
+
+		public synchronized void append(CharArrayWriter content) throws IOException {
+			if (writer == null) {
+				writer = new OutputStreamWriter(open(), getEncoding());
+			}
+			content.writeTo(writer);
+		}
+
+		public synchronized void append(List<Patch> patches) throws IOException {
+			if (encoder == null) {
+				encoder = new BinaryPatchEncoder(open());
+			}
+			for (Patch patch : patches) {
+				encoder.write(patch);
+			}
+		}
+
+		public synchronized void close() throws IOException {
+			if (stream != null) {
+				try {
+					if (writer != null) {
+						writer.flush();
+					}
+					stream.close();
+				} finally {
+					stream = null;
+					writer = null;
+					encoder = null;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Writer of the patch of a file, which is buffered and appended to the channel when it is closed.
+	 */
+	private static class PatchEntryWriter extends Writer {
+
+		private final PatchChannel channel;
+
+		private CharArrayWriter buffer = new CharArrayWriter();
+
+		public PatchEntryWriter(PatchChannel channel) {
+			this.channel = channel;
+		}
+
+		@Override
+		public void write(char[] cbuf, int off, int len) throws IOException {
+			if (buffer == null) {
+				throw new IOException("The patch writer is closed");
+			}
+			buffer.write(cbuf, off, len);
+		}
+
+		@Override
+		public void flush() throws IOException {
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (buffer != null) {
+				CharArrayWriter content = buffer;
+				buffer = null;
+				if (content.size() > 0) {
+					channel.append(content);
+				}
+			}
+		}
+	}
 }
@@ -16,35 +16,138 @@
 package org.walkmod.writers;
 
 import java.io.File;
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLongArray;
 
+/**
+ * Files written and changes made by an execution. Each execution of the {@link org.walkmod.WalkModFacade}
+ * has its own summary, which is the current one of the threads of the execution, so that concurrent
+ * executions in the same JVM do not mix their results. It can be updated by several threads.
+ * 
+ * @author Raquel Pau
+ *
+ */
 public class Summary {
 
-	private static Summary instance = null;
+	public static final int ADDED = 0;
 
-	private List<File> writtenFiles;
+	public static final int UPDATED = 1;
 
-	private Summary() {
-		writtenFiles = new LinkedList<File>();
+	public static final int DELETED = 2;
+
+	public static final int UNMODIFIED = 3;
+
+	private static final Summary GLOBAL = new Summary();
+
+	private static final InheritableThreadLocal<Summary> CURRENT = new InheritableThreadLocal<Summary>();
+
+	private final Set<File> writtenFileSet = Collections.newSetFromMap(new ConcurrentHashMap<File, Boolean>());
+
+	private final Queue<File> writtenFiles = new ConcurrentLinkedQueue<File>();
+
+	private final Set<File> reportedFiles = Collections.newSetFromMap(new ConcurrentHashMap<File, Boolean>());
+
+	private final ConcurrentHashMap<String, AtomicLongArray> changes = new ConcurrentHashMap<String, AtomicLongArray>();
+
+	public Summary() {
 	}
 
+	/**
+	 * Returns the summary of the current execution, or a global one if there is no current execution.
+	 */
 	public static Summary getInstance() {
-		if (instance == null) {
-			instance = new Summary();
+		Summary current = CURRENT.get();
+		if (current != null) {
+			return current;
+		}
+		return GLOBAL;
+	}
+
+	/**
+	 * Sets the summary of the current thread and the threads that it creates.
+	 * 
+	 * @param summary
+	 *            the summary of the current execution, or null to use the global one.
+	 * @return the previous summary of the current thread, which must be restored at the end of the
+	 *         execution.
+	 */
+	public static Summary setCurrent(Summary summary) {
+		Summary previous = CURRENT.get();
+		if (summary != null) {
+			CURRENT.set(summary);
+		} else {
+			CURRENT.remove();
 		}
-		return instance;
+		return previous;
 	}
 
 	public void clear() {
 		writtenFiles.clear();
+		writtenFileSet.clear();
+		reportedFiles.clear();
+		changes.clear();
 	}
 
+	/**
+	 * Returns the written files, in order and without duplicates.
+	 */
 	public List<File> getWrittenFiles() {
-		return writtenFiles;
+		return new ArrayList<File>(writtenFiles);
 	}
 
 	public void addFile(File file) {
-		writtenFiles.add(file);
+		if (writtenFileSet.add(file)) {
+			writtenFiles.add(file);
+		}
+	}
+
+	/**
+	 * Returns the files that have produced visitor messages.
+	 */
+	public Set<File> getReportedFiles() {
+		return new HashSet<File>(reportedFiles);
+	}
+
+	public void addReportedFile(File file) {
+		reportedFiles.add(file);
+	}
+
+	/**
+	 * Counts the nodes of a type that have been added, updated, deleted or left unmodified.
+	 */
+	public void addChanges(String nodeType, long added, long updated, long deleted, long unmodified) {
+		AtomicLongArray counters = changes.get(nodeType);
+		if (counters == null) {
+			counters = new AtomicLongArray(4);
+			AtomicLongArray previous = changes.putIfAbsent(nodeType, counters);
+			if (previous != null) {
+				counters = previous;
+			}
+		}
+		counters.addAndGet(ADDED, added);
+		counters.addAndGet(UPDATED, updated);
+		counters.addAndGet(DELETED, deleted);
+		counters.addAndGet(UNMODIFIED, unmodified);
+	}
+
+	/**
+	 * Returns the number of nodes, by type, that have been {@link #ADDED}, {@link #UPDATED},
+	 * {@link #DELETED} or left {@link #UNMODIFIED}.
+	 */
+	public Map<String, Long> getChanges(int kind) {
+		Map<String, Long> result = new HashMap<String, Long>();
+		for (Map.Entry<String, AtomicLongArray> entry : changes.entrySet()) {
+			result.put(entry.getKey(), entry.getValue().get(kind));
+		}
+		return result;
 	}
 }
@@ -19,9 +19,9 @@ import java.io.File;
 import java.io.IOException;
 import java.util.Collection;
 
-import org.apache.commons.io.FilenameUtils;
 import org.apache.log4j.Logger;
 import org.walkmod.ChainWriter;
+import org.walkmod.util.PathPatternMatcher;
 import org.walkmod.walkers.AbstractWalker;
 import org.walkmod.walkers.VisitorContext;
 
@@ -33,6 +33,8 @@ public class VisitorMessagesWriter implements ChainWriter {
 
 	private String[] excludes;
 
+	private volatile PathPatternMatcher matcher;
+
 	@Override
 	public void close() throws IOException {
 		log.info("WRITE SUCCESSFUL");
@@ -59,22 +61,13 @@ public class VisitorMessagesWriter implements ChainWriter {
 			out = (File) vc.get(AbstractWalker.ORIGINAL_FILE_KEY);
 		}
 
-		boolean write = true;
-
 		if (out != null) {
-			if (excludes != null) {
-				for (int i = 0; i < excludes.length && write; i++) {
-					write = !(FilenameUtils.wildcardMatch(out.getPath(), excludes[i]));
-				}
-			}
-
-			if (includes != null && write) {
-				write = false;
-				for (int i = 0; i < includes.length && !write; i++) {
-					write = FilenameUtils.wildcardMatch(out.getPath(), includes[i]);
-				}
+			PathPatternMatcher matcher = this.matcher;
+			if (matcher == null) {
+				matcher = new PathPatternMatcher(null, includes, excludes);
+				this.matcher = matcher;
 			}
-			if (write) {
+			if (matcher.matches(out.getPath())) {
 				Collection<String> messages = vc.getVisitorMessages();
 				if (messages != null) {
 					for (String message : messages) {
@@ -90,6 +83,7 @@ public class VisitorMessagesWriter implements ChainWriter {
 	@Override
 	public void setExcludes(String[] excludes) {
 		this.excludes = excludes;
+		matcher = null;
 	}
 
 	@Override
@@ -100,6 +94,7 @@ public class VisitorMessagesWriter implements ChainWriter {
 	@Override
 	public void setIncludes(String[] includes) {
 		this.includes = includes;
+		matcher = null;
 	}
 
 	@Override
@@ -244,4 +244,26 @@ public class OptionsTest {
         ob.configurationFile(null);
         assertThat(ob.build().getConfigurationFile(), is(nullValue()));
     }
+
+    @Test
+    public void threads_option_setter_works() {
+        OptionsBuilder ob = OptionsBuilder.options();
+        assertThat(ob.build().getThreads(), is(1));
+
+        ob.threads(4);
+        assertThat(ob.build().getThreads(), is(4));
+
+        ob.threads(null);
+        assertThat(ob.build().getThreads(), is(1));
+    }
+
+    @Test
+    public void files_option_setter_works() {
+        OptionsBuilder ob = OptionsBuilder.options();
+        assertThat(ob.build().getFiles(), is(nullValue()));
+
+        ob.files("src/Foo.java");
+        ob.files(Arrays.asList("src/Bar.java"));
+        assertThat(ob.build().getFiles(), contains("src/Foo.java", "src/Bar.java"));
+    }
 }
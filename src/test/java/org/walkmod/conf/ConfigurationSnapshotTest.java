@@ -0,0 +1,130 @@
+package org.walkmod.conf;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Test;
+import org.walkmod.conf.entities.ChainConfig;
+import org.walkmod.conf.entities.Configuration;
+import org.walkmod.conf.entities.impl.ConfigurationImpl;
+import org.walkmod.conf.providers.XMLConfigurationProvider;
+
+public class ConfigurationSnapshotTest {
+
+   private static boolean payloadRead = false;
+
+   private static class Payload implements Serializable {
+
+      private static final long serialVersionUID = 1L;
+
+      private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+         in.defaultReadObject();
+         payloadRead = true;
+      }
+   }
+
+   @Test
+   public void testSnapshotIsRestoredWhileTheConfigurationDoesNotChange() throws Exception {
+      File dir = new File("src/test/resources/snapshot").getAbsoluteFile();
+      FileUtils.deleteDirectory(dir);
+      dir.mkdirs();
+      try {
+         File cache = new File(dir, "cache");
+         File cfg = new File(dir, "walkmod.xml");
+         FileUtils.copyFile(new File("src/test/resources/testFiles/walkmod.xml"), cfg);
+         XMLConfigurationProvider prov = new XMLConfigurationProvider(cfg.getPath(), false);
+         Configuration conf = new ConfigurationImpl();
+         prov.init(conf);
+         prov.load();
+
+         ConfigurationSnapshot snapshot = new ConfigurationSnapshot(ConfigurationSnapshot.getSnapshotFile(cache, cfg));
+         snapshot.capture(conf);
+         snapshot.save(conf, cfg);
+         Assert.assertTrue(snapshot.getFile().isFile());
+
+         Configuration restored = new ConfigurationImpl();
+         snapshot = new ConfigurationSnapshot(ConfigurationSnapshot.getSnapshotFile(cache, cfg));
+         Assert.assertTrue(snapshot.restore(restored, cfg));
+         Assert.assertTrue(snapshot.isClasspathValid(restored));
+         Assert.assertEquals(1, restored.getChainConfigs().size());
+         ChainConfig cc = restored.getChainConfigs().iterator().next();
+         Assert.assertEquals("default", cc.getName());
+         Assert.assertSame(restored, cc.getConfiguration());
+         Assert.assertEquals(conf.getChainConfigs().iterator().next().getWalkerConfig().getTransformations().size(),
+               cc.getWalkerConfig().getTransformations().size());
+
+         // the snapshots are keyed by the path of the configuration
+         Assert.assertEquals(cache, snapshot.getFile().getParentFile());
+         Assert.assertFalse(snapshot.getFile().equals(
+               ConfigurationSnapshot.getSnapshotFile(cache, new File(dir, "other/walkmod.xml"))));
+
+         FileUtils.write(cfg, FileUtils.readFileToString(cfg) + "\n");
+         Assert.assertFalse(snapshot.restore(new ConfigurationImpl(), cfg));
+      } finally {
+         FileUtils.deleteDirectory(dir);
+      }
+   }
+
+   @Test
+   public void testOnlyTheConfigurationClassesAreAllowed() throws Exception {
+      File dir = new File("src/test/resources/snapshot-classes").getAbsoluteFile();
+      FileUtils.deleteDirectory(dir);
+      dir.mkdirs();
+      try {
+         File cache = new File(dir, "cache");
+         File cfg = new File(dir, "walkmod.xml");
+         FileUtils.copyFile(new File("src/test/resources/testFiles/walkmod.xml"), cfg);
+         XMLConfigurationProvider prov = new XMLConfigurationProvider(cfg.getPath(), false);
+         Configuration conf = new ConfigurationImpl();
+         prov.init(conf);
+         prov.load();
+
+         // the configurations with other values are not stored
+         Map<String, Object> parameters = new HashMap<String, Object>();
+         parameters.put("file", new File("Foo.java"));
+         conf.setParameters(parameters);
+         ConfigurationSnapshot snapshot = new ConfigurationSnapshot(ConfigurationSnapshot.getSnapshotFile(cache, cfg));
+         snapshot.capture(conf);
+         snapshot.save(conf, cfg);
+         Assert.assertFalse(snapshot.getFile().exists());
+
+         parameters.put("file", "Foo.java");
+         snapshot.capture(conf);
+         snapshot.save(conf, cfg);
+         Assert.assertTrue(snapshot.getFile().isFile());
+
+         // a tampered snapshot with other classes is not restored
+         DataInputStream dis = new DataInputStream(new FileInputStream(snapshot.getFile()));
+         int version = dis.readInt();
+         String key = dis.readUTF();
+         String classpath = dis.readUTF();
+         dis.close();
+         ByteArrayOutputStream bos = new ByteArrayOutputStream();
+         ObjectOutputStream oos = new ObjectOutputStream(bos);
+         oos.writeObject(new Payload());
+         oos.close();
+         DataOutputStream dos = new DataOutputStream(new FileOutputStream(snapshot.getFile()));
+         dos.writeInt(version);
+         dos.writeUTF(key);
+         dos.writeUTF(classpath);
+         dos.write(bos.toByteArray());
+         dos.close();
+         Assert.assertFalse(new ConfigurationSnapshot(snapshot.getFile()).restore(new ConfigurationImpl(), cfg));
+         Assert.assertFalse(payloadRead);
+      } finally {
+         FileUtils.deleteDirectory(dir);
+      }
+   }
+}
@@ -0,0 +1,47 @@
+package org.walkmod.conf.providers;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ClasspathCacheTest {
+
+   @Test
+   public void testCachedJarsAreCheckedAndDynamicVersionsExpire() throws Exception {
+      File dir = new File("src/test/resources/classpath-cache").getAbsoluteFile();
+      FileUtils.deleteDirectory(dir);
+      dir.mkdirs();
+      try {
+         File jar = new File(dir, "plugin.jar");
+         FileUtils.write(jar, "jar");
+         ClasspathCache cache = new ClasspathCache(new File(dir, "cache"));
+         List<String> fixed = Arrays.asList("org.walkmod:walkmod-imports-cleaner-plugin:2.0", "org.walkmod:a:1.0");
+         List<String> dynamic = Arrays.asList("org.walkmod:walkmod-imports-cleaner-plugin:latest.integration");
+
+         Assert.assertNull(cache.get(fixed, "settings", false));
+         cache.put(fixed, "settings", Arrays.asList(jar));
+         cache.put(dynamic, "settings", Arrays.asList(jar));
+
+         // the order of the plugins does not matter
+         Collection<File> jars = cache.get(Arrays.asList(fixed.get(1), fixed.get(0)), "settings", false);
+         Assert.assertEquals(Arrays.asList(jar.getAbsoluteFile()), jars);
+         Assert.assertNull(cache.get(fixed, "other settings", false));
+         Assert.assertNotNull(cache.get(dynamic, "settings", false));
+
+         cache.setDynamicTtl(-1);
+         Assert.assertNull(cache.get(dynamic, "settings", false));
+         Assert.assertNotNull(cache.get(dynamic, "settings", true));
+         Assert.assertNotNull(cache.get(fixed, "settings", false));
+
+         FileUtils.write(jar, "modified jar");
+         Assert.assertNull(cache.get(fixed, "settings", false));
+      } finally {
+         FileUtils.deleteDirectory(dir);
+      }
+   }
+}
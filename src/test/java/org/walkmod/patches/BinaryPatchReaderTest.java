@@ -0,0 +1,47 @@
+package org.walkmod.patches;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class BinaryPatchReaderTest {
+
+	@Test
+	public void testPatchesOfSeveralSegmentsAreDecoded() throws Exception {
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		BinaryPatchEncoder encoder = new BinaryPatchEncoder(bos);
+		encoder.write(new Patch("--- a/Foo.java\n+++ b/Foo.java\n@@ -1 +1 @@\n-a\n+\u00e1", 1, 1, 1, 2, "walkmod",
+				"Foo.java", true));
+		encoder.write(new Patch(null, -1, 0, 300, 70000, null, "Foo.java", false));
+		// a second execution appended to the same file
+		encoder = new BinaryPatchEncoder(bos);
+		encoder.write(new Patch("--- a/Bar.java\n+++ b/Bar.java\n", 2, 3, 4, 5, "other", "Bar.java", false));
+
+		BinaryPatchReader reader = new BinaryPatchReader(ByteBuffer.wrap(bos.toByteArray()));
+		List<Patch> patches = reader.readAll();
+		Assert.assertEquals(3, patches.size());
+		Patch first = patches.get(0);
+		Assert.assertEquals("--- a/Foo.java\n+++ b/Foo.java\n@@ -1 +1 @@\n-a\n+\u00e1", first.getDiff());
+		Assert.assertEquals("walkmod", first.getCause());
+		Assert.assertEquals("Foo.java", first.getLocation());
+		Assert.assertTrue(first.getIsMultiple());
+		Patch second = patches.get(1);
+		Assert.assertNull(second.getDiff());
+		Assert.assertNull(second.getCause());
+		Assert.assertEquals(-1, second.getBeginLine());
+		Assert.assertEquals(70000, second.getEndColumn());
+		Assert.assertEquals("Foo.java", second.getLocation());
+		Assert.assertEquals("Bar.java", patches.get(2).getLocation());
+		Assert.assertEquals("other", patches.get(2).getCause());
+
+		reader = new BinaryPatchReader(ByteBuffer.wrap(bos.toByteArray()));
+		InputStream diff = reader.openUnifiedDiff();
+		Assert.assertEquals("--- a/Foo.java\n+++ b/Foo.java\n@@ -1 +1 @@\n-a\n+\u00e1\n--- a/Bar.java\n+++ b/Bar.java\n",
+				IOUtils.toString(diff, "UTF-8"));
+	}
+}
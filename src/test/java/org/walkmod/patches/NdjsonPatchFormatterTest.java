@@ -0,0 +1,99 @@
+package org.walkmod.patches;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class NdjsonPatchFormatterTest {
+
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+
+	private static List<String> lines(String text) throws IOException {
+		List<String> lines = new ArrayList<String>();
+		BufferedReader reader = new BufferedReader(new StringReader(text));
+		String line = reader.readLine();
+		while (line != null) {
+			lines.add(line);
+			line = reader.readLine();
+		}
+		return lines;
+	}
+
+	private static void assertPatch(Patch expected, String line) throws IOException {
+		JsonNode node = MAPPER.readTree(line);
+		Assert.assertEquals(expected.getDiff(), node.get("diff").asText());
+		Assert.assertEquals(expected.getBeginLine(), node.get("beginLine").asInt());
+		Assert.assertEquals(expected.getBeginColumn(), node.get("beginColumn").asInt());
+		Assert.assertEquals(expected.getEndLine(), node.get("endLine").asInt());
+		Assert.assertEquals(expected.getEndColumn(), node.get("endColumn").asInt());
+		Assert.assertEquals(expected.getCause(), node.get("cause").asText());
+		Assert.assertEquals(expected.getLocation(), node.get("location").asText());
+		Assert.assertEquals(expected.getIsMultiple(), node.get("isMultiple").asBoolean());
+	}
+
+	@Test
+	public void testOneLinePerPatch() throws Exception {
+		Patch first = new Patch("--- a/Foo.java\n+++ b/Foo.java\n@@ -1,1 +1,1 @@\n-\"a\"\n+'b'\t\\c\r\n", 1, 1, 1, 1,
+				"walkmod", "src/Foo.java", false);
+		Patch second = new Patch("+caf\u00e9 \u0001  ", 2, 3, 4, 5, "clean \"code\"", "src\\Bar.java", true);
+		NdjsonPatchFormatter formatter = new NdjsonPatchFormatter();
+
+		String text = formatter.format("src/Foo.java", Arrays.asList(first, second));
+		Assert.assertTrue(text.endsWith("\n"));
+		List<String> lines = lines(text);
+		Assert.assertEquals(2, lines.size());
+		assertPatch(first, lines.get(0));
+		assertPatch(second, lines.get(1));
+
+		// the generator of the thread is reused by the next calls
+		StringWriter writer = new StringWriter();
+		formatter.write(second, writer);
+		formatter.write("src/Foo.java", Arrays.asList(first), writer);
+		lines = lines(writer.toString());
+		Assert.assertEquals(2, lines.size());
+		assertPatch(second, lines.get(0));
+		assertPatch(first, lines.get(1));
+		Assert.assertEquals(formatter.format(first), lines.get(1) + "\n");
+	}
+
+	@Test
+	public void testFailedWritesDoNotCorruptTheNextPatches() throws Exception {
+		Patch patch = new Patch("-a\n+b", 1, 1, 1, 1, "walkmod", "Foo.java", false);
+		NdjsonPatchFormatter formatter = new NdjsonPatchFormatter();
+		Writer failed = new Writer() {
+
+			@Override
+			public void write(char[] cbuf, int off, int len) throws IOException {
+				throw new IOException("disk full");
+			}
+
+			@Override
+			public void flush() throws IOException {
+			}
+
+			@Override
+			public void close() throws IOException {
+			}
+		};
+		try {
+			formatter.write(patch, failed);
+			Assert.fail("the writer has failed");
+		} catch (IOException e) {
+			Assert.assertEquals("disk full", e.getMessage());
+		}
+		List<String> lines = lines(formatter.format(patch));
+		Assert.assertEquals(1, lines.size());
+		assertPatch(patch, lines.get(0));
+	}
+}
@@ -0,0 +1,122 @@
+package org.walkmod.patches;
+
+import java.io.File;
+import java.io.StringReader;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Test;
+import org.walkmod.patches.diff.DiffAlgorithm;
+import org.walkmod.patches.diff.DiffEngine;
+
+public class PatchApplierTest {
+
+	@Test
+	public void testFailedHunksDoNotAbortThePatch() throws Exception {
+		File dir = new File("src/test/resources/apply-patch").getAbsoluteFile();
+		FileUtils.deleteDirectory(dir);
+		dir.mkdirs();
+		try {
+			File foo = new File(dir, "Foo.java");
+			// two lines added since the patch was generated
+			FileUtils.write(foo, "// header\n// header\na\nb\nc\nd\ne\n", "UTF-8");
+			File bar = new File(dir, "Bar.java");
+			FileUtils.write(bar, "x\ny\n", "UTF-8");
+			String patch = "--- a/Foo.java\n+++ b/Foo.java\n@@ -1,5 +1,5 @@\n a\n b\n-c\n+C\n d\n e\n"
+					+ "--- a/Bar.java\n+++ b/Bar.java\n@@ -1,2 +1,2 @@\n x\n-z\n+Z\n";
+
+			PatchApplier applier = new PatchApplier(dir);
+			applier.setThreads(2);
+			PatchReport report = applier.apply(new StringReader(patch));
+
+			Assert.assertEquals("// header\n// header\na\nb\nC\nd\ne\n", FileUtils.readFileToString(foo, "UTF-8"));
+			Assert.assertEquals("x\ny\n", FileUtils.readFileToString(bar, "UTF-8"));
+			Assert.assertEquals(1, report.getAppliedHunks());
+			Assert.assertEquals(1, report.getFuzzyHunks());
+			Assert.assertEquals(1, report.getFailures().size());
+			Assert.assertTrue(report.getFailures().get(0).startsWith("Bar.java"));
+		} finally {
+			FileUtils.deleteDirectory(dir);
+		}
+	}
+
+	@Test
+	public void testPatchesOfEmptyFiles() throws Exception {
+		File dir = new File("src/test/resources/apply-empty").getAbsoluteFile();
+		FileUtils.deleteDirectory(dir);
+		dir.mkdirs();
+		try {
+			File foo = new File(dir, "Foo.java");
+			FileUtils.write(foo, "", "UTF-8");
+			File bar = new File(dir, "Bar.java");
+			FileUtils.write(bar, "x\ny\n", "UTF-8");
+			DiffEngine engine = new DiffEngine(DiffAlgorithm.MYERS, 0);
+			String patch = Patches.generatePatch("", "a\nb\n", "Foo.java", null, engine) + "\n"
+					+ Patches.generatePatch("x\ny\n", "", "Bar.java", null, engine) + "\n";
+
+			PatchReport report = new PatchApplier(dir).apply(new StringReader(patch));
+
+			Assert.assertTrue(report.getFailures().toString(), report.getFailures().isEmpty());
+			Assert.assertEquals("a\nb\n", FileUtils.readFileToString(foo, "UTF-8"));
+			Assert.assertEquals("", FileUtils.readFileToString(bar, "UTF-8"));
+		} finally {
+			FileUtils.deleteDirectory(dir);
+		}
+	}
+
+	@Test
+	public void testHunksWithoutOldLinesInsertAfterTheirStart() throws Exception {
+		File dir = new File("src/test/resources/apply-insert").getAbsoluteFile();
+		FileUtils.deleteDirectory(dir);
+		dir.mkdirs();
+		try {
+			File foo = new File(dir, "Foo.java");
+			FileUtils.write(foo, "l1\nl2\nl3\nl4\nl5\n", "UTF-8");
+			String patch = "--- a/Foo.java\n+++ b/Foo.java\n@@ -0,0 +1 @@\n+l0\n@@ -3,0 +5 @@\n+x\n";
+
+			PatchReport report = new PatchApplier(dir).apply(new StringReader(patch));
+
+			Assert.assertEquals("l0\nl1\nl2\nl3\nx\nl4\nl5\n", FileUtils.readFileToString(foo, "UTF-8"));
+			Assert.assertEquals(2, report.getAppliedHunks());
+			Assert.assertEquals(0, report.getFuzzyHunks());
+			Assert.assertTrue(report.getFailures().isEmpty());
+		} finally {
+			FileUtils.deleteDirectory(dir);
+		}
+	}
+
+	@Test
+	public void testNoNewlineAtEndOfFile() throws Exception {
+		File dir = new File("src/test/resources/apply-no-newline").getAbsoluteFile();
+		FileUtils.deleteDirectory(dir);
+		dir.mkdirs();
+		try {
+			File removed = new File(dir, "Removed.java");
+			FileUtils.write(removed, "a\nb\n", "UTF-8");
+			File added = new File(dir, "Added.java");
+			FileUtils.write(added, "a\nb", "UTF-8");
+			File crlf = new File(dir, "Crlf.java");
+			FileUtils.write(crlf, "a\r\nb\r\n", "UTF-8");
+			File kept = new File(dir, "Kept.java");
+			FileUtils.write(kept, "a\nb", "UTF-8");
+			String patch = "--- a/Removed.java\n+++ b/Removed.java\n@@ -1,2 +1,2 @@\n a\n-b\n+c\n"
+					+ "\\ No newline at end of file\n"
+					+ "--- a/Added.java\n+++ b/Added.java\n@@ -1,2 +1,2 @@\n a\n-b\n"
+					+ "\\ No newline at end of file\n+c\n"
+					+ "--- a/Crlf.java\n+++ b/Crlf.java\n@@ -1,2 +1,2 @@\n a\n-b\n+c\n"
+					+ "\\ No newline at end of file\n"
+					+ "--- a/Kept.java\n+++ b/Kept.java\n@@ -1,2 +1,2 @@\n-a\n+A\n b\n"
+					+ "\\ No newline at end of file\n";
+
+			PatchReport report = new PatchApplier(dir).apply(new StringReader(patch));
+
+			Assert.assertTrue(report.getFailures().toString(), report.getFailures().isEmpty());
+			Assert.assertEquals("a\nc", FileUtils.readFileToString(removed, "UTF-8"));
+			Assert.assertEquals("a\nc\n", FileUtils.readFileToString(added, "UTF-8"));
+			Assert.assertEquals("a\r\nc", FileUtils.readFileToString(crlf, "UTF-8"));
+			Assert.assertEquals("A\nb", FileUtils.readFileToString(kept, "UTF-8"));
+		} finally {
+			FileUtils.deleteDirectory(dir);
+		}
+	}
+}
@@ -0,0 +1,49 @@
+package org.walkmod.patches;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.walkmod.patches.diff.DiffAlgorithm;
+import org.walkmod.patches.diff.DiffEngine;
+
+public class PatchesTest {
+
+	private static String randomText(Random random) {
+		StringBuilder sb = new StringBuilder();
+		int lines = random.nextInt(12);
+		for (int i = 0; i < lines; i++) {
+			// few distinct lines, so that the hunks match at several positions
+			sb.append((char) ('a' + random.nextInt(4))).append('\n');
+		}
+		return sb.toString();
+	}
+
+	private static void assertRoundTrip(String original, String revised, DiffEngine engine) throws Exception {
+		String patch = Patches.generatePatch(original, revised, "x", null, engine);
+		String expected = revised.endsWith("\n") ? revised.substring(0, revised.length() - 1) : revised;
+		Assert.assertEquals(original + "\n" + patch, expected, Patches.applyPatch(original, patch));
+	}
+
+	@Test
+	public void testGeneratedPatchesCanBeApplied() throws Exception {
+		Random random = new Random(42);
+		for (int contextSize : new int[] { 0, 1, 4 }) {
+			DiffEngine engine = new DiffEngine(DiffAlgorithm.MYERS, contextSize);
+			for (int i = 0; i < 2000; i++) {
+				assertRoundTrip(randomText(random), randomText(random), engine);
+			}
+		}
+	}
+
+	@Test
+	public void testEmptyTexts() throws Exception {
+		for (int contextSize : new int[] { 0, 4 }) {
+			DiffEngine engine = new DiffEngine(DiffAlgorithm.MYERS, contextSize);
+			Assert.assertEquals("--- a/x\n+++ b/x\n@@ -0,0 +1,2 @@\n+a\n+b",
+					Patches.generatePatch("", "a\nb\n", "x", null, engine).replace('\\', '/'));
+			assertRoundTrip("", "a\nb\n", engine);
+			assertRoundTrip("a\nb\n", "", engine);
+		}
+	}
+}
@@ -0,0 +1,89 @@
+package org.walkmod.patches.diff;
+
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.walkmod.util.LineRanges;
+
+public class DiffEngineTest {
+
+	private static final String ORIGINAL = "a\nb\nc\nd\ne\nf\ng\nh\ni\nj\nk\nl\nm\n";
+
+	private static final String REVISED = "a\nB\nc\nd\ne\nf\ng\nh\ni\nj\nk\nL\nm\nn\n";
+
+	@Test
+	public void testEqualTextsHaveNoPatch() {
+		Assert.assertEquals("", new DiffEngine().generatePatch(ORIGINAL, ORIGINAL, "a/x", "b/x", null));
+	}
+
+	@Test
+	public void testUnifiedDiff() {
+		String patch = new DiffEngine(DiffAlgorithm.MYERS, 2).generatePatch(ORIGINAL, REVISED, "a/x", "b/x", null);
+		Assert.assertEquals("--- a/x\n+++ b/x\n@@ -1,4 +1,4 @@\n a\n-b\n+B\n c\n d\n"
+				+ "@@ -10,4 +10,5 @@\n j\n k\n-l\n+L\n m\n+n", patch);
+	}
+
+	@Test
+	public void testChangedLines() {
+		String patch = new DiffEngine(DiffAlgorithm.MYERS, 2).generatePatch(ORIGINAL, REVISED, "a/x", "b/x",
+				new LineRanges(2, 2));
+		Assert.assertEquals("--- a/x\n+++ b/x\n@@ -1,4 +1,4 @@\n a\n-b\n+B\n c\n d", patch);
+	}
+
+	@Test
+	public void testFilteredChangesDoNotShiftTheRevisedLines() {
+		String revised = "x1\nx2\nx3\nx4\nx5\nx6\nx7\nx8\n" + ORIGINAL.replace("l\n", "L\n");
+		DiffEngine engine = new DiffEngine(DiffAlgorithm.MYERS, 2);
+		String patch = engine.generatePatch(ORIGINAL, revised, "a/x", "b/x", new LineRanges(12, 12));
+		Assert.assertEquals("--- a/x\n+++ b/x\n@@ -10,4 +10,4 @@\n j\n k\n-l\n+L\n m", patch);
+		List<Hunk> hunks = engine.generateHunks(ORIGINAL, revised, "a/x", "b/x", new LineRanges(12, 12));
+		Assert.assertEquals(1, hunks.size());
+		Assert.assertEquals(patch, hunks.get(0).getDiff());
+
+		// the kept edits before a hunk shift it
+		revised = "a\nb\nb2\nb3\nc\nd\ne\nf\ng\nh\ni\nj\nk\nL\nm\nx\n";
+		patch = new DiffEngine(DiffAlgorithm.MYERS, 0).generatePatch(ORIGINAL, revised, "a/x", "b/x",
+				new LineRanges(1, 12));
+		Assert.assertEquals("--- a/x\n+++ b/x\n@@ -2,0 +3,2 @@\n+b2\n+b3\n@@ -12,1 +14,1 @@\n-l\n+L", patch);
+	}
+
+	@Test
+	public void testEmptyRangesStartAtThePreviousLine() {
+		DiffEngine engine = new DiffEngine(DiffAlgorithm.MYERS, 0);
+		Assert.assertEquals("--- a/x\n+++ b/x\n@@ -2,1 +1,0 @@\n-b", engine.generatePatch(ORIGINAL,
+				ORIGINAL.replace("b\n", ""), "a/x", "b/x", null));
+		Assert.assertEquals("--- a/x\n+++ b/x\n@@ -1,0 +2,1 @@\n+b2", engine.generatePatch(ORIGINAL,
+				ORIGINAL.replace("a\n", "a\nb2\n"), "a/x", "b/x", null));
+	}
+
+	@Test
+	public void testAdjacentChangesAreMergedIntoTheSameHunk() {
+		List<Hunk> hunks = new DiffEngine(DiffAlgorithm.MYERS, 2).generateHunks(ORIGINAL, REVISED, "a/x", "b/x", null);
+		Assert.assertEquals(2, hunks.size());
+		Assert.assertEquals("--- a/x\n+++ b/x\n@@ -1,4 +1,4 @@\n a\n-b\n+B\n c\n d", hunks.get(0).getDiff());
+		Assert.assertEquals(2, hunks.get(0).getBeginLine());
+		Assert.assertEquals(2, hunks.get(0).getEndLine());
+		Assert.assertEquals(1, hunks.get(0).getEdits());
+		Assert.assertEquals("--- a/x\n+++ b/x\n@@ -10,4 +10,5 @@\n j\n k\n-l\n+L\n m\n+n", hunks.get(1).getDiff());
+		Assert.assertEquals(12, hunks.get(1).getBeginLine());
+		Assert.assertEquals(13, hunks.get(1).getEndLine());
+		Assert.assertEquals(2, hunks.get(1).getEdits());
+
+		hunks = new DiffEngine(DiffAlgorithm.MYERS, 5).generateHunks(ORIGINAL, REVISED, "a/x", "b/x", null);
+		Assert.assertEquals(1, hunks.size());
+		Assert.assertEquals(3, hunks.get(0).getEdits());
+	}
+
+	@Test
+	public void testAlgorithmsFindTheSameChanges() {
+		String original = "x\ny\n{\n}\nz\n{\n}\nw\n";
+		String revised = "x\n{\n}\nz\nt\n{\n}\nw\n";
+		for (String name : new String[] { DiffAlgorithm.MYERS, DiffAlgorithm.HISTOGRAM, DiffAlgorithm.PATIENCE }) {
+			List<Edit> edits = new DiffEngine(name, 4).diff(new LineSequence(original), new LineSequence(revised));
+			Assert.assertEquals(name, 2, edits.size());
+			Assert.assertEquals(name, new Edit(1, 2, 1, 1), edits.get(0));
+			Assert.assertEquals(name, new Edit(5, 5, 4, 5), edits.get(1));
+		}
+	}
+}
@@ -0,0 +1,134 @@
+package org.walkmod.util;
+
+import java.io.File;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class FileFormatTest {
+
+	private static FileFormat detect(byte[] content) throws Exception {
+		return FileFormat.detect(content, content.length, "ISO-8859-1");
+	}
+
+	private static byte[] concat(byte[] prefix, byte[] content) {
+		byte[] result = new byte[prefix.length + content.length];
+		System.arraycopy(prefix, 0, result, 0, prefix.length);
+		System.arraycopy(content, 0, result, prefix.length, content.length);
+		return result;
+	}
+
+	@Test
+	public void testByteOrderMarks() throws Exception {
+		byte[] utf8 = concat(new byte[] { (byte) 0xEF, (byte) 0xBB, (byte) 0xBF }, "a\nb".getBytes("UTF-8"));
+		FileFormat format = detect(utf8);
+		Assert.assertEquals("UTF-8", format.getEncoding());
+		Assert.assertTrue(format.hasBom());
+		Assert.assertEquals("\n", format.getLineEnding());
+		Assert.assertEquals(3, FileFormat.getBomLength(utf8, utf8.length));
+
+		byte[] utf16be = concat(new byte[] { (byte) 0xFE, (byte) 0xFF }, "a\r\nb".getBytes("UTF-16BE"));
+		format = detect(utf16be);
+		Assert.assertEquals("UTF-16BE", format.getEncoding());
+		Assert.assertTrue(format.hasBom());
+		Assert.assertEquals("\r\n", format.getLineEnding());
+		Assert.assertEquals(2, FileFormat.getBomLength(utf16be, utf16be.length));
+
+		byte[] utf16le = concat(new byte[] { (byte) 0xFF, (byte) 0xFE }, "a\rb".getBytes("UTF-16LE"));
+		format = detect(utf16le);
+		Assert.assertEquals("UTF-16LE", format.getEncoding());
+		Assert.assertEquals("\r", format.getLineEnding());
+		Assert.assertEquals(2, FileFormat.getBomLength(utf16le, utf16le.length));
+
+		byte[] utf32le = concat(new byte[] { (byte) 0xFF, (byte) 0xFE, 0, 0 }, "a\nb".getBytes("UTF-32LE"));
+		format = detect(utf32le);
+		Assert.assertEquals("UTF-32LE", format.getEncoding());
+		Assert.assertEquals("\n", format.getLineEnding());
+		Assert.assertEquals(4, FileFormat.getBomLength(utf32le, utf32le.length));
+
+		byte[] utf32be = concat(new byte[] { 0, 0, (byte) 0xFE, (byte) 0xFF }, "a\r\nb".getBytes("UTF-32BE"));
+		format = detect(utf32be);
+		Assert.assertEquals("UTF-32BE", format.getEncoding());
+		Assert.assertEquals("\r\n", format.getLineEnding());
+		Assert.assertEquals(4, FileFormat.getBomLength(utf32be, utf32be.length));
+	}
+
+	@Test
+	public void testDefaultEncodingWithoutByteOrderMark() throws Exception {
+		byte[] content = "caf\u00e9\n".getBytes("ISO-8859-1");
+		FileFormat format = detect(content);
+		Assert.assertEquals("ISO-8859-1", format.getEncoding());
+		Assert.assertFalse(format.hasBom());
+		Assert.assertEquals(0, FileFormat.getBomLength(content, content.length));
+		// a byte order mark out of the given length is ignored
+		byte[] utf8 = new byte[] { (byte) 0xEF, (byte) 0xBB, (byte) 0xBF };
+		Assert.assertEquals(0, FileFormat.getBomLength(utf8, 2));
+	}
+
+	@Test
+	public void testLineEndings() throws Exception {
+		Assert.assertEquals("\n", detect("a\nb\r\n".getBytes("UTF-8")).getLineEnding());
+		Assert.assertEquals("\r\n", detect("a\r\nb\n".getBytes("UTF-8")).getLineEnding());
+		Assert.assertEquals("\r", detect("a\rb\r\n".getBytes("UTF-8")).getLineEnding());
+		Assert.assertNull(detect("a single line".getBytes("UTF-8")).getLineEnding());
+		Assert.assertEquals('\n', detect("a single line".getBytes("UTF-8")).getEndLineChar());
+		Assert.assertEquals('\r', detect("a\rb".getBytes("UTF-8")).getEndLineChar());
+		Assert.assertEquals('\r', detect("a\r\nb".getBytes("UTF-8")).getEndLineChar());
+	}
+
+	@Test
+	public void testCarriageReturnAtTheEndOfTheHead() throws Exception {
+		byte[] content = "a\r\nb".getBytes("UTF-8");
+		// the \n is out of the head
+		Assert.assertEquals("\r\n", FileFormat.detect(content, 2, "UTF-8").getLineEnding());
+	}
+
+	@Test
+	public void testDetectFile() throws Exception {
+		File file = new File("src/test/resources/file-format/Foo.java");
+		file.getParentFile().mkdirs();
+		try {
+			StringBuilder text = new StringBuilder();
+			for (int i = 0; i < FileFormat.HEAD_SIZE; i++) {
+				text.append('a');
+			}
+			// the line ending out of the head is not detected
+			text.append("\r\n");
+			FileUtils.writeStringToFile(file, text.toString(), "UTF-8");
+			Assert.assertNull(FileFormat.detect(file, "UTF-8").getLineEnding());
+
+			FileUtils.writeByteArrayToFile(file,
+					concat(new byte[] { (byte) 0xEF, (byte) 0xBB, (byte) 0xBF }, "a\r\nb".getBytes("UTF-8")));
+			FileFormat format = FileFormat.detect(file, "ISO-8859-1");
+			Assert.assertEquals("UTF-8", format.getEncoding());
+			Assert.assertTrue(format.hasBom());
+			Assert.assertEquals("\r\n", format.getLineEnding());
+		} finally {
+			FileUtils.deleteDirectory(file.getParentFile());
+		}
+	}
+
+	@Test
+	public void testContentHashIsOnlyValidWhileTheFileIsNotModified() throws Exception {
+		File file = new File("src/test/resources/file-format/Foo.java");
+		file.getParentFile().mkdirs();
+		try {
+			FileUtils.writeStringToFile(file, "a\nb", "UTF-8");
+			FileFormat format = new FileFormat("\n", "UTF-8", false);
+			Assert.assertNull(format.getContentHash(file));
+
+			FileFormat read = format.withContentHash(file, "hash");
+			Assert.assertEquals("hash", read.getContentHash(file));
+			Assert.assertEquals("\n", read.getLineEnding());
+			Assert.assertEquals("UTF-8", read.getEncoding());
+			Assert.assertNull(read.withoutContentHash().getContentHash(file));
+			Assert.assertSame(format, format.withoutContentHash());
+
+			FileUtils.writeStringToFile(file, "a\nbc", "UTF-8");
+			Assert.assertNull(read.getContentHash(file));
+		} finally {
+			FileUtils.deleteDirectory(file.getParentFile());
+		}
+	}
+}
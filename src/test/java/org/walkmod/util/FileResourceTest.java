@@ -135,4 +135,19 @@ public class FileResourceTest {
 		assertThat(it.hasNext(), is(false));
 	}
 
+	@Test
+	public void testExcludedDirectoriesArePruned() throws Exception {
+		FileResource fr = new FileResource();
+		fr.setPath(SOURCES_PATH);
+		fr.setExcludes(new String[] { "org/walkmod/util" });
+		Iterator<File> it = fr.iterator();
+		String osDependentPath = TestUtils.buildPath("org", "walkmod", "util");
+		int count = 0;
+		while (it.hasNext()) {
+			assertThat(it.next().getAbsolutePath(), not(containsString(osDependentPath)));
+			count++;
+		}
+		assertThat(count, greaterThan(0));
+	}
+
 }
@@ -0,0 +1,71 @@
+package org.walkmod.util;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class FileWatcherTest {
+
+	@Test
+	public void testCreatedAndModifiedFilesAreReported() throws Exception {
+		File dir = new File("src/test/resources/watch").getAbsoluteFile();
+		FileUtils.deleteDirectory(dir);
+		dir.mkdirs();
+		try {
+			File foo = new File(dir, "Foo.java");
+			FileUtils.write(foo, "public class Foo {}");
+			File hidden = new File(dir, ".git");
+			hidden.mkdirs();
+
+			FileWatcher watcher = new FileWatcher(Collections.singletonList(dir));
+			Assert.assertTrue(watcher.poll().isEmpty());
+
+			File bar = new File(dir, "Bar.java");
+			FileUtils.write(bar, "public class Bar {}");
+			FileUtils.write(foo, "public class Foo { int bar; }");
+			FileUtils.write(new File(hidden, "index"), "ignored");
+			Set<File> changes = watcher.poll();
+			Assert.assertEquals(2, changes.size());
+			Assert.assertTrue(changes.contains(foo));
+			Assert.assertTrue(changes.contains(bar));
+			Assert.assertTrue(watcher.poll().isEmpty());
+
+			FileUtils.write(foo, "public class Foo { int bar = 1; }");
+			watcher.update(Collections.singletonList(foo));
+			Assert.assertTrue(watcher.poll().isEmpty());
+		} finally {
+			FileUtils.deleteDirectory(dir);
+		}
+	}
+
+	@Test
+	public void testExcludedFilesAreNotReported() throws Exception {
+		File dir = new File("src/test/resources/watch-excludes").getAbsoluteFile();
+		FileUtils.deleteDirectory(dir);
+		dir.mkdirs();
+		try {
+			File target = new File(dir, "target");
+			target.mkdirs();
+			Map<File, PathPatternMatcher> roots = new HashMap<File, PathPatternMatcher>();
+			roots.put(dir, new PathPatternMatcher(dir.getAbsolutePath(), new String[] { "*.java" },
+					new String[] { "target" }));
+			FileWatcher watcher = new FileWatcher(roots);
+
+			File foo = new File(dir, "Foo.java");
+			FileUtils.write(foo, "public class Foo {}");
+			FileUtils.write(new File(dir, "notes.txt"), "ignored");
+			FileUtils.write(new File(target, "Foo.java"), "ignored");
+			Set<File> changes = watcher.poll();
+			Assert.assertEquals(1, changes.size());
+			Assert.assertTrue(changes.contains(foo));
+		} finally {
+			FileUtils.deleteDirectory(dir);
+		}
+	}
+}
@@ -0,0 +1,77 @@
+package org.walkmod.util;
+
+import java.io.File;
+import java.util.Collections;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Test;
+import org.walkmod.writers.Summary;
+
+public class IncrementalManifestTest {
+
+	@Test
+	public void testUnchangedFilesAreSkipped() throws Exception {
+		File dir = new File("src/test/resources/incremental");
+		FileUtils.deleteDirectory(dir);
+		dir.mkdirs();
+		try {
+			File source = new File(dir, "Foo.java");
+			FileUtils.write(source, "public class Foo {}");
+			File manifestFile = IncrementalManifest.getManifestFile(dir, "default");
+
+			IncrementalManifest manifest = new IncrementalManifest(manifestFile, "v1");
+			Assert.assertFalse(manifest.isUnchanged(source));
+			manifest.save(Collections.<File> emptyList(), null);
+
+			manifest = new IncrementalManifest(manifestFile, "v1");
+			Assert.assertTrue(manifest.isUnchanged(source));
+
+			Assert.assertFalse(new IncrementalManifest(manifestFile, "v2").isUnchanged(source));
+
+			FileUtils.write(source, "public class Foo { int bar; }");
+			Assert.assertFalse(manifest.isUnchanged(source));
+			manifest.save(Collections.singletonList(source), null);
+			Assert.assertFalse(new IncrementalManifest(manifestFile, "v1").isUnchanged(source));
+		} finally {
+			FileUtils.deleteDirectory(dir);
+		}
+	}
+
+	@Test
+	public void testReportedFilesAreNotSkipped() throws Exception {
+		File dir = new File("src/test/resources/incremental-reported");
+		FileUtils.deleteDirectory(dir);
+		dir.mkdirs();
+		try {
+			File clean = new File(dir, "Foo.java");
+			FileUtils.write(clean, "public class Foo {}");
+			File reported = new File(dir, "Bar.java");
+			FileUtils.write(reported, "public class Bar {}");
+			File manifestFile = IncrementalManifest.getManifestFile(dir, "default");
+
+			// a finding that does not lead to a write
+			IncrementalManifest manifest = new IncrementalManifest(manifestFile, "v1");
+			Assert.assertFalse(manifest.isUnchanged(clean));
+			Assert.assertFalse(manifest.isUnchanged(reported));
+			manifest.save(Collections.<File> emptyList(), Collections.singleton(reported));
+
+			manifest = new IncrementalManifest(manifestFile, "v1");
+			Assert.assertTrue(manifest.isUnchanged(clean));
+			Assert.assertFalse(manifest.isUnchanged(reported));
+
+			// the check mode reports all the visited files as written, so only the findings are passed
+			Summary summary = new Summary();
+			summary.addFile(reported);
+			summary.addFile(clean);
+			summary.addReportedFile(reported);
+			manifest.save(null, summary.getReportedFiles());
+
+			manifest = new IncrementalManifest(manifestFile, "v1");
+			Assert.assertTrue(manifest.isUnchanged(clean));
+			Assert.assertFalse(manifest.isUnchanged(reported));
+		} finally {
+			FileUtils.deleteDirectory(dir);
+		}
+	}
+}
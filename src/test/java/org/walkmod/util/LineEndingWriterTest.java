@@ -0,0 +1,75 @@
+package org.walkmod.util;
+
+import java.io.StringWriter;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LineEndingWriterTest {
+
+	private String translate(String endLine, String... parts) throws Exception {
+		StringWriter result = new StringWriter();
+		LineEndingWriter writer = new LineEndingWriter(result, endLine);
+		for (String part : parts) {
+			writer.write(part);
+		}
+		writer.flush();
+		return result.toString();
+	}
+
+	@Test
+	public void testLineEndingsAreTranslated() throws Exception {
+		String text = "a\nb\r\nc\rd";
+		Assert.assertEquals("a\nb\nc\nd", translate("\n", text));
+		Assert.assertEquals("a\r\nb\r\nc\r\nd", translate("\r\n", text));
+		Assert.assertEquals("a\rb\rc\rd", translate("\r", text));
+		Assert.assertEquals("\r\n\r\n", translate("\r\n", "\n\r"));
+	}
+
+	@Test
+	public void testLineEndingsSplitAcrossWrites() throws Exception {
+		Assert.assertEquals("a\nb", translate("\n", "a\r", "\nb"));
+		Assert.assertEquals("a\r\nb", translate("\r\n", "a\r", "\nb"));
+		Assert.assertEquals("a\r\n\r\nb", translate("\r\n", "a\r", "\r", "\nb"));
+		Assert.assertEquals("a\n\nb", translate("\n", "a\r", "", "\n\nb"));
+
+		StringWriter result = new StringWriter();
+		LineEndingWriter writer = new LineEndingWriter(result, "\n");
+		String text = "a\r\nb\r\rc\n";
+		for (int i = 0; i < text.length(); i++) {
+			writer.write(text.charAt(i));
+		}
+		Assert.assertEquals("a\nb\n\nc\n", result.toString());
+	}
+
+	@Test
+	public void testLongContents() throws Exception {
+		StringBuilder text = new StringBuilder();
+		StringBuilder expected = new StringBuilder();
+		for (int i = 0; i < 2000; i++) {
+			text.append("line ").append(i).append("\r\n");
+			expected.append("line ").append(i).append('\n');
+		}
+		Assert.assertEquals(expected.toString(), translate("\n", text.toString()));
+	}
+
+	@Test
+	public void testTheLastLineIsTerminated() throws Exception {
+		StringWriter result = new StringWriter();
+		LineEndingWriter writer = new LineEndingWriter(result, "\r\n");
+		writer.terminateLastLine();
+		Assert.assertTrue(writer.isEmpty());
+		Assert.assertEquals("", result.toString());
+
+		writer.write("a\nb");
+		writer.terminateLastLine();
+		writer.terminateLastLine();
+		Assert.assertEquals("a\r\nb\r\n", result.toString());
+
+		result = new StringWriter();
+		writer = new LineEndingWriter(result, "\r\n");
+		writer.write("a\r");
+		writer.terminateLastLine();
+		Assert.assertEquals("a\r\n", result.toString());
+	}
+}
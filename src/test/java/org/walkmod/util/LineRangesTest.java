@@ -0,0 +1,36 @@
+package org.walkmod.util;
+
+import java.io.StringReader;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LineRangesTest {
+
+	@Test
+	public void testRangesAreMerged() {
+		LineRanges ranges = new LineRanges();
+		ranges.add(10, 12);
+		ranges.add(1, 2);
+		ranges.add(13, 15);
+		ranges.add(3, 3);
+		Assert.assertEquals("1-3,10-15", ranges.toString());
+		Assert.assertTrue(ranges.contains(11));
+		Assert.assertFalse(ranges.contains(4));
+		Assert.assertTrue(ranges.intersects(5, 10));
+		Assert.assertFalse(ranges.intersects(4, 9));
+		Assert.assertFalse(ranges.intersects(16, 20));
+	}
+
+	@Test
+	public void testParseUnifiedDiff() throws Exception {
+		String diff = "diff --git a/src/Foo.java b/src/Foo.java\n" + "--- a/src/Foo.java\n" + "+++ b/src/Foo.java\n"
+				+ "@@ -1,3 +1,5 @@\n" + " package foo;\n" + "-class Foo {\n" + "+public class Foo {\n" + "+\n"
+				+ "   int a;\n" + "+++ b;\n" + "@@ -20,2 +21,2 @@\n" + " }\n" + "-}\n" + "+ }\n"
+				+ "--- a/src/Bar.java\n" + "+++ /dev/null\n" + "@@ -1 +0,0 @@\n" + "-class Bar {}\n";
+		Map<String, LineRanges> result = LineRanges.parseUnifiedDiff(new StringReader(diff));
+		Assert.assertEquals(1, result.size());
+		Assert.assertEquals("2-3,5-5,22-22", result.get("src/Foo.java").toString());
+	}
+}
@@ -0,0 +1,86 @@
+package org.walkmod.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PathPatternMatcherTest {
+
+	@Test
+	public void testWithoutRules() {
+		PathPatternMatcher matcher = new PathPatternMatcher("/base", null, null);
+		Assert.assertFalse(matcher.hasRules());
+		Assert.assertTrue(matcher.matches("/base/src/Foo.java"));
+		Assert.assertFalse(matcher.canPrune("/base/src"));
+	}
+
+	@Test
+	public void testLiteralIncludes() {
+		PathPatternMatcher matcher = new PathPatternMatcher("/base", new String[] { "src/main", "pom.xml" }, null);
+		Assert.assertTrue(matcher.matches("/base/src/main/Foo.java"));
+		Assert.assertTrue(matcher.matches("/base/pom.xml"));
+		Assert.assertFalse(matcher.matches("/base/src/test/FooTest.java"));
+		Assert.assertFalse(matcher.matches("/base/src/mainly/Foo.java"));
+		Assert.assertFalse(matcher.canPrune("/base/src"));
+		Assert.assertFalse(matcher.canPrune("/base/src/main/foo"));
+		Assert.assertTrue(matcher.canPrune("/base/src/test"));
+	}
+
+	@Test
+	public void testLiteralExcludes() {
+		PathPatternMatcher matcher = new PathPatternMatcher("/base", null, new String[] { "target/**",
+				"src/Bar.java" });
+		Assert.assertFalse(matcher.matches("/base/target/classes/Foo.class"));
+		Assert.assertFalse(matcher.matches("/base/src/Bar.java"));
+		Assert.assertTrue(matcher.matches("/base/src/Foo.java"));
+		Assert.assertTrue(matcher.matches("/base/targets/Foo.java"));
+		Assert.assertTrue(matcher.canPrune("/base/target"));
+		Assert.assertFalse(matcher.canPrune("/base/src"));
+	}
+
+	@Test
+	public void testWildcardIncludes() {
+		PathPatternMatcher matcher = new PathPatternMatcher("/base", new String[] { "src/**/*.java" }, null);
+		Assert.assertTrue(matcher.matches("/base/src/foo/Foo.java"));
+		Assert.assertFalse(matcher.matches("/base/src/foo/Foo.txt"));
+		Assert.assertFalse(matcher.matches("/base/doc/Foo.java"));
+		Assert.assertFalse(matcher.canPrune("/base/src/foo"));
+		Assert.assertTrue(matcher.canPrune("/base/doc"));
+	}
+
+	@Test
+	public void testWildcardExcludesSelectTheFilesOfTheDirectories() {
+		PathPatternMatcher matcher = new PathPatternMatcher("/base", null, new String[] { "**/generated/**",
+				"**/*.txt" });
+		Assert.assertFalse(matcher.matches("/base/x/generated/Foo.java"));
+		Assert.assertFalse(matcher.matches("/base/x/generated/foo/Foo.java"));
+		Assert.assertFalse(matcher.matches("/base/x/Foo.txt"));
+		Assert.assertTrue(matcher.matches("/base/x/Foo.java"));
+		Assert.assertTrue(matcher.matches("/base/x/generatedFoo.java"));
+		Assert.assertTrue(matcher.canPrune("/base/x/generated"));
+		Assert.assertFalse(matcher.canPrune("/base/x"));
+	}
+
+	@Test
+	public void testAbsolutePatternsAndSeparators() {
+		PathPatternMatcher matcher = new PathPatternMatcher("/base", new String[] { "/base/src\\" },
+				new String[] { "/base/src/gen?" });
+		Assert.assertTrue(matcher.matches("/base/src/Foo.java"));
+		Assert.assertFalse(matcher.matches("/base/src/gen1/Foo.java"));
+		Assert.assertTrue(matcher.canPrune("/base/src/gen1"));
+	}
+
+	@Test
+	public void testPrefixesSharingCharacters() {
+		PathPatternMatcher matcher = new PathPatternMatcher("/base", new String[] { "src/main", "src/mainx/*.java",
+				"src/ma" }, null);
+		Assert.assertFalse(matcher.canPrune("/base"));
+		Assert.assertFalse(matcher.canPrune("/base/src"));
+		Assert.assertFalse(matcher.canPrune("/base/src/ma/foo"));
+		Assert.assertFalse(matcher.canPrune("/base/src/main/foo"));
+		Assert.assertFalse(matcher.canPrune("/base/src/mainx"));
+		Assert.assertTrue(matcher.canPrune("/base/src/m"));
+		Assert.assertTrue(matcher.canPrune("/base/src/mai"));
+		Assert.assertTrue(matcher.canPrune("/base/src/mainy"));
+		Assert.assertTrue(matcher.canPrune("/base/test"));
+	}
+}
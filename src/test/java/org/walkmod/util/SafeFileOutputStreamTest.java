@@ -0,0 +1,135 @@
+package org.walkmod.util;
+
+import java.io.File;
+import java.io.OutputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SafeFileOutputStreamTest {
+
+	private File createDirectory(String name) throws Exception {
+		File dir = new File("src/test/resources/" + name).getAbsoluteFile();
+		FileUtils.deleteDirectory(dir);
+		dir.mkdirs();
+		return dir;
+	}
+
+	@Test
+	public void testAtomicWritesReplaceTheTargetWhenClosed() throws Exception {
+		File dir = createDirectory("safe-atomic");
+		try {
+			File target = new File(dir, "Foo.java");
+			FileUtils.write(target, "old content");
+			OutputStream os = new SafeFileOutputStream(target, true, false);
+			os.write("new content".getBytes("UTF-8"));
+			os.flush();
+			Assert.assertEquals("old content", FileUtils.readFileToString(target));
+			Assert.assertEquals(2, dir.list().length);
+			os.close();
+			Assert.assertEquals("new content", FileUtils.readFileToString(target));
+			Assert.assertEquals(1, dir.list().length);
+		} finally {
+			FileUtils.deleteDirectory(dir);
+		}
+	}
+
+	@Test
+	public void testSyncedWrites() throws Exception {
+		File dir = createDirectory("safe-sync");
+		try {
+			File target = new File(dir, "Foo.java");
+			FileUtils.write(target, "old content");
+			OutputStream os = new SafeFileOutputStream(target, false, true);
+			os.write("new".getBytes("UTF-8"));
+			os.close();
+			os.close();
+			Assert.assertEquals("new", FileUtils.readFileToString(target));
+
+			os = new SafeFileOutputStream(target, true, true);
+			os.write("newer".getBytes("UTF-8"));
+			os.close();
+			Assert.assertEquals("newer", FileUtils.readFileToString(target));
+			Assert.assertEquals(1, dir.list().length);
+		} finally {
+			FileUtils.deleteDirectory(dir);
+		}
+	}
+
+	@Test
+	public void testDeferredReplacements() throws Exception {
+		File dir = createDirectory("safe-deferred");
+		try {
+			File foo = new File(dir, "Foo.java");
+			FileUtils.write(foo, "old foo");
+			File bar = new File(dir, "Bar.java");
+			FileUtils.write(bar, "old bar");
+
+			SafeFileOutputStream fooStream = new SafeFileOutputStream(foo, true, false, true);
+			fooStream.write("new foo".getBytes("UTF-8"));
+			fooStream.close();
+			SafeFileOutputStream barStream = new SafeFileOutputStream(bar, true, false, true);
+			barStream.write("new bar".getBytes("UTF-8"));
+			barStream.close();
+			Assert.assertTrue(fooStream.isPending());
+			Assert.assertEquals("old foo", FileUtils.readFileToString(foo));
+
+			fooStream.syncPending();
+			fooStream.commit();
+			Assert.assertFalse(fooStream.isPending());
+			Assert.assertEquals("new foo", FileUtils.readFileToString(foo));
+
+			barStream.discard();
+			Assert.assertFalse(barStream.isPending());
+			Assert.assertEquals("old bar", FileUtils.readFileToString(bar));
+			Assert.assertEquals(2, dir.list().length);
+		} finally {
+			FileUtils.deleteDirectory(dir);
+		}
+	}
+
+	@Test
+	public void testOnlyAtomicReplacementsCanBeDeferred() throws Exception {
+		File target = new File("src/test/resources/safe-invalid.txt");
+		try {
+			new SafeFileOutputStream(target, false, false, true);
+			Assert.fail("A non atomic replacement has been deferred");
+		} catch (IllegalArgumentException e) {
+			Assert.assertFalse(target.exists());
+		}
+	}
+
+	@Test
+	public void testUnchangedTargetsAreKept() throws Exception {
+		File dir = createDirectory("safe-unchanged");
+		try {
+			File target = new File(dir, "Foo.java");
+			FileUtils.write(target, "content");
+			target.setLastModified(1000000000L);
+
+			SafeFileOutputStream os = new SafeFileOutputStream(target, false, false, false, true);
+			os.write("content".getBytes("UTF-8"));
+			os.close();
+			Assert.assertFalse(os.isChanged());
+			Assert.assertEquals(1000000000L, target.lastModified());
+			Assert.assertEquals(1, dir.list().length);
+
+			os = new SafeFileOutputStream(target, true, false, false, true);
+			os.setCurrentHash(ContentHash.of("content".getBytes("UTF-8")));
+			os.write("content".getBytes("UTF-8"));
+			os.close();
+			Assert.assertFalse(os.isChanged());
+			Assert.assertEquals(1000000000L, target.lastModified());
+
+			os = new SafeFileOutputStream(target, false, false, false, true);
+			os.write("changed".getBytes("UTF-8"));
+			os.close();
+			Assert.assertTrue(os.isChanged());
+			Assert.assertEquals("changed", FileUtils.readFileToString(target));
+			Assert.assertEquals(1, dir.list().length);
+		} finally {
+			FileUtils.deleteDirectory(dir);
+		}
+	}
+}
@@ -0,0 +1,202 @@
+package org.walkmod.walkers;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Test;
+import org.walkmod.Resource;
+import org.walkmod.conf.entities.TransformationConfig;
+import org.walkmod.conf.entities.impl.ChainConfigImpl;
+import org.walkmod.conf.entities.impl.WalkerConfigImpl;
+import org.walkmod.util.ContentHash;
+import org.walkmod.util.FileFormat;
+
+public class AbstractWalkerTest {
+
+	/**
+	 * Walker of text files that does not visit the files starting with "skip".
+	 */
+	public static class TextWalker extends AbstractWalker {
+
+		private final List<Object> texts = new LinkedList<Object>();
+
+		private final List<VisitorContext> contexts = new LinkedList<VisitorContext>();
+
+		public TextWalker() {
+			WalkerConfigImpl wc = new WalkerConfigImpl();
+			wc.setTransformations(new LinkedList<TransformationConfig>());
+			ChainConfigImpl cc = new ChainConfigImpl();
+			cc.setWalkerConfig(wc);
+			setChainConfig(cc);
+			setVisitors(new LinkedList<Object>());
+		}
+
+		public void accept(File file) throws Exception {
+			String text = readFile(file, "ISO-8859-1");
+			if (!text.startsWith("skip")) {
+				visitFile(file, text);
+			}
+		}
+
+		public void visitFile(File file, String text) throws Exception {
+			VisitorContext vc = new VisitorContext(getChainConfig());
+			vc.put(ORIGINAL_FILE_KEY, file);
+			visit(text, vc);
+		}
+
+		@Override
+		protected void write(Object element, VisitorContext vc) throws Exception {
+			texts.add(element);
+			contexts.add(vc);
+		}
+
+		@Override
+		protected Object getSourceNode(Object targetNode) {
+			return targetNode;
+		}
+
+		@Override
+		protected String getLocation(VisitorContext ctx) {
+			return null;
+		}
+
+		@Override
+		public void setReportChanges(boolean reportChanges) {
+		}
+
+		@Override
+		public boolean reportChanges() {
+			return false;
+		}
+
+		@Override
+		public void setParser(Parser<?> parser) {
+		}
+
+		@Override
+		public int getNumModifications() {
+			return 0;
+		}
+
+		@Override
+		public int getNumAdditions() {
+			return 0;
+		}
+
+		@Override
+		public int getNumDeletions() {
+			return 0;
+		}
+
+		@Override
+		public Parser<?> getParser() {
+			return null;
+		}
+	}
+
+	private static Resource<File> resource(final File... files) {
+		return new Resource<File>() {
+
+			@Override
+			public Iterator<File> iterator() {
+				List<File> list = new ArrayList<File>();
+				for (File file : files) {
+					list.add(file);
+				}
+				return list.iterator();
+			}
+
+			@Override
+			public String getNearestNamespace(Object element, String regexSeparator) {
+				return null;
+			}
+
+			@Override
+			public String getOwnerNamespace(Object element, String regexSeparator) {
+				return null;
+			}
+		};
+	}
+
+	@Test
+	public void testTheFormatOfTheReadFileIsPutIntoTheContext() throws Exception {
+		File dir = new File("src/test/resources/walker-format");
+		dir.mkdirs();
+		try {
+			File file = new File(dir, "Foo.txt");
+			byte[] bom = new byte[] { (byte) 0xFE, (byte) 0xFF };
+			byte[] text = "a\r\nb".getBytes("UTF-16BE");
+			byte[] content = new byte[bom.length + text.length];
+			System.arraycopy(bom, 0, content, 0, bom.length);
+			System.arraycopy(text, 0, content, bom.length, text.length);
+			FileUtils.writeByteArrayToFile(file, content);
+
+			TextWalker walker = new TextWalker();
+			walker.setResource(resource(file));
+			walker.execute();
+
+			Assert.assertEquals(1, walker.texts.size());
+			// the byte order mark is not part of the text
+			Assert.assertEquals("a\r\nb", walker.texts.get(0));
+			FileFormat format = walker.contexts.get(0).getOriginalFileFormat();
+			Assert.assertNotNull(format);
+			Assert.assertEquals("UTF-16BE", format.getEncoding());
+			Assert.assertTrue(format.hasBom());
+			Assert.assertEquals("\r\n", format.getLineEnding());
+			Assert.assertEquals(ContentHash.of(content), format.getContentHash(file));
+		} finally {
+			FileUtils.deleteDirectory(dir);
+		}
+	}
+
+	@Test
+	public void testTheFormatOfTheFilesThatAreNotVisitedIsForgotten() throws Exception {
+		File dir = new File("src/test/resources/walker-skip");
+		dir.mkdirs();
+		try {
+			File skipped = new File(dir, "Skipped.txt");
+			FileUtils.writeStringToFile(skipped, "skip\n", "ISO-8859-1");
+			File visited = new File(dir, "Visited.txt");
+			FileUtils.writeStringToFile(visited, "visit\n", "ISO-8859-1");
+
+			TextWalker walker = new TextWalker();
+			walker.setResource(resource(skipped, visited));
+			walker.execute();
+			Assert.assertEquals(1, walker.texts.size());
+			Assert.assertNotNull(walker.contexts.get(0).getOriginalFileFormat());
+
+			walker.visitFile(skipped, "skip\n");
+			Assert.assertEquals(2, walker.texts.size());
+			Assert.assertNull(walker.contexts.get(1).getOriginalFileFormat());
+		} finally {
+			FileUtils.deleteDirectory(dir);
+		}
+	}
+
+	@Test
+	public void testTheVisitedElementsAreSynchronizedOnce() throws Exception {
+		File dir = new File("src/test/resources/walker-parallel");
+		dir.mkdirs();
+		try {
+			File file = new File(dir, "Foo.txt");
+			FileUtils.writeStringToFile(file, "foo\n", "ISO-8859-1");
+
+			TextWalker walker = new TextWalker();
+			walker.setResource(resource(file));
+			walker.setThreads(2);
+			walker.execute();
+			Set<Object> visited = walker.getVisitedElements();
+			walker.execute();
+			Assert.assertSame(visited, walker.getVisitedElements());
+			Assert.assertEquals(2, walker.texts.size());
+		} finally {
+			FileUtils.deleteDirectory(dir);
+		}
+	}
+}
@@ -0,0 +1,71 @@
+package org.walkmod.walkers;
+
+import java.util.LinkedList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MethodDispatcherTest {
+
+	public static class Visitor {
+
+		private List<String> calls = new LinkedList<String>();
+
+		public void visit(Object o) {
+			calls.add("object");
+		}
+
+		public void visit(CharSequence o, VisitorContext vc) {
+			calls.add("charSequence");
+		}
+
+		public void visit(String o, VisitorContext vc) {
+			calls.add("string");
+		}
+	}
+
+	@Test
+	public void testMostSpecificOverloadWins() throws Exception {
+		MethodDispatcher dispatcher = new MethodDispatcher("visit", VisitorContext.class);
+		Visitor visitor = new Visitor();
+		Assert.assertTrue(dispatcher.dispatch(visitor, "hello", new VisitorContext()));
+		Assert.assertTrue(dispatcher.dispatch(visitor, new StringBuilder(), new VisitorContext()));
+		Assert.assertTrue(dispatcher.dispatch(visitor, 1, new VisitorContext()));
+		Assert.assertEquals("string", visitor.calls.get(0));
+		Assert.assertEquals("charSequence", visitor.calls.get(1));
+		Assert.assertEquals("object", visitor.calls.get(2));
+	}
+
+	public static class Writer {
+
+		private List<String> calls = new LinkedList<String>();
+
+		public void write(Object o, VisitorContext vc) {
+			calls.add("object");
+		}
+
+		public void write(String o) {
+			calls.add("string");
+		}
+	}
+
+	@Test
+	public void testAllApplicableOverloads() throws Exception {
+		MethodDispatcher dispatcher = new MethodDispatcher("write", VisitorContext.class, false);
+		Writer writer = new Writer();
+		Assert.assertTrue(dispatcher.dispatch(writer, "hello", null));
+		Assert.assertEquals(2, writer.calls.size());
+		Assert.assertTrue(dispatcher.dispatch(writer, 1, null));
+		Assert.assertEquals(3, writer.calls.size());
+	}
+
+	@Test
+	public void testMissingMethods() throws Exception {
+		MethodDispatcher dispatcher = new MethodDispatcher("accept", VisitorContext.class);
+		Visitor visitor = new Visitor();
+		Assert.assertFalse(dispatcher.isDispatchable(visitor, "hello"));
+		Assert.assertFalse(dispatcher.dispatch(visitor, "hello", null));
+		Assert.assertNull(dispatcher.resolve(Visitor.class, String.class));
+	}
+}
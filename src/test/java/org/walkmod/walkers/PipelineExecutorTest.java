@@ -0,0 +1,91 @@
+package org.walkmod.walkers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PipelineExecutorTest {
+
+	@Test
+	public void testOrderedAndBoundedExecution() throws Exception {
+		List<Integer> elements = new ArrayList<Integer>();
+		for (int i = 0; i < 500; i++) {
+			elements.add(i);
+		}
+		final List<Object> results = new ArrayList<Object>();
+		final AtomicInteger inProgress = new AtomicInteger();
+		final AtomicInteger maxInProgress = new AtomicInteger();
+		new PipelineExecutor(2, 4, 8).execute(elements.iterator(), new PipelineExecutor.Stages() {
+
+			@Override
+			public Object read(Object element) throws Exception {
+				int current = inProgress.incrementAndGet();
+				synchronized (maxInProgress) {
+					if (current > maxInProgress.get()) {
+						maxInProgress.set(current);
+					}
+				}
+				return element;
+			}
+
+			@Override
+			public Object process(Object element, Object input) throws Exception {
+				return ((Integer) input) * 2;
+			}
+
+			@Override
+			public void write(Object element, Object output) throws Exception {
+			}
+
+			@Override
+			public void completed(Object element, Object output) throws Exception {
+				inProgress.decrementAndGet();
+				results.add(output);
+			}
+		});
+		Assert.assertEquals(500, results.size());
+		for (int i = 0; i < results.size(); i++) {
+			Assert.assertEquals(i * 2, results.get(i));
+		}
+		Assert.assertTrue(maxInProgress.get() <= 8);
+	}
+
+	@Test
+	public void testFirstErrorIsThrown() throws Exception {
+		List<Integer> elements = new ArrayList<Integer>();
+		for (int i = 0; i < 20; i++) {
+			elements.add(i);
+		}
+		try {
+			new PipelineExecutor(1, 2, 4).execute(elements.iterator(), new PipelineExecutor.Stages() {
+
+				@Override
+				public Object read(Object element) throws Exception {
+					return element;
+				}
+
+				@Override
+				public Object process(Object element, Object input) throws Exception {
+					if (((Integer) element) == 5) {
+						throw new Exception("error in " + element);
+					}
+					return input;
+				}
+
+				@Override
+				public void write(Object element, Object output) throws Exception {
+				}
+
+				@Override
+				public void completed(Object element, Object output) throws Exception {
+				}
+			});
+			Assert.fail("The error has not been propagated");
+		} catch (Exception e) {
+			Assert.assertEquals("error in 5", e.getMessage());
+		}
+	}
+}
@@ -0,0 +1,118 @@
+package org.walkmod.walkers;
+
+import java.io.File;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class VisitorMessageFileSinkTest {
+
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+
+	@Test
+	public void testJsonLines() throws Exception {
+		File dir = new File("src/test/resources/sink-jsonl");
+		try {
+			File file = new File(dir, "messages.jsonl");
+			VisitorMessageFileSink sink = new VisitorMessageFileSink(file, "JSONL");
+			sink.add(new VisitorMessage("src/Foo.java", "unused", "the \"bar\" field is unused"));
+			sink.add(new VisitorMessage("src/Bar.java", null, "first"));
+			sink.add(new VisitorMessage("src/Foo.java", "unused", "second"));
+			sink.close();
+
+			List<String> lines = FileUtils.readLines(file, "UTF-8");
+			Assert.assertEquals(5, lines.size());
+			JsonNode node = MAPPER.readTree(lines.get(0));
+			Assert.assertEquals(0, node.get("location").asInt());
+			Assert.assertEquals("src/Foo.java", node.get("uri").asText());
+			node = MAPPER.readTree(lines.get(1));
+			Assert.assertEquals(0, node.get("location").asInt());
+			Assert.assertEquals("unused", node.get("type").asText());
+			Assert.assertEquals("the \"bar\" field is unused", node.get("text").asText());
+			node = MAPPER.readTree(lines.get(2));
+			Assert.assertEquals(1, node.get("location").asInt());
+			Assert.assertEquals("src/Bar.java", node.get("uri").asText());
+			node = MAPPER.readTree(lines.get(3));
+			Assert.assertNull(node.get("type"));
+			Assert.assertEquals("first", node.get("text").asText());
+			// the location is written once
+			node = MAPPER.readTree(lines.get(4));
+			Assert.assertEquals(0, node.get("location").asInt());
+			Assert.assertEquals("second", node.get("text").asText());
+		} finally {
+			FileUtils.deleteDirectory(dir);
+		}
+	}
+
+	@Test
+	public void testSarif() throws Exception {
+		File dir = new File("src/test/resources/sink-sarif");
+		try {
+			File file = new File(dir, "messages.sarif");
+			VisitorMessageFileSink sink = new VisitorMessageFileSink(file, VisitorMessageFileSink.SARIF);
+			sink.add(new VisitorMessage("src/Foo.java", "unused", "first"));
+			sink.add(new VisitorMessage("src/Bar.java", "unused", "second"));
+			sink.add(new VisitorMessage("src/Foo.java", null, "third"));
+			sink.close();
+
+			JsonNode run = MAPPER.readTree(file).get("runs").get(0);
+			Assert.assertEquals("walkmod", run.get("tool").get("driver").get("name").asText());
+			JsonNode results = run.get("results");
+			Assert.assertEquals(3, results.size());
+			Assert.assertEquals("unused", results.get(0).get("ruleId").asText());
+			Assert.assertEquals("first", results.get(0).get("message").get("text").asText());
+			JsonNode artifact = results.get(2).get("locations").get(0).get("physicalLocation")
+					.get("artifactLocation");
+			Assert.assertEquals("src/Foo.java", artifact.get("uri").asText());
+			Assert.assertEquals(0, artifact.get("index").asInt());
+			Assert.assertNull(results.get(2).get("ruleId"));
+			JsonNode artifacts = run.get("artifacts");
+			Assert.assertEquals(2, artifacts.size());
+			Assert.assertEquals("src/Bar.java", artifacts.get(1).get("location").get("uri").asText());
+		} finally {
+			FileUtils.deleteDirectory(dir);
+		}
+	}
+
+	@Test
+	public void testFilesAreWrittenWithoutMessages() throws Exception {
+		File dir = new File("src/test/resources/sink-empty");
+		dir.mkdirs();
+		try {
+			File jsonl = new File(dir, "messages.jsonl");
+			// the messages of a previous execution are removed
+			FileUtils.writeStringToFile(jsonl, "{\"location\":0,\"uri\":\"src/Foo.java\"}\n", "UTF-8");
+			new VisitorMessageFileSink(jsonl, VisitorMessageFileSink.JSONL).close();
+			Assert.assertTrue(jsonl.exists());
+			Assert.assertEquals(0, jsonl.length());
+
+			File created = new File(dir, "new/messages.jsonl");
+			new VisitorMessageFileSink(created, VisitorMessageFileSink.JSONL).close();
+			Assert.assertTrue(created.exists());
+			Assert.assertEquals(0, created.length());
+
+			File sarif = new File(dir, "messages.sarif");
+			new VisitorMessageFileSink(sarif, VisitorMessageFileSink.SARIF).close();
+			JsonNode run = MAPPER.readTree(sarif).get("runs").get(0);
+			Assert.assertEquals(0, run.get("results").size());
+			Assert.assertEquals(0, run.get("artifacts").size());
+		} finally {
+			FileUtils.deleteDirectory(dir);
+		}
+	}
+
+	@Test
+	public void testInvalidFormat() {
+		try {
+			new VisitorMessageFileSink(new File("messages.xml"), "xml");
+			Assert.fail("the xml format is not supported");
+		} catch (IllegalArgumentException e) {
+			Assert.assertTrue(e.getMessage().contains("xml"));
+		}
+	}
+}
@@ -4,8 +4,16 @@ import java.io.File;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.Writer;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
 import org.junit.Assert;
 import org.junit.Test;
+import org.walkmod.util.ContentHash;
+import org.walkmod.util.FileFormat;
+import org.walkmod.walkers.AbstractWalker;
 import org.walkmod.walkers.VisitorContext;
 
 public class AbstractFileWriterTest {
@@ -66,4 +74,159 @@ public class AbstractFileWriterTest {
 		reader.close();
 		Assert.assertEquals('\r', buf[4]);
 	}
+
+	@Test
+	public void testWriteBehind() throws Exception {
+		AbstractFileWriter writeBehind = new AbstractFileWriter() {
+
+			@Override
+			public File createOutputDirectory(Object o) {
+				return null;
+			}
+
+			@Override
+			public String getContent(Object n, VisitorContext vc) {
+				return n.toString();
+			}
+		};
+		writeBehind.setWriterThreads(2);
+		writeBehind.setWriteQueueCapacity(3);
+		List<File> files = new LinkedList<File>();
+		try {
+			for (int i = 0; i < 20; i++) {
+				File file = File.createTempFile("test", "writeBehind.txt");
+				files.add(file);
+				VisitorContext vc = new VisitorContext();
+				vc.put(AbstractWalker.ORIGINAL_FILE_KEY, file);
+				writeBehind.write("content " + i, vc);
+			}
+			writeBehind.close();
+			for (int i = 0; i < 20; i++) {
+				Assert.assertEquals("content " + i, FileUtils.readFileToString(files.get(i)).trim());
+			}
+		} finally {
+			for (File file : files) {
+				file.delete();
+			}
+		}
+	}
+
+	@Test
+	public void testUnchangedFilesAreNotWritten() throws Exception {
+		AbstractFileWriter contentWriter = new AbstractFileWriter() {
+
+			@Override
+			public File createOutputDirectory(Object o) {
+				return null;
+			}
+
+			@Override
+			public String getContent(Object n, VisitorContext vc) {
+				return n.toString();
+			}
+		};
+		contentWriter.setSkipUnchanged(true);
+		File file = File.createTempFile("test", "unchanged.txt");
+		try {
+			FileUtils.writeStringToFile(file, "a\nb\n");
+			file.setLastModified(1000000000L);
+			VisitorContext vc = new VisitorContext();
+			vc.put(AbstractWalker.ORIGINAL_FILE_KEY, file);
+			contentWriter.write("a\nb", vc);
+			Assert.assertEquals(1000000000L, file.lastModified());
+
+			contentWriter.write("a\nc", vc);
+			Assert.assertEquals("a\nc\n", FileUtils.readFileToString(file));
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testExistingFilesAreWrittenThroughGetWriterByDefault() throws Exception {
+		final java.io.StringWriter redirected = new java.io.StringWriter();
+		AbstractFileWriter contentWriter = new AbstractFileWriter() {
+
+			@Override
+			public File createOutputDirectory(Object o) {
+				return null;
+			}
+
+			@Override
+			public String getContent(Object n, VisitorContext vc) {
+				return n.toString();
+			}
+
+			@Override
+			protected Writer getWriter(File out) throws Exception {
+				return redirected;
+			}
+		};
+		File file = File.createTempFile("test", "redirected.txt");
+		try {
+			FileUtils.writeStringToFile(file, "a\nb\n");
+			VisitorContext vc = new VisitorContext();
+			vc.put(AbstractWalker.ORIGINAL_FILE_KEY, file);
+			contentWriter.write("a\nb", vc);
+			Assert.assertEquals("a\nb\n", redirected.toString());
+			Assert.assertEquals("a\nb\n", FileUtils.readFileToString(file));
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testTheContentHashOfTheReadIsUsedOnce() throws Exception {
+		File file = File.createTempFile("test", "hash.txt");
+		try {
+			FileUtils.writeStringToFile(file, "a\nb\n");
+			file.setLastModified(1000000000L);
+			VisitorContext vc = new VisitorContext();
+			vc.put(AbstractWalker.ORIGINAL_FILE_KEY, file);
+			FileFormat format = new FileFormat("\n", "UTF-8", false);
+			vc.put(AbstractWalker.ORIGINAL_FILE_FORMAT_KEY,
+					format.withContentHash(file, ContentHash.of("a\nb\n".getBytes("UTF-8"))));
+
+			StringWriter contentWriter = new StringWriter();
+			contentWriter.setSkipUnchanged(true);
+			contentWriter.write("a\nb", vc);
+			Assert.assertEquals(1000000000L, file.lastModified());
+			Assert.assertNull(vc.getOriginalFileFormat().getContentHash(file));
+
+			contentWriter.write("a\nc", vc);
+			Assert.assertEquals("a\nc\n", FileUtils.readFileToString(file));
+			file.setLastModified(1000000000L);
+			contentWriter.write("a\nb", vc);
+			Assert.assertEquals("a\nb\n", FileUtils.readFileToString(file));
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testBatchSyncReplacesTheFilesOnFlush() throws Exception {
+		File file = File.createTempFile("test", "batch.txt");
+		try {
+			FileUtils.writeStringToFile(file, "a\nb\n");
+			VisitorContext vc = new VisitorContext();
+			vc.put(AbstractWalker.ORIGINAL_FILE_KEY, file);
+			StringWriter contentWriter = new StringWriter();
+			contentWriter.setSkipUnchanged(true);
+			contentWriter.setAtomicWrites(true);
+			contentWriter.setFsync(AbstractFileWriter.FSYNC_BATCH);
+
+			contentWriter.write("a\nc", vc);
+			Assert.assertEquals("a\nb\n", FileUtils.readFileToString(file));
+			contentWriter.flush();
+			Assert.assertEquals("a\nc\n", FileUtils.readFileToString(file));
+
+			// the second write is compared with the pending content, not with the target
+			contentWriter.write("a\nd", vc);
+			contentWriter.write("a\nc", vc);
+			contentWriter.flush();
+			Assert.assertEquals("a\nc\n", FileUtils.readFileToString(file));
+		} finally {
+			file.delete();
+		}
+	}
 }
@@ -0,0 +1,199 @@
+package org.walkmod.writers;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.Assert;
+import org.junit.Test;
+import org.walkmod.commands.PatchCommand;
+import org.walkmod.patches.BinaryPatchReader;
+import org.walkmod.patches.Patch;
+import org.walkmod.walkers.VisitorContext;
+
+import com.beust.jcommander.JCommander;
+
+public class AbstractPatchWriterTest {
+
+	private static AbstractPatchWriter createWriter() {
+		return new AbstractPatchWriter() {
+
+			@Override
+			public String getContent(Object n, VisitorContext vc) {
+				return null;
+			}
+		};
+	}
+
+	private static void writePatch(AbstractPatchWriter writer, File file) throws Exception {
+		Writer patch = writer.getWriter(file, "UTF-8");
+		patch.write("--- " + file.getName() + "\n");
+		patch.write("+++ " + file.getName() + "\n");
+		patch.close();
+	}
+
+	private static void delete(String... names) {
+		for (String name : names) {
+			new File(name).delete();
+		}
+	}
+
+	@Test
+	public void testPatchesOfSeveralThreadsAreWrittenIntoTheirShards() throws Exception {
+		final String[] shards = { "walkmod-0.patch", "walkmod-1.patch", "walkmod-2.patch" };
+		for (String shard : shards) {
+			Assert.assertFalse(new File(shard).exists());
+		}
+		try {
+			final AbstractPatchWriter writer = createWriter();
+			writer.setPatchShards(shards.length);
+			final List<Throwable> errors = Collections.synchronizedList(new ArrayList<Throwable>());
+			Thread[] threads = new Thread[8];
+			for (int i = 0; i < threads.length; i++) {
+				final int thread = i;
+				threads[i] = new Thread() {
+					@Override
+					public void run() {
+						try {
+							for (int j = 0; j < 50; j++) {
+								writePatch(writer, new File("Foo" + thread + "_" + j + ".java"));
+							}
+						} catch (Throwable e) {
+							errors.add(e);
+						}
+					}
+				};
+				threads[i].start();
+			}
+			for (Thread thread : threads) {
+				thread.join();
+			}
+			Assert.assertTrue(errors.toString(), errors.isEmpty());
+			writer.flush();
+
+			Set<String> names = new HashSet<String>();
+			for (int i = 0; i < shards.length; i++) {
+				List<String> lines = FileUtils.readLines(new File(shards[i]), "UTF-8");
+				Assert.assertEquals(0, lines.size() % 2);
+				for (int j = 0; j < lines.size(); j += 2) {
+					// the patch of a file is never mixed with other patches
+					String name = lines.get(j).substring("--- ".length());
+					Assert.assertEquals("+++ " + name, lines.get(j + 1));
+					Assert.assertEquals(i, (new File(name).getAbsoluteFile().hashCode() & Integer.MAX_VALUE)
+							% shards.length);
+					Assert.assertTrue(names.add(name));
+				}
+			}
+			Assert.assertEquals(8 * 50, names.size());
+
+			// the channels are opened again, in append mode, after a flush
+			writePatch(writer, new File("Bar.java"));
+			writer.flush();
+			int patches = 0;
+			for (String shard : shards) {
+				patches += FileUtils.readLines(new File(shard), "UTF-8").size() / 2;
+			}
+			Assert.assertEquals(8 * 50 + 1, patches);
+		} finally {
+			delete(shards);
+		}
+	}
+
+	@Test
+	public void testCompressedPatches() throws Exception {
+		String name = "walkmod.patch.gz";
+		Assert.assertFalse(new File(name).exists());
+		try {
+			AbstractPatchWriter writer = createWriter();
+			writer.setCompressPatches(true);
+			writePatch(writer, new File("Foo.java"));
+			writePatch(writer, new File("Bar.java"));
+			// the gzip stream is not complete until the channel is closed
+			writer.flush();
+			writePatch(writer, new File("Baz.java"));
+			writer.flush();
+			Assert.assertFalse(new File("walkmod.patch").exists());
+
+			InputStream is = new GZIPInputStream(new FileInputStream(name));
+			try {
+				Assert.assertEquals("--- Foo.java\n+++ Foo.java\n--- Bar.java\n+++ Bar.java\n"
+						+ "--- Baz.java\n+++ Baz.java\n", IOUtils.toString(is, "UTF-8"));
+			} finally {
+				is.close();
+			}
+		} finally {
+			delete(name);
+		}
+	}
+
+	@Test
+	public void testBinaryPatchesAreRecordedInTheSummary() throws Exception {
+		String name = "walkmod.patch.bin";
+		Assert.assertFalse(new File(name).exists());
+		Summary summary = new Summary();
+		Summary previous = Summary.setCurrent(summary);
+		try {
+			AbstractPatchWriter writer = createWriter();
+			writer.setPatchFormat("binary");
+			writer.writePatches("Foo.java", Collections.<Patch> emptyList(), null);
+			Assert.assertTrue(summary.getWrittenFiles().isEmpty());
+			writer.writePatches("Foo.java", Collections.singletonList(new Patch("-a\n+b", 1, 1, 1, 1, "walkmod",
+					"Foo.java", false)), null);
+			writer.flush();
+
+			Assert.assertEquals(Collections.singletonList(new File("Foo.java").getAbsoluteFile()),
+					summary.getWrittenFiles());
+			List<Patch> patches = BinaryPatchReader.open(new File(name)).readAll();
+			Assert.assertEquals(1, patches.size());
+			Assert.assertEquals("-a\n+b", patches.get(0).getDiff());
+		} finally {
+			Summary.setCurrent(previous);
+			delete(name);
+		}
+	}
+
+	@Test
+	public void testBinaryPatchesCanBeApplied() throws Exception {
+		String name = "walkmod.patch.bin";
+		Assert.assertFalse(new File(name).exists());
+		File dir = new File("src/test/resources/binary-patches");
+		dir.mkdirs();
+		try {
+			String foo = "src/test/resources/binary-patches/Foo.java";
+			String fooText = "a\nb\nc\nd\ne\nf\ng\nh\ni\nj\nk\nl\n";
+			String fooRevised = "a\nB\nc\nd\ne\nf\ng\nh\ni\nj\nk\nl\nm\n";
+			FileUtils.writeStringToFile(new File(foo), fooText, "UTF-8");
+			String bar = "src/test/resources/binary-patches/Bar.java";
+			String barText = "x\r\ny\r\n";
+			String barRevised = "x\r\nz\r\ny\r\n";
+			FileUtils.writeStringToFile(new File(bar), barText, "UTF-8");
+
+			AbstractPatchWriter writer = createWriter();
+			writer.setPatchFormat("binary");
+			writer.setContextSize(1);
+			writer.writePatches(foo, writer.generatePatches(fooText, fooRevised, foo, null), null);
+			writer.writePatches(bar, writer.generatePatches(barText, barRevised, bar, null), null);
+			writer.flush();
+			Assert.assertTrue(BinaryPatchReader.isBinaryPatch(new File(name)));
+
+			PatchCommand command = new PatchCommand(null);
+			new JCommander(command).parse("--apply", name);
+			command.execute();
+
+			Assert.assertEquals(fooRevised, FileUtils.readFileToString(new File(foo), "UTF-8"));
+			Assert.assertEquals(barRevised, FileUtils.readFileToString(new File(bar), "UTF-8"));
+		} finally {
+			delete(name);
+			FileUtils.deleteDirectory(dir);
+		}
+	}
+}
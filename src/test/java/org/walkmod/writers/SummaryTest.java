@@ -0,0 +1,129 @@
+package org.walkmod.writers;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.walkmod.walkers.ChangeLogPrinter;
+
+public class SummaryTest {
+
+	@Test
+	public void testEachExecutionHasItsOwnSummary() throws Exception {
+		final Summary first = new Summary();
+		final Summary second = new Summary();
+		final List<Summary> seen = new ArrayList<Summary>();
+		Thread[] executions = new Thread[2];
+		for (int i = 0; i < executions.length; i++) {
+			final Summary summary = i == 0 ? first : second;
+			final String name = "Foo" + i + ".java";
+			executions[i] = new Thread() {
+				@Override
+				public void run() {
+					Summary previous = Summary.setCurrent(summary);
+					try {
+						// the threads created by an execution share its summary
+						Thread worker = new Thread() {
+							@Override
+							public void run() {
+								Summary.getInstance().addFile(new File(name));
+								synchronized (seen) {
+									seen.add(Summary.getInstance());
+								}
+							}
+						};
+						worker.start();
+						worker.join();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					} finally {
+						Summary.setCurrent(previous);
+					}
+				}
+			};
+			executions[i].start();
+		}
+		for (Thread execution : executions) {
+			execution.join();
+		}
+		Assert.assertEquals(2, seen.size());
+		Assert.assertTrue(seen.contains(first));
+		Assert.assertTrue(seen.contains(second));
+		Assert.assertEquals(1, first.getWrittenFiles().size());
+		Assert.assertEquals(new File("Foo0.java"), first.getWrittenFiles().get(0));
+		Assert.assertEquals(1, second.getWrittenFiles().size());
+		Assert.assertEquals(new File("Foo1.java"), second.getWrittenFiles().get(0));
+	}
+
+	@Test
+	public void testThePreviousSummaryIsRestored() {
+		Summary global = Summary.getInstance();
+		Summary summary = new Summary();
+		Summary previous = Summary.setCurrent(summary);
+		try {
+			Assert.assertNull(previous);
+			Assert.assertSame(summary, Summary.getInstance());
+			Summary nested = new Summary();
+			Assert.assertSame(summary, Summary.setCurrent(nested));
+			Assert.assertSame(nested, Summary.getInstance());
+			Assert.assertSame(nested, Summary.setCurrent(summary));
+		} finally {
+			Summary.setCurrent(previous);
+		}
+		Assert.assertSame(global, Summary.getInstance());
+	}
+
+	@Test
+	public void testWrittenFilesAreNotDuplicated() {
+		Summary summary = new Summary();
+		summary.addFile(new File("Foo.java"));
+		summary.addFile(new File("Bar.java"));
+		summary.addFile(new File("Foo.java"));
+		Assert.assertEquals(2, summary.getWrittenFiles().size());
+		Assert.assertEquals(new File("Foo.java"), summary.getWrittenFiles().get(0));
+		summary.clear();
+		Assert.assertTrue(summary.getWrittenFiles().isEmpty());
+	}
+
+	@Test
+	public void testChangesAreCountedAsLongs() {
+		Summary summary = new Summary();
+		summary.addChanges("MethodDeclaration", Integer.MAX_VALUE, 1, 0, 2);
+		summary.addChanges("MethodDeclaration", Integer.MAX_VALUE, 1, 0, 2);
+		Assert.assertEquals(Long.valueOf(2L * Integer.MAX_VALUE), summary.getChanges(Summary.ADDED).get(
+				"MethodDeclaration"));
+		Assert.assertEquals(Long.valueOf(2), summary.getChanges(Summary.UPDATED).get("MethodDeclaration"));
+		Assert.assertEquals(Long.valueOf(0), summary.getChanges(Summary.DELETED).get("MethodDeclaration"));
+		Assert.assertEquals(Long.valueOf(4), summary.getChanges(Summary.UNMODIFIED).get("MethodDeclaration"));
+	}
+
+	@Test
+	public void testPrintedChangesAreAddedToTheCurrentSummary() {
+		Map<String, Integer> added = new HashMap<String, Integer>();
+		added.put("FieldDeclaration", 1);
+		Map<String, Integer> updated = new HashMap<String, Integer>();
+		updated.put("FieldDeclaration", 2);
+		Map<String, Integer> deleted = new HashMap<String, Integer>();
+		deleted.put("FieldDeclaration", 0);
+		Map<String, Integer> unmodified = new HashMap<String, Integer>();
+		unmodified.put("FieldDeclaration", 3);
+
+		Summary summary = new Summary();
+		Summary previous = Summary.setCurrent(summary);
+		try {
+			new ChangeLogPrinter(added, updated, deleted, unmodified).print();
+			new ChangeLogPrinter(added, updated, deleted, unmodified).print();
+			// the changes of a summary are not added again
+			new ChangeLogPrinter(summary).print();
+		} finally {
+			Summary.setCurrent(previous);
+		}
+		Assert.assertEquals(Long.valueOf(2), summary.getChanges(Summary.ADDED).get("FieldDeclaration"));
+		Assert.assertEquals(Long.valueOf(4), summary.getChanges(Summary.UPDATED).get("FieldDeclaration"));
+		Assert.assertEquals(Long.valueOf(6), summary.getChanges(Summary.UNMODIFIED).get("FieldDeclaration"));
+	}
+}